@@ -3,9 +3,13 @@ package com.microservice.payment;
 import net.javacrumbs.shedlock.spring.annotation.EnableSchedulerLock;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.core.Ordered;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
 @EnableScheduling
+// cache advice wraps transactions so hits open no transaction and puts follow commit
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
 @EnableSchedulerLock(defaultLockAtMostFor = "PT30S")
 @SpringBootApplication
 public class PaymentApplication {
@@ -0,0 +1,143 @@
+package com.microservice.payment.archive;
+
+import com.microservice.payment.cache.PaymentCacheEvictor;
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.repository.PaymentHistoryRepository;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * background archiver that moves processed and cancelled payments older
+ * than configured age from payment table to payment history, so indexes
+ * of payment table only hold payments that are still worked on. Payments
+ * are moved in small batches, each committed individually with a pause
+ * in between so archiving does not compete with regular traffic.
+ * Archived payments are still read by id from history
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class PaymentArchiver {
+
+    private static final List<PaymentStatus> TERMINAL_STATUSES = List.of(PaymentStatus.PROCESSED,
+            PaymentStatus.CANCELLED);
+    // first monthly partition, earlier payments share the initial history partition
+    private static final YearMonth FIRST_PARTITION = YearMonth.of(2024, 1);
+
+    @Value("${payment.archive.enabled:true}")
+    private boolean enabled;
+    @Value("${payment.archive.min-age:P365D}")
+    private Duration minAge;
+    @Value("${payment.archive.batch-size:500}")
+    private int batchSize;
+    @Value("${payment.archive.pause:200ms}")
+    private Duration pause;
+    @Value("${payment.archive.run-budget:PT5M}")
+    private Duration runBudget;
+    @Value("${payment.archive.partitions-ahead:3}")
+    private int partitionsAhead;
+
+    private final PaymentHistoryRepository paymentHistoryRepository;
+    private final CustomerPaymentStats customerPaymentStats;
+    private final PaymentCacheEvictor paymentCacheEvictor;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+
+    /**
+     * archive settled payments, only one instance performs
+     * archiving at a time
+     */
+    @Scheduled(cron = "${spring.cron.payment-archive}")
+    @SchedulerLock(name = "paymentArchiver", lockAtMostFor = "PT10M")
+    public void scheduledTask() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            addPartitions();
+            log.info("Archived {} settled payments", archive());
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (final Exception e) {
+            log.error("Error occurred archiving settled payments, error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * move settled payments older than configured age batch by batch
+     * until nothing is left or run budget is consumed
+     *
+     * @return total archived payments
+     * @throws InterruptedException when interrupted while pausing between batches
+     */
+    int archive() throws InterruptedException {
+        final long startedAt = System.nanoTime();
+        final Instant before = clock.instant().minus(minAge);
+        int total = 0;
+        for (final PaymentStatus status : TERMINAL_STATUSES) {
+            int archived;
+            do {
+                archived = Objects.requireNonNullElse(transactionTemplate.execute(tx ->
+                        archiveBatch(status, before)), 0);
+                total += archived;
+                if (archived == batchSize) {
+                    Thread.sleep(pause.toMillis());
+                }
+            } while (archived == batchSize
+                    && Duration.ofNanos(System.nanoTime() - startedAt).compareTo(runBudget) < 0);
+        }
+        return total;
+    }
+
+    /**
+     * keep monthly partitions of payment history created ahead of
+     * time so archived payments never land in the future partition
+     */
+    void addPartitions() {
+        final YearMonth until = YearMonth.now(clock).plusMonths(partitionsAhead);
+        final YearMonth from = paymentHistoryRepository.findLastPartition()
+                .map(month -> month.plusMonths(1))
+                .orElse(FIRST_PARTITION);
+        paymentHistoryRepository.addPartitions(Stream.iterate(from, month -> !month.isAfter(until),
+                month -> month.plusMonths(1)).toList());
+    }
+
+    /**
+     * move a single batch to history, customer stats count archived
+     * payments in archived status and cached copies are evicted
+     *
+     * @param status {@link PaymentStatus} terminal status
+     * @param before {@link Instant} payments processed before are archived
+     * @return total archived payments
+     */
+    private int archiveBatch(final PaymentStatus status, final Instant before) {
+        final List<Payment> payments = paymentHistoryRepository.findArchivable(status.name(), before, batchSize);
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        final List<UUID> ids = payments.stream().map(Payment::getId).toList();
+        final int archived = paymentHistoryRepository.archive(ids);
+        customerPaymentStats.moved(payments, CustomerPaymentStats.ARCHIVED);
+        paymentCacheEvictor.evictAfterCommit(ids);
+        return archived;
+    }
+}
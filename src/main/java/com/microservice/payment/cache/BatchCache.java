@@ -0,0 +1,31 @@
+package com.microservice.payment.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * cache that reads and fills many entries at once, so a lookup of
+ * many keys costs a round trip per level instead of one per key
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public interface BatchCache extends Cache {
+
+    /**
+     * cached values of provided keys, missing keys are left out
+     *
+     * @param keys {@link Collection} cache keys
+     * @return {@link Map} cached value by key
+     */
+    Map<Object, Object> getAll(Collection<?> keys);
+
+    /**
+     * cache loaded values unless a key already got a value meanwhile
+     *
+     * @param entries {@link Map} loaded value by key
+     */
+    void putAllIfAbsent(Map<?, ?> entries);
+}
@@ -0,0 +1,85 @@
+package com.microservice.payment.cache;
+
+import com.microservice.payment.event.PaymentEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static com.microservice.payment.utils.Constants.CACHE_PAYMENT;
+
+/**
+ * evicts cached payment once a change of the payment is committed, this
+ * covers changes made outside of request handling such as settlement so
+ * no instance keeps serving a payment that was changed meanwhile. Status
+ * changes that append no payment event are evicted explicitly
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class PaymentCacheEvictor {
+
+    private final CacheManager cacheManager;
+
+    /**
+     * evict committed payment from every cache level of every instance
+     *
+     * @param event {@link PaymentEvent} committed payment event
+     */
+    @TransactionalEventListener
+    public void onPaymentEvent(final PaymentEvent event) {
+        evict(List.of(event.paymentId()));
+    }
+
+    /**
+     * evict payments once current transaction is committed, without
+     * transaction they are evicted right away
+     *
+     * @param ids {@link Collection<UUID>} changed payment ids
+     */
+    public void evictAfterCommit(final Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        final List<String> keys = ids.stream().map(UUID::toString).toList();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            evict(keys);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                evict(keys);
+            }
+        });
+    }
+
+    /**
+     * evict payments from every cache level of every instance, when
+     * redis is not reachable local copies are left to expire
+     *
+     * @param keys {@link Collection<String>} payment ids
+     */
+    private void evict(final Collection<String> keys) {
+        final Cache cache = cacheManager.getCache(CACHE_PAYMENT);
+        if (cache == null) {
+            return;
+        }
+        try {
+            keys.forEach(cache::evict);
+        } catch (final Exception e) {
+            log.warn("Payments could not be evicted from cache: {}, error: {}", keys.size(), e.getMessage());
+        }
+    }
+}
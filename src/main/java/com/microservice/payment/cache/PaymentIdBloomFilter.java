@@ -0,0 +1,112 @@
+package com.microservice.payment.cache;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * thread safe bloom filter of payment ids, bits are set lock free so
+ * ids can be added while other threads are reading. Every id is hashed
+ * once and the probed bits are derived by double hashing. A negative
+ * answer is exact, a positive one is false with the expected probability
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+class PaymentIdBloomFilter {
+
+    private static final int MIN_BITS = 1 << 10;
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+
+    /**
+     * size filter for expected ids and false positive probability
+     *
+     * @param expectedIds ids the filter is expected to hold
+     * @param fpp         false positive probability at expected ids
+     */
+    PaymentIdBloomFilter(final long expectedIds, final double fpp) {
+        if (fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("false positive probability must be between 0 and 1");
+        }
+        final long ids = Math.max(1, expectedIds);
+        final long optimalBits = (long) Math.ceil(-ids * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        final long words = Math.min(Integer.MAX_VALUE, (Math.max(MIN_BITS, optimalBits) + 63) / 64);
+        this.words = new AtomicLongArray((int) words);
+        this.bits = words * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / ids * Math.log(2)));
+    }
+
+    /**
+     * add payment id to filter
+     *
+     * @param id {@link UUID} payment id
+     */
+    void put(final UUID id) {
+        final long hash1 = mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+        final long hash2 = mix(hash1);
+        for (int i = 0; i < hashes; i++) {
+            final long bit = Math.floorMod(hash1 + i * hash2, bits);
+            final int word = (int) (bit >>> 6);
+            final long mask = 1L << bit;
+            long current;
+            do {
+                current = words.get(word);
+            } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    /**
+     * whether payment id might have been added
+     *
+     * @param id {@link UUID} payment id
+     * @return false when id was definitely never added
+     */
+    boolean mightContain(final UUID id) {
+        final long hash1 = mix(id.getMostSignificantBits() ^ mix(id.getLeastSignificantBits()));
+        final long hash2 = mix(hash1);
+        for (int i = 0; i < hashes; i++) {
+            final long bit = Math.floorMod(hash1 + i * hash2, bits);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * false positive probability at current fill ratio
+     *
+     * @return expected false positive probability
+     */
+    double expectedFpp() {
+        long set = 0;
+        for (int i = 0; i < words.length(); i++) {
+            set += Long.bitCount(words.get(i));
+        }
+        return Math.pow((double) set / bits, hashes);
+    }
+
+    /**
+     * total bits of the filter
+     *
+     * @return filter size in bits
+     */
+    long bitSize() {
+        return bits;
+    }
+
+    /**
+     * finalizer of 64 bit murmur hash, spreads every input bit
+     * over the whole output
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb93fe53e1a4fL;
+        value ^= value >>> 33;
+        return value;
+    }
+}
@@ -0,0 +1,192 @@
+package com.microservice.payment.cache;
+
+import com.microservice.payment.repository.PaymentIdRepository;
+import com.microservice.payment.utils.UuidV7;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.function.BiFunction;
+
+/**
+ * negative lookup filter of payment ids, answers ids that definitely
+ * do not exist without querying database. Filter is built from payment
+ * and payment history tables on startup and rebuilt periodically, so
+ * archived payments stay known. Payments created by this
+ * instance are added right away. Payments created by other instances
+ * are only known after next rebuild, so ids are judged only when their
+ * generation time is older than the last rebuild minus a trust margin
+ * that covers clock skew between instances. Newer ids and lookups
+ * before the first build are always left to database
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class PaymentIdFilter {
+
+    private static final String METRIC_LOOKUPS = "payment.id-filter.lookups";
+    private static final int CHUNK_SIZE = 10_000;
+    // filter is sized for growth until next rebuild
+    private static final int GROWTH_FACTOR = 2;
+    private static final long MIN_EXPECTED_IDS = 100_000;
+
+    @Value("${payment.id-filter.enabled:true}")
+    private boolean enabled;
+    @Value("${payment.id-filter.expected-fpp:0.01}")
+    private double expectedFpp;
+    @Value("${payment.id-filter.trust-margin:PT5M}")
+    private Duration trustMargin;
+
+    private final PaymentIdRepository paymentIdRepository;
+    private final Clock clock;
+    private final MeterRegistry meterRegistry;
+
+    private volatile PaymentIdBloomFilter filter;
+    private volatile PaymentIdBloomFilter building;
+    private volatile long trustedBefore = Long.MIN_VALUE;
+
+    private Counter absent;
+    private Counter present;
+    private Counter unchecked;
+    private Counter falsePositives;
+
+    @PostConstruct
+    void registerMetrics() {
+        absent = Counter.builder(METRIC_LOOKUPS).tag("result", "absent").register(meterRegistry);
+        present = Counter.builder(METRIC_LOOKUPS).tag("result", "present").register(meterRegistry);
+        unchecked = Counter.builder(METRIC_LOOKUPS).tag("result", "unchecked").register(meterRegistry);
+        falsePositives = Counter.builder("payment.id-filter.false-positives").register(meterRegistry);
+        Gauge.builder("payment.id-filter.expected-fpp", this,
+                        idFilter -> idFilter.filter == null ? Double.NaN : idFilter.filter.expectedFpp())
+                .register(meterRegistry);
+    }
+
+    /**
+     * whether payment definitely does not exist, false means
+     * payment might exist and has to be looked up
+     *
+     * @param id {@link UUID} payment id
+     * @return true when payment id is definitely unknown
+     */
+    public boolean isAbsent(final UUID id) {
+        final PaymentIdBloomFilter current = filter;
+        if (current == null || !isJudged(id)) {
+            unchecked.increment();
+            return false;
+        }
+        if (current.mightContain(id)) {
+            present.increment();
+            return false;
+        }
+        absent.increment();
+        return true;
+    }
+
+    /**
+     * add ids of created payments, ids are added to the filter being
+     * rebuilt as well so no payment is lost while rebuilding
+     *
+     * @param ids {@link Collection<UUID>} created payment ids
+     */
+    public void add(final Collection<UUID> ids) {
+        if (!enabled) {
+            return;
+        }
+        final PaymentIdBloomFilter current = filter;
+        final PaymentIdBloomFilter next = building;
+        ids.forEach(id -> {
+            if (current != null) {
+                current.put(id);
+            }
+            if (next != null) {
+                next.put(id);
+            }
+        });
+    }
+
+    /**
+     * report payment that was not found in database, judged id that
+     * passed the filter is counted as false positive
+     *
+     * @param id {@link UUID} payment id
+     */
+    public void notFound(final UUID id) {
+        final PaymentIdBloomFilter current = filter;
+        if (current != null && isJudged(id) && current.mightContain(id)) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * rebuild filter from payment and history tables, lookups are served
+     * by previous filter until new one is complete. Payment table is read
+     * first, so payment archived while it is read is found in history
+     */
+    @Scheduled(fixedDelayString = "${payment.id-filter.rebuild-interval:PT6H}", initialDelay = 0)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            final long started = clock.millis();
+            final long expectedIds = Math.max(MIN_EXPECTED_IDS, paymentIdRepository.estimateCount() * GROWTH_FACTOR);
+            final PaymentIdBloomFilter next = new PaymentIdBloomFilter(expectedIds, expectedFpp);
+            building = next;
+            final long total = load(next, paymentIdRepository::findIds)
+                    + load(next, paymentIdRepository::findArchivedIds);
+            filter = next;
+            trustedBefore = started - trustMargin.toMillis();
+            log.info("Payment id filter rebuilt, ids: {}, bits: {}, expected fpp: {}",
+                    total, next.bitSize(), next.expectedFpp());
+        } catch (final Exception e) {
+            log.error("Error occurred rebuilding payment id filter, error: {}", e.getMessage());
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * put every id of a single table into provided filter chunk by chunk
+     *
+     * @param next    {@link PaymentIdBloomFilter} filter being built
+     * @param findIds {@link BiFunction} next chunk of ids after provided id
+     * @return total loaded ids
+     */
+    private static long load(final PaymentIdBloomFilter next,
+                             final BiFunction<UUID, Integer, List<UUID>> findIds) {
+        long total = 0;
+        UUID after = null;
+        List<UUID> ids;
+        do {
+            ids = findIds.apply(after, CHUNK_SIZE);
+            ids.forEach(next::put);
+            total += ids.size();
+            after = ids.isEmpty() ? after : ids.get(ids.size() - 1);
+        } while (ids.size() == CHUNK_SIZE);
+        return total;
+    }
+
+    /**
+     * ids that are not version 7 were not generated by this
+     * service and can only exist when loaded by a rebuild
+     */
+    private boolean isJudged(final UUID id) {
+        final OptionalLong generated = UuidV7.epochMillis(id);
+        return generated.isEmpty() || generated.getAsLong() < trustedBefore;
+    }
+}
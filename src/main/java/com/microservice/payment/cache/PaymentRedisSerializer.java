@@ -0,0 +1,250 @@
+package com.microservice.payment.cache;
+
+import com.microservice.payment.dto.ResponsePager;
+import com.microservice.payment.dto.payment.PaymentDTO;
+import lombok.extern.log4j.Log4j2;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * compact binary redis serializer of payments and payment pages. Values
+ * start with schema version and flags, followed by a type tag and only
+ * the fields that are present. Payment ids are written as 16 bytes and
+ * values larger than compression threshold are compressed with lz4.
+ * Values of another schema version are read as cache miss so entries
+ * written by an older release are simply replaced
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+public class PaymentRedisSerializer implements RedisSerializer<Object> {
+
+    static final byte SCHEMA_VERSION = 1;
+    private static final int HEADER_LENGTH = 2;
+    private static final byte FLAG_COMPRESSED = 1;
+
+    private static final byte TYPE_PAYMENT = 1;
+    private static final byte TYPE_PAGE = 2;
+
+    // present payment fields
+    private static final int PAYMENT_ID = 1;
+    private static final int PAYMENT_ID_TEXT = 1 << 1;
+    private static final int PAYMENT_CUSTOMER_ID = 1 << 2;
+    private static final int PAYMENT_AMOUNT = 1 << 3;
+    private static final int PAYMENT_METHOD_ID = 1 << 4;
+    private static final int PAYMENT_STATUS = 1 << 5;
+    private static final int PAYMENT_PROCESSING_TIME = 1 << 6;
+
+    // present page fields
+    private static final int PAGE_CURRENT_PAGE = 1;
+    private static final int PAGE_TOTAL_RECORDS = 1 << 1;
+    private static final int PAGE_TOTAL_PAGES = 1 << 2;
+    private static final int PAGE_NEXT_CURSOR = 1 << 3;
+
+    private final int compressionThreshold;
+    private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+    private final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    /**
+     * @param compressionThreshold values of at least this many bytes are compressed, 0 disables compression
+     */
+    public PaymentRedisSerializer(final int compressionThreshold) {
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(final Object value) {
+        if (value == null) {
+            return null;
+        }
+        final ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(body)) {
+            if (value instanceof PaymentDTO payment) {
+                out.writeByte(TYPE_PAYMENT);
+                writePayment(out, payment);
+            } else if (value instanceof ResponsePager<?> page) {
+                out.writeByte(TYPE_PAGE);
+                writePage(out, page);
+            } else {
+                throw new SerializationException("Cache value type is not supported: " + value.getClass().getName());
+            }
+        } catch (final IOException e) {
+            throw new SerializationException("Cache value could not be written", e);
+        }
+        return withHeader(body.toByteArray());
+    }
+
+    @Override
+    public Object deserialize(final byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes.length < HEADER_LENGTH || bytes[0] != SCHEMA_VERSION) {
+            log.debug("Cache value of another schema version is ignored");
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body(bytes)))) {
+            final byte type = in.readByte();
+            return switch (type) {
+                case TYPE_PAYMENT -> readPayment(in);
+                case TYPE_PAGE -> readPage(in);
+                default -> throw new SerializationException("Cache value type is unknown: " + type);
+            };
+        } catch (final IOException | RuntimeException e) {
+            throw new SerializationException("Cache value could not be read", e);
+        }
+    }
+
+    /**
+     * prepend schema version and flags, body is compressed
+     * together with its length once it reaches the threshold
+     */
+    private byte[] withHeader(final byte[] body) {
+        if (compressionThreshold <= 0 || body.length < compressionThreshold) {
+            final byte[] value = new byte[HEADER_LENGTH + body.length];
+            value[0] = SCHEMA_VERSION;
+            System.arraycopy(body, 0, value, HEADER_LENGTH, body.length);
+            return value;
+        }
+        final int offset = HEADER_LENGTH + Integer.BYTES;
+        final byte[] value = new byte[offset + compressor.maxCompressedLength(body.length)];
+        final int compressedLength = compressor.compress(body, 0, body.length, value, offset);
+        value[0] = SCHEMA_VERSION;
+        value[1] = FLAG_COMPRESSED;
+        ByteBuffer.wrap(value, HEADER_LENGTH, Integer.BYTES).putInt(body.length);
+        final byte[] compressed = new byte[offset + compressedLength];
+        System.arraycopy(value, 0, compressed, 0, compressed.length);
+        return compressed;
+    }
+
+    private byte[] body(final byte[] bytes) {
+        if ((bytes[1] & FLAG_COMPRESSED) == 0) {
+            final byte[] body = new byte[bytes.length - HEADER_LENGTH];
+            System.arraycopy(bytes, HEADER_LENGTH, body, 0, body.length);
+            return body;
+        }
+        final int length = ByteBuffer.wrap(bytes, HEADER_LENGTH, Integer.BYTES).getInt();
+        final byte[] body = new byte[length];
+        decompressor.decompress(bytes, HEADER_LENGTH + Integer.BYTES, body, 0, length);
+        return body;
+    }
+
+    private static void writePayment(final DataOutputStream out, final PaymentDTO payment) throws IOException {
+        final UUID id = toUUID(payment.getId());
+        int fields = 0;
+        fields |= id != null ? PAYMENT_ID : payment.getId() != null ? PAYMENT_ID_TEXT : 0;
+        fields |= payment.getCustomerId() != null ? PAYMENT_CUSTOMER_ID : 0;
+        fields |= payment.getAmount() != null ? PAYMENT_AMOUNT : 0;
+        fields |= payment.getPaymentMethodId() != null ? PAYMENT_METHOD_ID : 0;
+        fields |= payment.getStatus() != null ? PAYMENT_STATUS : 0;
+        fields |= payment.getProcessingTime() != null ? PAYMENT_PROCESSING_TIME : 0;
+        out.writeByte(fields);
+        if (id != null) {
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+        } else if (payment.getId() != null) {
+            out.writeUTF(payment.getId());
+        }
+        if (payment.getCustomerId() != null) {
+            out.writeUTF(payment.getCustomerId());
+        }
+        if (payment.getAmount() != null) {
+            out.writeDouble(payment.getAmount());
+        }
+        if (payment.getPaymentMethodId() != null) {
+            out.writeUTF(payment.getPaymentMethodId());
+        }
+        if (payment.getStatus() != null) {
+            out.writeUTF(payment.getStatus());
+        }
+        if (payment.getProcessingTime() != null) {
+            out.writeUTF(payment.getProcessingTime());
+        }
+    }
+
+    private static PaymentDTO readPayment(final DataInputStream in) throws IOException {
+        final int fields = in.readUnsignedByte();
+        final String id = (fields & PAYMENT_ID) != 0
+                ? new UUID(in.readLong(), in.readLong()).toString()
+                : (fields & PAYMENT_ID_TEXT) != 0 ? in.readUTF() : null;
+        final String customerId = (fields & PAYMENT_CUSTOMER_ID) != 0 ? in.readUTF() : null;
+        final Double amount = (fields & PAYMENT_AMOUNT) != 0 ? in.readDouble() : null;
+        final String paymentMethodId = (fields & PAYMENT_METHOD_ID) != 0 ? in.readUTF() : null;
+        final String status = (fields & PAYMENT_STATUS) != 0 ? in.readUTF() : null;
+        final String processingTime = (fields & PAYMENT_PROCESSING_TIME) != 0 ? in.readUTF() : null;
+        return new PaymentDTO(id, customerId, amount, paymentMethodId, status, processingTime);
+    }
+
+    private static void writePage(final DataOutputStream out, final ResponsePager<?> page) throws IOException {
+        int fields = 0;
+        fields |= page.currentPage() != null ? PAGE_CURRENT_PAGE : 0;
+        fields |= page.totalRecords() != null ? PAGE_TOTAL_RECORDS : 0;
+        fields |= page.totalPages() != null ? PAGE_TOTAL_PAGES : 0;
+        fields |= page.nextCursor() != null ? PAGE_NEXT_CURSOR : 0;
+        out.writeByte(fields);
+        if (page.currentPage() != null) {
+            out.writeInt(page.currentPage());
+        }
+        if (page.totalRecords() != null) {
+            out.writeLong(page.totalRecords());
+        }
+        if (page.totalPages() != null) {
+            out.writeInt(page.totalPages());
+        }
+        if (page.nextCursor() != null) {
+            out.writeUTF(page.nextCursor());
+        }
+        out.writeInt(page.content().size());
+        for (final Object payment : page.content()) {
+            if (!(payment instanceof PaymentDTO paymentDTO)) {
+                throw new SerializationException("Cache page content is not supported: "
+                        + (payment == null ? null : payment.getClass().getName()));
+            }
+            writePayment(out, paymentDTO);
+        }
+    }
+
+    private static ResponsePager<PaymentDTO> readPage(final DataInputStream in) throws IOException {
+        final int fields = in.readUnsignedByte();
+        final Integer currentPage = (fields & PAGE_CURRENT_PAGE) != 0 ? in.readInt() : null;
+        final Long totalRecords = (fields & PAGE_TOTAL_RECORDS) != 0 ? in.readLong() : null;
+        final Integer totalPages = (fields & PAGE_TOTAL_PAGES) != 0 ? in.readInt() : null;
+        final String nextCursor = (fields & PAGE_NEXT_CURSOR) != 0 ? in.readUTF() : null;
+        final int size = in.readInt();
+        final List<PaymentDTO> content = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            content.add(readPayment(in));
+        }
+        return new ResponsePager<>(content, currentPage, totalRecords, totalPages, nextCursor);
+    }
+
+    /**
+     * payment id as uuid when it is in canonical form, any other
+     * id is kept as text so it is read back unchanged
+     */
+    private static UUID toUUID(final String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            final UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.microservice.payment.cache;
+
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.util.ByteUtils;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * multi key access of a redis cache, entries are read with a single
+ * MGET and written with pipelined SET NX. Keys and values are encoded
+ * the same way redis cache does, so entries are shared with it
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+class RedisCacheBatch {
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisCache cache;
+    private final RedisCacheConfiguration configuration;
+
+    /**
+     * @param redisTemplate {@link StringRedisTemplate} provides redis connections
+     * @param cache         {@link RedisCache} cache whose entries are accessed
+     */
+    RedisCacheBatch(final StringRedisTemplate redisTemplate, final RedisCache cache) {
+        this.redisTemplate = redisTemplate;
+        this.cache = cache;
+        this.configuration = cache.getCacheConfiguration();
+    }
+
+    /**
+     * read entries with a single MGET
+     *
+     * @param keys {@link List<String>} cache keys
+     * @return {@link Map} cached value by key, missing keys are left out
+     */
+    Map<String, Object> getAll(final List<String> keys) {
+        final byte[][] cacheKeys = keys.stream().map(this::cacheKey).toArray(byte[][]::new);
+        final List<byte[]> values = redisTemplate.execute(
+                (RedisCallback<List<byte[]>>) connection -> connection.stringCommands().mGet(cacheKeys));
+        final Map<String, Object> found = new HashMap<>();
+        for (int i = 0; values != null && i < keys.size(); i++) {
+            final Object value = values.get(i) == null ? null
+                    : configuration.getValueSerializationPair().read(ByteBuffer.wrap(values.get(i)));
+            if (value != null) {
+                found.put(keys.get(i), value);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * write entries that are still missing with pipelined SET NX, an
+     * entry written meanwhile by a change is kept
+     *
+     * @param entries {@link Map} value by cache key
+     * @return {@link List<String>} keys that were written
+     */
+    List<String> putAllIfAbsent(final Map<String, Object> entries) {
+        final List<String> keys = new ArrayList<>(entries.keySet());
+        final List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> setIfAbsent(connection, key, entries.get(key)));
+            return null;
+        });
+        final List<String> written = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            if (Boolean.TRUE.equals(results.get(i))) {
+                written.add(keys.get(i));
+            }
+        }
+        return written;
+    }
+
+    private void setIfAbsent(final RedisConnection connection, final String key, final Object value) {
+        final Duration ttl = configuration.getTtlFunction().getTimeToLive(key, value);
+        connection.stringCommands().set(cacheKey(key),
+                ByteUtils.getBytes(configuration.getValueSerializationPair().write(value)),
+                ttl.isZero() || ttl.isNegative() ? Expiration.persistent() : Expiration.from(ttl),
+                SetOption.ifAbsent());
+    }
+
+    private byte[] cacheKey(final String key) {
+        final String prefixed = configuration.usePrefix()
+                ? configuration.getKeyPrefixFor(cache.getName()) + key
+                : key;
+        return ByteUtils.getBytes(configuration.getKeySerializationPair().write(prefixed));
+    }
+}
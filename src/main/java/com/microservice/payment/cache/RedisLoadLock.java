@@ -0,0 +1,77 @@
+package com.microservice.payment.cache;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * short lived redis lock that lets a single instance load a missing
+ * cache entry while other instances wait for it to appear. Lock expires
+ * on its own so an instance that dies while loading never blocks others
+ * for longer than the lock timeout
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public class RedisLoadLock {
+
+    private static final String KEY_PREFIX = "cache-load:";
+    // release only the lock this instance still owns, it may have expired and been taken over
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration timeout;
+
+    /**
+     * @param redisTemplate {@link StringRedisTemplate} redis commands
+     * @param timeout       {@link Duration} lock expiry and maximum wait for another instance
+     */
+    public RedisLoadLock(final StringRedisTemplate redisTemplate, final Duration timeout) {
+        this.redisTemplate = redisTemplate;
+        this.timeout = timeout;
+    }
+
+    /**
+     * try to become the single loader of the entry
+     *
+     * @param cache {@link String} cache name
+     * @param key   {@link String} entry key
+     * @return {@link String} lock token, null when another instance is loading
+     */
+    String tryAcquire(final String cache, final String key) {
+        final String token = UUID.randomUUID().toString();
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey(cache, key), token, timeout))
+                ? token
+                : null;
+    }
+
+    /**
+     * release lock once entry was loaded
+     *
+     * @param cache {@link String} cache name
+     * @param key   {@link String} entry key
+     * @param token {@link String} token returned on acquire
+     */
+    void release(final String cache, final String key, final String token) {
+        redisTemplate.execute(RELEASE, List.of(lockKey(cache, key)), token);
+    }
+
+    /**
+     * maximum time to wait for another instance to load the entry
+     *
+     * @return {@link Duration} lock timeout
+     */
+    Duration getTimeout() {
+        return timeout;
+    }
+
+    private static String lockKey(final String cache, final String key) {
+        return KEY_PREFIX + cache + "::" + key;
+    }
+}
@@ -0,0 +1,383 @@
+package com.microservice.payment.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * cache that keeps a bounded in memory copy of entries in front of a
+ * shared remote cache. Reads are served from memory when possible and
+ * fall back to the remote cache, writes go to the remote cache first and
+ * every change is announced so other instances drop their local copy.
+ * Missing entries are loaded once per key on an instance, and when load
+ * lock is configured once per key across instances. Many keys are read
+ * and filled with a round trip per level when remote cache is redis
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+class TwoLevelCache implements BatchCache {
+
+    static final String METRIC_GETS = "cache.level.gets";
+    static final String METRIC_SIZE = "cache.level.size";
+    static final String METRIC_LOADS = "cache.level.loads";
+    private static final Duration LOAD_POLL_INTERVAL = Duration.ofMillis(20);
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache;
+    private final Cache remoteCache;
+    private final RedisCacheBatch remoteBatch;
+    private final Consumer<String> invalidation;
+    private final RedisLoadLock loadLock;
+    private final Map<String, CompletableFuture<ValueWrapper>> loading = new ConcurrentHashMap<>();
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Counter loads;
+    private final Counter coalescedLoads;
+    private final Counter awaitedLoads;
+
+    /**
+     * @param localCache    {@link com.github.benmanes.caffeine.cache.Cache} in memory level
+     * @param remoteCache   {@link Cache} shared remote level
+     * @param remoteBatch   {@link RedisCacheBatch} multi key access of remote level, null to access key by key
+     * @param invalidation  {@link Consumer} announces changed key to other instances, null key for all keys
+     * @param loadLock      {@link RedisLoadLock} lets one instance load a missing entry, null to load on every instance
+     * @param meterRegistry {@link MeterRegistry} registry of level metrics
+     */
+    TwoLevelCache(final com.github.benmanes.caffeine.cache.Cache<String, ValueWrapper> localCache,
+                  final Cache remoteCache,
+                  final RedisCacheBatch remoteBatch,
+                  final Consumer<String> invalidation,
+                  final RedisLoadLock loadLock,
+                  final MeterRegistry meterRegistry) {
+        this.name = remoteCache.getName();
+        this.localCache = localCache;
+        this.remoteCache = remoteCache;
+        this.remoteBatch = remoteBatch;
+        this.invalidation = invalidation;
+        this.loadLock = loadLock;
+        this.localHits = counter(meterRegistry, "local", "hit");
+        this.localMisses = counter(meterRegistry, "local", "miss");
+        this.remoteHits = counter(meterRegistry, "remote", "hit");
+        this.remoteMisses = counter(meterRegistry, "remote", "miss");
+        this.loads = loadCounter(meterRegistry, "loaded");
+        this.coalescedLoads = loadCounter(meterRegistry, "coalesced");
+        this.awaitedLoads = loadCounter(meterRegistry, "awaited");
+        Gauge.builder(METRIC_SIZE, localCache, com.github.benmanes.caffeine.cache.Cache::estimatedSize)
+                .tag("cache", name)
+                .tag("level", "local")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remoteCache.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(final Object key) {
+        final ValueWrapper local = getLocal(key);
+        if (local != null) {
+            return local;
+        }
+        final ValueWrapper remote = remoteCache.get(key);
+        if (remote == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        localCache.put(toKey(key), remote);
+        return remote;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(final Object key, final Class<T> type) {
+        final ValueWrapper wrapper = get(key);
+        final Object value = wrapper == null ? null : wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: "
+                    + value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * read through cache with a single loader per key, concurrent callers
+     * of this instance missing the same key wait for the result of the
+     * first one instead of loading it again
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(final Object key, final Callable<T> valueLoader) {
+        final ValueWrapper local = getLocal(key);
+        if (local != null) {
+            return (T) local.get();
+        }
+        final CompletableFuture<ValueWrapper> load = new CompletableFuture<>();
+        final CompletableFuture<ValueWrapper> inFlight = loading.putIfAbsent(toKey(key), load);
+        if (inFlight != null) {
+            coalescedLoads.increment();
+            try {
+                return (T) inFlight.join().get();
+            } catch (final CompletionException e) {
+                throw new ValueRetrievalException(key, valueLoader, e.getCause());
+            }
+        }
+        try {
+            final ValueWrapper loaded = load(key, valueLoader);
+            load.complete(loaded);
+            return (T) loaded.get();
+        } catch (final Exception e) {
+            load.completeExceptionally(e);
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            loading.remove(toKey(key), load);
+        }
+    }
+
+    /**
+     * local entries first, remaining keys are read from remote cache
+     * at once and copied to local cache
+     */
+    @Override
+    public Map<Object, Object> getAll(final Collection<?> keys) {
+        final Map<Object, Object> found = new LinkedHashMap<>();
+        final Map<String, Object> misses = new LinkedHashMap<>();
+        for (final Object key : keys) {
+            final ValueWrapper local = localCache.getIfPresent(toKey(key));
+            if (local != null && local.get() != null) {
+                found.put(key, local.get());
+            } else {
+                misses.put(toKey(key), key);
+            }
+        }
+        localHits.increment(found.size());
+        localMisses.increment(misses.size());
+        if (misses.isEmpty()) {
+            return found;
+        }
+        final Map<String, Object> remote = getAllRemote(new ArrayList<>(misses.keySet()));
+        remoteHits.increment(remote.size());
+        remoteMisses.increment(misses.size() - remote.size());
+        remote.forEach((key, value) -> {
+            localCache.put(key, new SimpleValueWrapper(value));
+            found.put(misses.get(key), value);
+        });
+        return found;
+    }
+
+    /**
+     * loaded entries are not announced, they did not change. Local
+     * copy is kept only for entries that were still missing remotely
+     */
+    @Override
+    public void putAllIfAbsent(final Map<?, ?> entries) {
+        final Map<String, Object> values = new HashMap<>();
+        entries.forEach((key, value) -> {
+            if (value != null) {
+                values.put(toKey(key), value);
+            }
+        });
+        if (values.isEmpty()) {
+            return;
+        }
+        final List<String> written = new ArrayList<>();
+        if (remoteBatch != null) {
+            written.addAll(remoteBatch.putAllIfAbsent(values));
+        } else {
+            values.forEach((key, value) -> {
+                if (remoteCache.putIfAbsent(key, value) == null) {
+                    written.add(key);
+                }
+            });
+        }
+        written.forEach(key -> localCache.put(key, new SimpleValueWrapper(values.get(key))));
+    }
+
+    @Override
+    public void put(final Object key, final Object value) {
+        remoteCache.put(key, value);
+        localCache.put(toKey(key), new SimpleValueWrapper(value));
+        invalidation.accept(toKey(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(final Object key, final Object value) {
+        final ValueWrapper existing = remoteCache.putIfAbsent(key, value);
+        localCache.put(toKey(key), existing == null ? new SimpleValueWrapper(value) : existing);
+        if (existing == null) {
+            invalidation.accept(toKey(key));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(final Object key) {
+        remoteCache.evict(key);
+        localCache.invalidate(toKey(key));
+        invalidation.accept(toKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(final Object key) {
+        final boolean evicted = remoteCache.evictIfPresent(key);
+        localCache.invalidate(toKey(key));
+        invalidation.accept(toKey(key));
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        remoteCache.clear();
+        localCache.invalidateAll();
+        invalidation.accept(null);
+    }
+
+    @Override
+    public boolean invalidate() {
+        final boolean invalidated = remoteCache.invalidate();
+        localCache.invalidateAll();
+        invalidation.accept(null);
+        return invalidated;
+    }
+
+    /**
+     * drop local copy after another instance changed the entry
+     *
+     * @param key {@link String} changed key, null when every entry changed
+     */
+    void evictLocal(final String key) {
+        if (key == null) {
+            localCache.invalidateAll();
+        } else {
+            localCache.invalidate(key);
+        }
+    }
+
+    /**
+     * load missing entry from remote cache or value loader, with load lock
+     * only lock owner calls value loader while other instances wait for
+     * the entry to show up in remote cache. Loaded entry is only stored
+     * where the key is still missing, so a change cached meanwhile is not
+     * overwritten by a stale row. Loaded entry is not announced, it did
+     * not change
+     */
+    private ValueWrapper load(final Object key, final Callable<?> valueLoader) throws Exception {
+        final ValueWrapper remote = remoteCache.get(key);
+        if (remote != null) {
+            remoteHits.increment();
+            localCache.put(toKey(key), remote);
+            return remote;
+        }
+        remoteMisses.increment();
+        final String token = loadLock == null ? null : loadLock.tryAcquire(name, toKey(key));
+        try {
+            if (loadLock != null && token == null) {
+                final ValueWrapper awaited = awaitRemote(key);
+                if (awaited != null) {
+                    awaitedLoads.increment();
+                    localCache.put(toKey(key), awaited);
+                    return awaited;
+                }
+            }
+            final Object value = valueLoader.call();
+            loads.increment();
+            // loaded row may be older than a change cached while loading, cached entry wins
+            final ValueWrapper existing = value == null ? null : remoteCache.putIfAbsent(key, value);
+            final ValueWrapper loaded = existing == null ? new SimpleValueWrapper(value) : existing;
+            final ValueWrapper local = localCache.asMap().putIfAbsent(toKey(key), loaded);
+            return local == null ? loaded : local;
+        } finally {
+            if (token != null) {
+                loadLock.release(name, toKey(key), token);
+            }
+        }
+    }
+
+    /**
+     * wait for another instance to load the entry, gives up after
+     * lock timeout so a slow or failed loader does not block readers
+     */
+    private ValueWrapper awaitRemote(final Object key) {
+        final long deadline = System.nanoTime() + loadLock.getTimeout().toNanos();
+        try {
+            while (System.nanoTime() < deadline) {
+                Thread.sleep(LOAD_POLL_INTERVAL.toMillis());
+                final ValueWrapper remote = remoteCache.get(key);
+                if (remote != null) {
+                    return remote;
+                }
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private Map<String, Object> getAllRemote(final List<String> keys) {
+        if (remoteBatch != null) {
+            return remoteBatch.getAll(keys);
+        }
+        final Map<String, Object> found = new HashMap<>();
+        keys.forEach(key -> {
+            final ValueWrapper remote = remoteCache.get(key);
+            if (remote != null && remote.get() != null) {
+                found.put(key, remote.get());
+            }
+        });
+        return found;
+    }
+
+    private ValueWrapper getLocal(final Object key) {
+        final ValueWrapper local = localCache.getIfPresent(toKey(key));
+        (local == null ? localMisses : localHits).increment();
+        return local;
+    }
+
+    /**
+     * keys are compared by their string form, same as remote
+     * cache does, so keys announced by other instances match
+     */
+    private static String toKey(final Object key) {
+        return String.valueOf(key);
+    }
+
+    private Counter loadCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder(METRIC_LOADS)
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter counter(final MeterRegistry meterRegistry, final String level, final String result) {
+        return Counter.builder(METRIC_GETS)
+                .tag("cache", name)
+                .tag("level", level)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,168 @@
+package com.microservice.payment.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * cache manager that puts a bounded caffeine cache of every instance in
+ * front of the shared redis cache. Changes are broadcast through redis
+ * pub/sub so every other instance drops its local copy, local entries
+ * also expire after a short time to live which bounds staleness when a
+ * broadcast is missed while redis is unreachable. Missing entries are
+ * loaded once per key on every instance, with load lock once per key
+ * across instances
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+public class TwoLevelCacheManager implements CacheManager, MessageListener {
+
+    private final CacheManager remoteCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final String channel;
+    private final long maximumSize;
+    private final Duration timeToLive;
+    private final RedisLoadLock loadLock;
+
+    // identifies broadcasts of this instance, own changes are already applied locally
+    private final String origin = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param remoteCacheManager            {@link CacheManager} shared redis cache manager
+     * @param redisTemplate                 {@link StringRedisTemplate} publishes invalidations
+     * @param redisMessageListenerContainer {@link RedisMessageListenerContainer} receives invalidations
+     * @param objectMapper                  {@link ObjectMapper} invalidation json mapper
+     * @param meterRegistry                 {@link MeterRegistry} registry of level metrics
+     * @param channel                       {@link String} invalidation channel
+     * @param maximumSize                   local entries kept per cache
+     * @param timeToLive                    {@link Duration} local entry time to live
+     * @param loadLock                      {@link RedisLoadLock} single loader across instances, null when disabled
+     */
+    public TwoLevelCacheManager(final CacheManager remoteCacheManager,
+                                final StringRedisTemplate redisTemplate,
+                                final RedisMessageListenerContainer redisMessageListenerContainer,
+                                final ObjectMapper objectMapper,
+                                final MeterRegistry meterRegistry,
+                                final String channel,
+                                final long maximumSize,
+                                final Duration timeToLive,
+                                final RedisLoadLock loadLock) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.channel = channel;
+        this.maximumSize = maximumSize;
+        this.timeToLive = timeToLive;
+        this.loadLock = loadLock;
+    }
+
+    @PostConstruct
+    void listen() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(channel));
+    }
+
+    @Override
+    public Cache getCache(final String name) {
+        final TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        final Cache remoteCache = remoteCacheManager.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, key -> new TwoLevelCache(
+                Caffeine.newBuilder()
+                        .maximumSize(maximumSize)
+                        .expireAfterWrite(timeToLive)
+                        .build(),
+                remoteCache,
+                remoteCache instanceof RedisCache redisCache ? new RedisCacheBatch(redisTemplate, redisCache) : null,
+                changedKey -> broadcast(name, changedKey),
+                loadLock,
+                meterRegistry));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    /**
+     * invalidation broadcast by any instance, own broadcasts are skipped
+     *
+     * @param message {@link Message} invalidation json
+     * @param pattern subscribed pattern
+     */
+    @Override
+    public void onMessage(final Message message, final byte[] pattern) {
+        try {
+            final Invalidation invalidation = objectMapper.readValue(
+                    new String(message.getBody(), StandardCharsets.UTF_8), Invalidation.class);
+            if (origin.equals(invalidation.origin())) {
+                return;
+            }
+            final TwoLevelCache cache = caches.get(invalidation.cache());
+            if (cache != null) {
+                cache.evictLocal(invalidation.key());
+            }
+        } catch (final IOException e) {
+            log.error("Cache invalidation could not be read, error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * announce changed key to other instances, when redis is not reachable
+     * their local copies are left to expire
+     *
+     * @param cache {@link String} cache name
+     * @param key   {@link String} changed key, null when every entry changed
+     */
+    private void broadcast(final String cache, final String key) {
+        try {
+            redisTemplate.convertAndSend(channel, objectMapper.writeValueAsString(
+                    new Invalidation(origin, cache, key)));
+        } catch (final JsonProcessingException e) {
+            log.error("Cache invalidation could not be written: {}, error: {}", cache, e.getMessage());
+        } catch (final Exception e) {
+            log.warn("Cache invalidation could not be broadcast: {}, error: {}", cache, e.getMessage());
+        }
+    }
+
+    /**
+     * local cache invalidation broadcast between instances
+     *
+     * @param origin {@link String} instance that changed the entry
+     * @param cache  {@link String} cache name
+     * @param key    {@link String} changed key, null when every entry changed
+     */
+    record Invalidation(String origin, String cache, String key) {
+    }
+}
@@ -5,6 +5,8 @@ import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilde
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Clock;
+
 import static com.fasterxml.jackson.databind.DeserializationFeature.READ_UNKNOWN_ENUM_VALUES_USING_DEFAULT_VALUE;
 
 /**
@@ -28,4 +30,15 @@ public class AppConfig {
               .featuresToEnable(READ_UNKNOWN_ENUM_VALUES_USING_DEFAULT_VALUE)
               .serializationInclusion(JsonInclude.Include.NON_NULL);
    }
+
+   /**
+    * application clock, injected wherever current time is required
+    * so that time based behaviour can be controlled in tests
+    *
+    * @return {@link Clock} UTC system clock
+    */
+   @Bean
+   public Clock clock() {
+      return Clock.systemUTC();
+   }
 }
@@ -0,0 +1,99 @@
+package com.microservice.payment.config;
+
+import com.microservice.payment.datasource.ReplicaRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class resides read replica configuration, read only transactions
+ * are routed to replicas while writes, locks and migrations stay on
+ * primary. Replicas share credentials and pool settings of primary
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Configuration
+@ConditionalOnProperty(name = "payment.datasource.replica.enabled", havingValue = "true")
+public class DataSourceConfig {
+
+    @Value("${payment.datasource.replica.urls}")
+    private List<String> replicaUrls;
+    @Value("${payment.datasource.replica.max-lag:PT10S}")
+    private Duration maxLag;
+    @Value("${payment.datasource.replica.sticky-window:PT15S}")
+    private Duration stickyWindow;
+    @Value("${payment.datasource.replica.health-check-interval:PT5S}")
+    private Duration healthCheckInterval;
+
+    /**
+     * primary data source configured through spring datasource properties
+     *
+     * @param properties {@link DataSourceProperties} spring datasource properties
+     * @return {@link HikariDataSource} primary pool
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(final DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    /**
+     * routing data source over primary and one pool per replica
+     *
+     * @param primaryDataSource {@link HikariDataSource} primary pool
+     * @return {@link ReplicaRoutingDataSource} routing data source
+     */
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(final HikariDataSource primaryDataSource) {
+        validateStickyWindow();
+        final List<DataSource> replicas = new ArrayList<>(replicaUrls.size());
+        for (int index = 0; index < replicaUrls.size(); index++) {
+            final HikariDataSource replica = new HikariDataSource();
+            primaryDataSource.copyStateTo(replica);
+            replica.setJdbcUrl(replicaUrls.get(index));
+            replica.setPoolName("replica-" + index);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxLag);
+    }
+
+    /**
+     * application data source, connection is fetched on first statement
+     * so that routing sees whether the transaction is read only
+     *
+     * @param replicaRoutingDataSource {@link ReplicaRoutingDataSource} routing data source
+     * @return {@link DataSource} lazy data source
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(final ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    /**
+     * replica is removed from rotation only after it lagged more than max
+     * lag at a health check, so sticky window must cover both or a recent
+     * write may still be read from a replica that does not have it yet
+     */
+    private void validateStickyWindow() {
+        final Duration required = maxLag.plus(healthCheckInterval);
+        if (stickyWindow.compareTo(required) < 0) {
+            throw new IllegalStateException(String.format(
+                    "Replica sticky window %s must be at least max lag plus health check interval %s",
+                    stickyWindow, required));
+        }
+    }
+}
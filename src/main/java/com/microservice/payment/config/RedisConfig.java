@@ -1,6 +1,11 @@
 package com.microservice.payment.config;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservice.payment.cache.PaymentRedisSerializer;
+import com.microservice.payment.cache.RedisLoadLock;
+import com.microservice.payment.cache.TwoLevelCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,8 +13,11 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 import java.time.Duration;
 
@@ -31,8 +39,22 @@ public class RedisConfig {
 
     @Value("${cache.payment.time-to-live:10}")
     private int paymentTTL;
+    @Value("${cache.payment.codec:binary}")
+    private String paymentCodec;
+    @Value("${cache.payment.compression-threshold:1024}")
+    private int paymentCompressionThreshold;
     @Value("${cache.default.time-to-live:5}")
     private int defaultTTL;
+    @Value("${cache.local.maximum-size:10000}")
+    private long localMaximumSize;
+    @Value("${cache.local.time-to-live:60}")
+    private int localTTL;
+    @Value("${cache.invalidation.channel:cache-invalidation}")
+    private String invalidationChannel;
+    @Value("${cache.load-lock.enabled:true}")
+    private boolean loadLockEnabled;
+    @Value("${cache.load-lock.timeout:PT2S}")
+    private Duration loadLockTimeout;
 
     /**
      * create default redis connection factory that will be used
@@ -46,41 +68,92 @@ public class RedisConfig {
         return new LettuceConnectionFactory(configuration);
     }
 
+    /**
+     * configure two level cache, every instance keeps a bounded local
+     * copy of hot entries in front of the shared redis cache. Missing
+     * entries are loaded by a single instance when load lock is enabled
+     *
+     * @param redisTemplate {@link StringRedisTemplate} publishes invalidations
+     * @param objectMapper  {@link ObjectMapper} invalidation json mapper
+     * @param meterRegistry {@link MeterRegistry} registry of cache level metrics
+     * @return {@link TwoLevelCacheManager}
+     */
+    @Bean
+    public TwoLevelCacheManager cacheManager(final StringRedisTemplate redisTemplate,
+                                             final ObjectMapper objectMapper,
+                                             final MeterRegistry meterRegistry) {
+        return new TwoLevelCacheManager(redisCacheManager(), redisTemplate, redisMessageListenerContainer(),
+                objectMapper, meterRegistry, invalidationChannel, localMaximumSize, Duration.ofSeconds(localTTL),
+                loadLockEnabled ? new RedisLoadLock(redisTemplate, loadLockTimeout) : null);
+    }
+
     /**
      * configure different types of cache, here payment is cached
-     * with payment time to live
+     * with payment time to live and its own value codec
      *
      * @return {@link RedisCacheManager}
      */
-    @Bean
-    public RedisCacheManager cacheManager() {
-        final RedisCacheConfiguration cacheConfig = myDefaultCacheConfig(Duration.ofMinutes(defaultTTL))
+    private RedisCacheManager redisCacheManager() {
+        final RedisCacheConfiguration cacheConfig = myDefaultCacheConfig(Duration.ofMinutes(defaultTTL),
+                new GenericJackson2JsonRedisSerializer())
                 .disableCachingNullValues();
-        return RedisCacheManager
+        final RedisCacheManager redisCacheManager = RedisCacheManager
                 .builder(redisConnectionFactory())
                 .cacheDefaults(cacheConfig)
                 .withCacheConfiguration(
                         CACHE_PAYMENT,
-                        myDefaultCacheConfig(Duration.ofMinutes(paymentTTL))
+                        myDefaultCacheConfig(Duration.ofMinutes(paymentTTL),
+                                serializer(paymentCodec, paymentCompressionThreshold))
                 )
                 .build();
+        redisCacheManager.initializeCaches();
+        return redisCacheManager;
+    }
+
+    /**
+     * listener container that dispatches redis pub/sub messages
+     * to listeners registered by application components
+     *
+     * @return {@link RedisMessageListenerContainer}
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer() {
+        final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory());
+        return container;
     }
 
     /**
      * create default cache configuration that will be used by
      * different cache manager
      *
-     * @param duration {@link Duration} minutes
+     * @param duration   {@link Duration} minutes
+     * @param serializer {@link RedisSerializer} cache value serializer
      * @return {@link RedisCacheConfiguration} configuration
      */
-    private RedisCacheConfiguration myDefaultCacheConfig(final Duration duration) {
+    private RedisCacheConfiguration myDefaultCacheConfig(final Duration duration,
+                                                         final RedisSerializer<?> serializer) {
         return RedisCacheConfiguration
                 .defaultCacheConfig()
                 .entryTtl(duration)
                 .serializeValuesWith(RedisSerializationContext
                         .SerializationPair
-                        .fromSerializer(
-                                new GenericJackson2JsonRedisSerializer()
-                        ));
+                        .fromSerializer(serializer));
+    }
+
+    /**
+     * cache value serializer by codec name, json stores any value while
+     * binary stores payments and payment pages only in compact form
+     *
+     * @param codec                {@link String} json or binary
+     * @param compressionThreshold binary values of at least this many bytes are compressed
+     * @return {@link RedisSerializer} cache value serializer
+     */
+    private static RedisSerializer<?> serializer(final String codec, final int compressionThreshold) {
+        return switch (codec) {
+            case "json" -> new GenericJackson2JsonRedisSerializer();
+            case "binary" -> new PaymentRedisSerializer(compressionThreshold);
+            default -> throw new IllegalArgumentException("Cache codec is not supported: " + codec);
+        };
     }
 }
\ No newline at end of file
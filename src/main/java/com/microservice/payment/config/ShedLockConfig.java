@@ -1,6 +1,8 @@
 package com.microservice.payment.config;
 
+import net.javacrumbs.shedlock.core.DefaultLockingTaskExecutor;
 import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.LockingTaskExecutor;
 import net.javacrumbs.shedlock.provider.jdbctemplate.JdbcTemplateLockProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -39,4 +41,16 @@ public class ShedLockConfig {
                         .build()
         );
     }
+
+    /**
+     * locking task executor used to acquire scheduler lock programmatically
+     * when lock has to be applied conditionally
+     *
+     * @param lockProvider {@link LockProvider} configured lock provider
+     * @return {@link LockingTaskExecutor}
+     */
+    @Bean
+    public LockingTaskExecutor lockingTaskExecutor(final LockProvider lockProvider) {
+        return new DefaultLockingTaskExecutor(lockProvider);
+    }
 }
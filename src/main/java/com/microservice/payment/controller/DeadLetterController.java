@@ -0,0 +1,141 @@
+package com.microservice.payment.controller;
+
+import com.microservice.payment.dto.Response;
+import com.microservice.payment.dto.ResponsePager;
+import com.microservice.payment.dto.payment.DeadLetterDTO;
+import com.microservice.payment.service.impl.DeadLetterService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+/**
+ * admin controller that provide accessibility to payments
+ * that exhausted their settlement attempts. This controller
+ * helps operators to inspect and replay dead lettered payments
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@RestController
+@RequiredArgsConstructor
+@RequestMapping(path = "admin/dead-letter", produces = APPLICATION_JSON_VALUE)
+public class DeadLetterController {
+
+    private final DeadLetterService deadLetterService;
+
+    /**
+     * This function retrieve dead lettered payments with pagination
+     *
+     * @param pageRequest {@link Pageable} page size properties
+     * @return {@link ResponseEntity<ResponsePager>} response with dead letters
+     */
+    @Operation(summary = "Returns a paginated list of dead lettered payments")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    content = @Content(
+                            examples = {
+                                    @ExampleObject(
+                                            name = "searchDeadLetters",
+                                            summary = "Returns dead lettered payments with pagination",
+                                            value = """
+                                                        {
+                                                            "content": ["{dead letter object}",
+                                                                        "{dead letter object}"],
+                                                            "currentPage": 0,
+                                                            "totalRecords": 2,
+                                                            "totalPages": 1
+                                                        }
+                                                    """
+                                    )
+                            }))
+    })
+    @GetMapping()
+    public ResponseEntity<?> searchDeadLetters(final Pageable pageRequest) {
+        log.info("Search dead letters api initiated");
+        final Page<DeadLetterDTO> deadLetters = deadLetterService.getDeadLetters(pageRequest);
+        log.info("Search dead letters api completed");
+        return ResponseEntity
+                .status(OK)
+                .body(new ResponsePager<>(deadLetters.getContent(),
+                        deadLetters.getNumber(),
+                        deadLetters.getTotalElements(),
+                        deadLetters.getTotalPages()
+                ));
+    }
+
+    /**
+     * This function replay oldest dead lettered payments in bulk
+     *
+     * @param limit maximum dead letters to replay
+     * @return {@link ResponseEntity<Response>} response with total replayed payments or error
+     */
+    @Operation(summary = "replay dead lettered payments in bulk")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    content = @Content(
+                            examples = {
+                                    @ExampleObject(
+                                            name = "replayDeadLetters",
+                                            summary = "Replay dead letters and returns total replayed payments",
+                                            value = """
+                                                        {
+                                                            "statusCode": 200,
+                                                            "content": 25
+                                                        }
+                                                    """
+                                    )
+                            })),
+            @ApiResponse(responseCode = "400",
+                    content = @Content(
+                            schema = @Schema(implementation = Response.class),
+                            examples = {
+                                    @ExampleObject(
+                                            name = "replayDeadLetters",
+                                            summary = "Replay dead letters with invalid limit",
+                                            value = """
+                                                        {
+                                                            "statusCode": 400,
+                                                            "content": "limit must be between 1 and 1000"
+                                                        }
+                                                    """
+                                    )
+                            }))
+    })
+    @PostMapping("/replay")
+    public ResponseEntity<Response<?>> replayDeadLetters(
+            @RequestParam(name = "limit", defaultValue = "100") final int limit) {
+        try {
+            log.info("Replay dead letters api initiated, limit: {}", limit);
+            final int replayed = deadLetterService.replay(limit);
+            log.info("Replay dead letters api completed, replayed: {}", replayed);
+            return ResponseEntity
+                    .status(OK)
+                    .body(new Response<>(replayed, OK.value()));
+        } catch (final IllegalArgumentException e) {
+            log.error("Error occurred: {}", e.getMessage());
+            return ResponseEntity
+                    .status(BAD_REQUEST)
+                    .body(new Response<>(e.getMessage(), BAD_REQUEST.value()));
+        }
+    }
+}
@@ -2,10 +2,15 @@ package com.microservice.payment.controller;
 
 import com.microservice.payment.dto.Response;
 import com.microservice.payment.dto.ResponsePager;
+import com.microservice.payment.dto.payment.PaymentBatchItemDTO;
 import com.microservice.payment.dto.payment.PaymentDTO;
 import com.microservice.payment.exception.GenericException;
 import com.microservice.payment.exception.NotFoundException;
+import com.microservice.payment.idempotency.IdempotencyStore;
+import com.microservice.payment.lock.PaymentLock;
+import com.microservice.payment.ratelimit.CustomerRateLimiter;
 import com.microservice.payment.service.impl.PaymentService;
+import com.microservice.payment.stream.PaymentStreamHub;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
@@ -16,8 +21,6 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.ResponseEntity;
@@ -26,12 +29,18 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.util.List;
 import java.util.Objects;
 
-import static com.microservice.payment.utils.Constants.CACHE_PAYMENT;
+import static com.microservice.payment.idempotency.IdempotencyStore.HEADER_IDEMPOTENCY_KEY;
+import static com.microservice.payment.ratelimit.CustomerRateLimiter.Endpoint.ADD_PAYMENT;
+import static com.microservice.payment.ratelimit.CustomerRateLimiter.Endpoint.UPDATE_PAYMENT;
 import static com.microservice.payment.utils.Constants.PAYMENT_SERVICE;
 import static com.microservice.payment.utils.Constants.REQUIRE_ID;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
@@ -39,6 +48,7 @@ import static org.springframework.http.HttpStatus.CREATED;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.HttpStatus.OK;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE;
 
 /**
  * Payment controller that provide accessibility
@@ -55,11 +65,18 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final PaymentStreamHub paymentStreamHub;
+    private final IdempotencyStore idempotencyStore;
+    private final PaymentLock paymentLock;
+    private final CustomerRateLimiter customerRateLimiter;
 
     /**
-     * This function add user payment received through post api
+     * This function add user payment received through post api, retries
+     * of a customer sharing the same idempotency key get the response of
+     * the first request without creating the payment again
      *
-     * @param paymentDTO {@link PaymentDTO} payment payload
+     * @param paymentDTO     {@link PaymentDTO} payment payload
+     * @param idempotencyKey {@link String} optional key identifying retries of the same request
      * @return {@link ResponseEntity<Response>} response with message or error
      */
     @Operation(summary = "add payment")
@@ -80,6 +97,34 @@ public class PaymentController {
                                                     """
                                     )
                             })),
+            @ApiResponse(responseCode = "409",
+                    content = @Content(
+                            schema = @Schema(implementation = Response.class),
+                            examples = {
+                                    @ExampleObject(name = "addPayment",
+                                            summary = "Adding payment with idempotency key of another request",
+                                            value = """
+                                                        {
+                                                            "statusCode": 409,
+                                                            "content": "Idempotency-Key was already used with another request"
+                                                        }
+                                                    """
+                                    )
+                            })),
+            @ApiResponse(responseCode = "429",
+                    content = @Content(
+                            schema = @Schema(implementation = Response.class),
+                            examples = {
+                                    @ExampleObject(name = "addPayment",
+                                            summary = "Adding payments faster than rate limit of the customer",
+                                            value = """
+                                                        {
+                                                            "statusCode": 429,
+                                                            "content": "Too many requests, retry after 1 seconds"
+                                                        }
+                                                    """
+                                    )
+                            })),
             @ApiResponse(responseCode = "500",
                     content = @Content(
                             schema = @Schema(implementation = Response.class),
@@ -96,16 +141,20 @@ public class PaymentController {
                             }))
     })
     @PostMapping()
-    @CachePut(value = CACHE_PAYMENT, key = "#id")
     @CircuitBreaker(name = PAYMENT_SERVICE, fallbackMethod = "serviceUnavailable")
-    public ResponseEntity<Response<?>> addPayment(final @Valid @RequestBody PaymentDTO paymentDTO) {
+    public ResponseEntity<Response<?>> addPayment(final @Valid @RequestBody PaymentDTO paymentDTO,
+                                                  @RequestHeader(name = HEADER_IDEMPOTENCY_KEY, required = false)
+                                                  final String idempotencyKey) {
         try {
             log.info("Pay api initiated: {}", paymentDTO.getPaymentMethodId());
-            final PaymentDTO responseDTO = paymentService.pay(paymentDTO);
-            log.info("Payment add api completed");
-            return ResponseEntity
-                    .status(CREATED)
-                    .body(new Response<>(responseDTO, CREATED.value()));
+            return idempotencyStore.execute(paymentDTO.getCustomerId(), idempotencyKey, paymentDTO, () -> {
+                customerRateLimiter.acquire(ADD_PAYMENT, paymentDTO.getCustomerId());
+                final PaymentDTO responseDTO = paymentService.pay(paymentDTO);
+                log.info("Payment add api completed");
+                return ResponseEntity
+                        .status(CREATED)
+                        .body(new Response<>(responseDTO, CREATED.value()));
+            });
         } catch (final GenericException | IllegalArgumentException e) {
             log.error("Error occurred: {}", e.getMessage());
             return ResponseEntity
@@ -114,6 +163,75 @@ public class PaymentController {
         }
     }
 
+    /**
+     * This function add payments of a batch received through post api,
+     * every payment is validated on its own and reported with its result
+     *
+     * @param paymentDTOs {@link List<PaymentDTO>} payment payloads
+     * @return {@link ResponseEntity<Response>} response with result of every payment or error
+     */
+    @Operation(summary = "add payments in bulk")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    content = @Content(
+                            examples = {
+                                    @ExampleObject(name = "addPayments",
+                                            summary = "Adding payments and returns result of every payment",
+                                            value = """
+                                                        {
+                                                            "statusCode": 200,
+                                                            "content": [
+                                                                {
+                                                                    "index": 0,
+                                                                    "statusCode": 201,
+                                                                    "payment": "{payment object}",
+                                                                    "error": null
+                                                                },
+                                                                {
+                                                                    "index": 1,
+                                                                    "statusCode": 400,
+                                                                    "payment": null,
+                                                                    "error": "customerId is required"
+                                                                }
+                                                            ]
+                                                        }
+                                                    """
+                                    )
+                            })),
+            @ApiResponse(responseCode = "400",
+                    content = @Content(
+                            schema = @Schema(implementation = Response.class),
+                            examples = {
+                                    @ExampleObject(name = "addPayments",
+                                            summary = "Adding payments with empty or oversized batch",
+                                            value = """
+                                                        {
+                                                            "statusCode": 400,
+                                                            "content": "batch must contain between 1 and 1000 payments"
+                                                        }
+                                                    """
+                                    )
+                            }))
+    })
+    @PostMapping("/batch")
+    @CircuitBreaker(name = PAYMENT_SERVICE, fallbackMethod = "serviceUnavailable")
+    public ResponseEntity<Response<?>> addPayments(final @RequestBody List<PaymentDTO> paymentDTOs) {
+        try {
+            log.info("Pay batch api initiated, size: {}", paymentDTOs.size());
+            final List<PaymentBatchItemDTO> responseDTOs = paymentService.payAll(paymentDTOs);
+            log.info("Payment batch add api completed");
+            return ResponseEntity
+                    .status(OK)
+                    .body(new Response<>(responseDTOs, OK.value()));
+        } catch (final IllegalArgumentException e) {
+            log.error("Error occurred: {}", e.getMessage());
+            return ResponseEntity
+                    .status(BAD_REQUEST)
+                    .body(new Response<>(e.getMessage(), BAD_REQUEST.value()));
+        }
+    }
+
     /**
      * This function update existing pending payment through post api
      *
@@ -155,6 +273,34 @@ public class PaymentController {
                                                     """
                                     )
                             })),
+            @ApiResponse(responseCode = "409",
+                    content = @Content(
+                            schema = @Schema(implementation = Response.class),
+                            examples = {
+                                    @ExampleObject(name = "updatePayment",
+                                            summary = "Updating payment while another change of it does not finish in time",
+                                            value = """
+                                                        {
+                                                            "statusCode": 409,
+                                                            "content": "Payment is being modified by another request: {id}"
+                                                        }
+                                                    """
+                                    )
+                            })),
+            @ApiResponse(responseCode = "429",
+                    content = @Content(
+                            schema = @Schema(implementation = Response.class),
+                            examples = {
+                                    @ExampleObject(name = "updatePayment",
+                                            summary = "Updating payments faster than rate limit of the customer",
+                                            value = """
+                                                        {
+                                                            "statusCode": 429,
+                                                            "content": "Too many requests, retry after 1 seconds"
+                                                        }
+                                                    """
+                                    )
+                            })),
             @ApiResponse(responseCode = "500",
                     content = @Content(
                             schema = @Schema(implementation = Response.class),
@@ -177,7 +323,9 @@ public class PaymentController {
         try {
             log.info("Update payment api initiated: {}", id);
             Objects.requireNonNull(id, "id is required");
-            final PaymentDTO responseDTO = paymentService.update(id, paymentDTO);
+            // payload customer is not trusted, limit is charged to owner of the payment before locking it
+            customerRateLimiter.acquire(UPDATE_PAYMENT, paymentService.get(id).getCustomerId());
+            final PaymentDTO responseDTO = paymentLock.execute(id, () -> paymentService.update(id, paymentDTO));
             log.info("Payment update api completed, {}", id);
             return ResponseEntity
                     .status(OK)
@@ -249,7 +397,6 @@ public class PaymentController {
                             }))
     })
     @GetMapping("/{id}")
-    @CachePut(value = CACHE_PAYMENT, key = "#id")
     public ResponseEntity<Response<?>> getPayment(@PathVariable("id") final String id) {
         log.info("get customer api: {}", id);
         try {
@@ -274,6 +421,74 @@ public class PaymentController {
 
     }
 
+    /**
+     * This function retrieve many payments by id in a single call,
+     * every id is reported with its result in request order
+     *
+     * @param ids {@link List<String>} payment ids
+     * @return {@link ResponseEntity<Response>} response with result of every id or error
+     */
+    @Operation(summary = "get payments by ids in bulk")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    content = @Content(
+                            examples = {
+                                    @ExampleObject(name = "lookupPayments",
+                                            summary = "Fetching payments and returns result of every id",
+                                            value = """
+                                                        {
+                                                            "statusCode": 200,
+                                                            "content": [
+                                                                {
+                                                                    "index": 0,
+                                                                    "statusCode": 200,
+                                                                    "payment": "{payment object}",
+                                                                    "error": null
+                                                                },
+                                                                {
+                                                                    "index": 1,
+                                                                    "statusCode": 404,
+                                                                    "payment": null,
+                                                                    "error": "Payment not found"
+                                                                }
+                                                            ]
+                                                        }
+                                                    """
+                                    )
+                            })),
+            @ApiResponse(responseCode = "400",
+                    content = @Content(
+                            schema = @Schema(implementation = Response.class),
+                            examples = {
+                                    @ExampleObject(name = "lookupPayments",
+                                            summary = "Fetching payments with empty or oversized id list",
+                                            value = """
+                                                        {
+                                                            "statusCode": 400,
+                                                            "content": "lookup must contain between 1 and 1000 ids"
+                                                        }
+                                                    """
+                                    )
+                            }))
+    })
+    @PostMapping("/lookup")
+    public ResponseEntity<Response<?>> lookupPayments(final @RequestBody List<String> ids) {
+        try {
+            log.info("Lookup payments api initiated, size: {}", ids.size());
+            final List<PaymentBatchItemDTO> responseDTOs = paymentService.lookup(ids);
+            log.info("Lookup payments api completed");
+            return ResponseEntity
+                    .status(OK)
+                    .body(new Response<>(responseDTOs, OK.value()));
+        } catch (final IllegalArgumentException e) {
+            log.error("Error occurred: {}", e.getMessage());
+            return ResponseEntity
+                    .status(BAD_REQUEST)
+                    .body(new Response<>(e.getMessage(), BAD_REQUEST.value()));
+        }
+    }
+
     /**
      * This function cancel user pending payment based on conditions
      *
@@ -327,6 +542,20 @@ public class PaymentController {
                                                     """
                                     )
                             })),
+            @ApiResponse(responseCode = "409",
+                    content = @Content(
+                            schema = @Schema(implementation = Response.class),
+                            examples = {
+                                    @ExampleObject(name = "cancelPayment",
+                                            summary = "Cancelling payment while another change of it does not finish in time",
+                                            value = """
+                                                        {
+                                                            "statusCode": 409,
+                                                            "content": "Payment is being modified by another request: {id}"
+                                                        }
+                                                    """
+                                    )
+                            })),
             @ApiResponse(responseCode = "500",
                     content = @Content(
                             schema = @Schema(implementation = Response.class),
@@ -343,13 +572,12 @@ public class PaymentController {
                             }))
     })
     @GetMapping("/cancel/{id}")
-    @Cacheable(value = CACHE_PAYMENT, key = "#id")
     @CircuitBreaker(name = PAYMENT_SERVICE, fallbackMethod = "serviceUnavailable")
     public ResponseEntity<Response<?>> cancelPayment(@PathVariable("id") final String id) {
         try {
             log.info("Payment cancel api initiated: {}", id);
             Objects.requireNonNull(id, "id is required");
-            final PaymentDTO responseDTO = paymentService.cancel(id);
+            final PaymentDTO responseDTO = paymentLock.execute(id, () -> paymentService.cancel(id));
             log.info("Payment cancelled successfully");
             return ResponseEntity
                     .status(OK)
@@ -368,10 +596,16 @@ public class PaymentController {
     }
 
     /**
-     * This function retrieve user payments with pagination
+     * This function retrieve user payments with pagination, when cursor
+     * is provided payments are paged by keyset newest first and empty
+     * cursor requests the first page. Archived payments are included on
+     * request only and are always paged by keyset
      *
-     * @param customerId  {@link String} customer id
-     * @param pageRequest {@link Pageable} page size properties
+     * @param customerId     {@link String} customer id
+     * @param pageRequest    {@link Pageable} page size properties
+     * @param cursor         {@link String} cursor returned by previous page
+     * @param includeTotal   {@link Boolean} include total records in cursor page
+     * @param includeHistory {@link Boolean} include archived payments
      * @return {@link ResponseEntity<ResponsePager>} response with message or error
      */
     @Operation(summary = "Returns a paginated list of customer payments")
@@ -393,6 +627,17 @@ public class PaymentController {
                                                             "totalPage": 10
                                                         }
                                                     """
+                                    ),
+                                    @ExampleObject(
+                                            name = "searchPaymentsByCursor",
+                                            summary = "Returns a payment lists with cursor of next page",
+                                            value = """
+                                                        {
+                                                            "content": ["{payment object}",
+                                                                         "{payment object}"],
+                                                            "nextCursor": "MTcwNDA2NzIwMDAwMDowMThjYzI1MS1mNDAwLTcwMDAtODAwMC0wMDAwMDAwMDAwMDE"
+                                                        }
+                                                    """
                                     )
                             })),
             @ApiResponse(
@@ -427,12 +672,24 @@ public class PaymentController {
     })
     @GetMapping("/search/{customerId}")
     @CircuitBreaker(name = PAYMENT_SERVICE, fallbackMethod = "serviceUnavailable")
-    @Cacheable(value = CACHE_PAYMENT, key = "#customerId")
     public ResponseEntity<?> searchPayments(final Pageable pageRequest,
-                                            @PathVariable("customerId") final String customerId) {
+                                            @PathVariable("customerId") final String customerId,
+                                            @RequestParam(name = "cursor", required = false) final String cursor,
+                                            @RequestParam(name = "includeTotal", defaultValue = "false")
+                                            final boolean includeTotal,
+                                            @RequestParam(name = "includeHistory", defaultValue = "false")
+                                            final boolean includeHistory) {
         try {
             log.info("Search payments api initiated, customerId: {}", customerId);
             Objects.requireNonNull(customerId, REQUIRE_ID);
+            if (cursor != null || includeHistory) {
+                final ResponsePager<PaymentDTO> page = paymentService.getPayments(customerId, cursor,
+                        pageRequest.getPageSize(), includeTotal, includeHistory);
+                log.info("Search payments api completed");
+                return ResponseEntity
+                        .status(OK)
+                        .body(page);
+            }
             final Page<PaymentDTO> pageCustomers = paymentService.getAllPayments(pageRequest, customerId);
             log.info("Search payments api completed");
             return ResponseEntity
@@ -456,21 +713,114 @@ public class PaymentController {
 
     }
 
+    /**
+     * This function stream status changes of customer payments as server sent events
+     *
+     * @param customerId {@link String} customer id
+     * @return {@link ResponseEntity<SseEmitter>} event stream of payment changes
+     */
+    @Operation(summary = "stream status changes of customer payments")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    content = @Content(
+                            mediaType = TEXT_EVENT_STREAM_VALUE,
+                            examples = {
+                                    @ExampleObject(
+                                            name = "streamPayments",
+                                            summary = "Streams payment object whenever customer payment changes",
+                                            value = """
+                                                        event:payment
+                                                        data:{payment object}
+                                                    """
+                                    )
+                            })),
+            @ApiResponse(responseCode = "400", content = @Content)
+    })
+    @GetMapping(path = "/stream", produces = {TEXT_EVENT_STREAM_VALUE, APPLICATION_JSON_VALUE})
+    public ResponseEntity<SseEmitter> streamPayments(@RequestParam(name = "customerId") final String customerId) {
+        log.info("Stream payments api initiated, customerId: {}", customerId);
+        if (customerId.isBlank()) {
+            return ResponseEntity.status(BAD_REQUEST).build();
+        }
+        return ResponseEntity
+                .status(OK)
+                .body(paymentStreamHub.subscribeCustomer(customerId));
+    }
+
+    /**
+     * This function stream status changes of a payment as server sent events,
+     * current payment is sent first and stream completes on final status
+     *
+     * @param id {@link String} payment id
+     * @return {@link ResponseEntity<SseEmitter>} event stream of payment changes
+     */
+    @Operation(summary = "stream status changes of payment by id")
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    content = @Content(
+                            mediaType = TEXT_EVENT_STREAM_VALUE,
+                            examples = {
+                                    @ExampleObject(
+                                            name = "streamPayment",
+                                            summary = "Streams current payment and every later change",
+                                            value = """
+                                                        event:payment
+                                                        data:{payment object}
+                                                    """
+                                    )
+                            })),
+            @ApiResponse(responseCode = "400", content = @Content),
+            @ApiResponse(responseCode = "404", content = @Content)
+    })
+    @GetMapping(path = "/stream/{id}", produces = {TEXT_EVENT_STREAM_VALUE, APPLICATION_JSON_VALUE})
+    public ResponseEntity<SseEmitter> streamPayment(@PathVariable("id") final String id) {
+        try {
+            log.info("Stream payment api initiated: {}", id);
+            return ResponseEntity
+                    .status(OK)
+                    .body(paymentStreamHub.subscribePayment(id, () -> paymentService.get(id)));
+        } catch (final NotFoundException e) {
+            log.error("Error occurred: {}", e.getMessage());
+            return ResponseEntity.status(NOT_FOUND).build();
+        } catch (final IllegalArgumentException e) {
+            log.error("Error occurred: {}", e.getMessage());
+            return ResponseEntity.status(BAD_REQUEST).build();
+        }
+    }
+
     /**
      * circuit breaker to avoid error calls for adding payment
      *
-     * @param paymentDTO {@link PaymentDTO} payment payload
-     * @param e          {@link Throwable} unexpected exception
+     * @param paymentDTO     {@link PaymentDTO} payment payload
+     * @param idempotencyKey {@link String} optional key identifying retries of the same request
+     * @param e              {@link Throwable} unexpected exception
      * @return {@link ResponseEntity} response entity with 503 error code
      * @throws Throwable {@link Throwable} exception during process
      */
     private ResponseEntity<Response<?>> serviceUnavailable(final PaymentDTO paymentDTO,
+                                                           final String idempotencyKey,
                                                            final Throwable e) throws Throwable {
         log.error("Could not process payment, customerId: {}, error: {}",
                 paymentDTO.getCustomerId(), e.getMessage());
         throw e;
     }
 
+    /**
+     * circuit breaker to avoid error calls for adding payments in bulk
+     *
+     * @param paymentDTOs {@link List<PaymentDTO>} payment payloads
+     * @param e           {@link Throwable} unexpected exception
+     * @return {@link ResponseEntity} response entity with 503 error code
+     * @throws Throwable {@link Throwable} exception during process
+     */
+    private ResponseEntity<Response<?>> serviceUnavailable(final List<PaymentDTO> paymentDTOs,
+                                                           final Throwable e) throws Throwable {
+        log.error("Could not process payment batch, size: {}, error: {}", paymentDTOs.size(), e.getMessage());
+        throw e;
+    }
+
     /**
      * circuit breaker to avoid error calls for updating payment
      *
@@ -504,14 +854,20 @@ public class PaymentController {
     /**
      * circuit breaker to avoid error calls for cancelling payment
      *
-     * @param customerId  {@link String} customer id
-     * @param pageRequest {@link Pageable} pagination properties
-     * @param e           {@link Throwable} unexpected exception
+     * @param customerId     {@link String} customer id
+     * @param pageRequest    {@link Pageable} pagination properties
+     * @param cursor         {@link String} cursor returned by previous page
+     * @param includeTotal   {@link Boolean} include total records in cursor page
+     * @param includeHistory {@link Boolean} include archived payments
+     * @param e              {@link Throwable} unexpected exception
      * @return {@link ResponseEntity} response entity with 503 error code
      * @throws Throwable {@link Throwable} exception during process
      */
     private ResponseEntity<?> serviceUnavailable(final Pageable pageRequest,
                                                  final String customerId,
+                                                 final String cursor,
+                                                 final boolean includeTotal,
+                                                 final boolean includeHistory,
                                                  final Throwable e) throws Throwable {
         log.error("Could not process search payment api, customerId: {}, error: {}",
                 customerId, e.getMessage());
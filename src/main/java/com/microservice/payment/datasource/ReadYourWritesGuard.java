@@ -0,0 +1,102 @@
+package com.microservice.payment.datasource;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * read your writes guard for replica routing. Customers and payments that
+ * were written recently are remembered in redis for the sticky window so
+ * that every instance reads them from primary until replicas caught up
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class ReadYourWritesGuard {
+
+    private static final String KEY_PREFIX = "payment:written:";
+    private static final byte[] WRITTEN = "1".getBytes(StandardCharsets.UTF_8);
+
+    @Value("${payment.datasource.replica.enabled:false}")
+    private boolean enabled;
+    @Value("${payment.datasource.replica.sticky-window:PT15S}")
+    private Duration stickyWindow;
+
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * remember written customers and payments for the sticky window
+     *
+     * @param keys {@link Collection<String>} written customer and payment ids
+     */
+    public void recordWrite(final Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                keys.forEach(key -> connection.stringCommands().set(
+                        (KEY_PREFIX + key).getBytes(StandardCharsets.UTF_8), WRITTEN,
+                        Expiration.from(stickyWindow), SetOption.upsert()));
+                return null;
+            });
+        } catch (final Exception e) {
+            log.warn("Recent write could not be recorded, reads may be stale, error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * route current read only transaction to primary when provided customer
+     * or payment was written within the sticky window, primary is used as
+     * well when it cannot be decided
+     *
+     * @param key {@link String} customer or payment id about to be read
+     */
+    public void beforeRead(final String key) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (Boolean.TRUE.equals(redisTemplate.hasKey(KEY_PREFIX + key))) {
+                ReplicaRoutingDataSource.routeToPrimary();
+            }
+        } catch (final Exception e) {
+            log.warn("Recent writes could not be checked, reading from primary, error: {}", e.getMessage());
+            ReplicaRoutingDataSource.routeToPrimary();
+        }
+    }
+
+    /**
+     * route current read only transaction to primary when any of provided
+     * customers or payments was written within the sticky window, keys are
+     * checked with a single command
+     *
+     * @param keys {@link Collection<String>} customer or payment ids about to be read
+     */
+    public void beforeRead(final Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        try {
+            final Long written = redisTemplate.countExistingKeys(keys.stream().map(key -> KEY_PREFIX + key).toList());
+            if (written == null || written > 0) {
+                ReplicaRoutingDataSource.routeToPrimary();
+            }
+        } catch (final Exception e) {
+            log.warn("Recent writes could not be checked, reading from primary, error: {}", e.getMessage());
+            ReplicaRoutingDataSource.routeToPrimary();
+        }
+    }
+}
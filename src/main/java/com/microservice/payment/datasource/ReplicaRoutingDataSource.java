@@ -0,0 +1,169 @@
+package com.microservice.payment.datasource;
+
+import lombok.extern.log4j.Log4j2;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * routing data source that sends read only transactions to healthy read
+ * replicas in round robin and everything else to primary. Must be wrapped
+ * in a lazy connection proxy so that connection is fetched once read only
+ * flag of the transaction is known. Replicas that cannot hand out a
+ * connection, stop replicating or lag behind are skipped until the
+ * periodic health check finds them healthy again
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private static final String PRIMARY = "primary";
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas = new HashMap<>();
+    private final List<String> replicaKeys = new ArrayList<>();
+    private final Set<String> unhealthy = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger next = new AtomicInteger();
+    private final Duration maxLag;
+
+    public ReplicaRoutingDataSource(final DataSource primary, final List<DataSource> replicas,
+                                    final Duration maxLag) {
+        this.primary = primary;
+        this.maxLag = maxLag;
+        for (int index = 0; index < replicas.size(); index++) {
+            replicaKeys.add("replica-" + index);
+            this.replicas.put("replica-" + index, replicas.get(index));
+        }
+        final Map<Object, Object> targets = new HashMap<>(this.replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * route remaining statements of current transaction to primary, used
+     * when replicas may not have caught up with a recent write yet
+     */
+    public static void routeToPrimary() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(final int status) {
+                PRIMARY_ONLY.remove();
+            }
+        });
+    }
+
+    /**
+     * connection of the routed data source, a replica that fails to hand
+     * out a connection is marked unhealthy and primary serves the read
+     *
+     * @return {@link Connection} routed connection
+     * @throws SQLException {@link SQLException} primary is not reachable
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        final Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection();
+        }
+        try {
+            return replicas.get(key).getConnection();
+        } catch (final SQLException e) {
+            log.warn("Read replica {} unavailable, reading from primary, error: {}", key, e.getMessage());
+            unhealthy.add((String) key);
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || Boolean.TRUE.equals(PRIMARY_ONLY.get())) {
+            return PRIMARY;
+        }
+        final List<String> healthy = replicaKeys.stream().filter(key -> !unhealthy.contains(key)).toList();
+        if (healthy.isEmpty()) {
+            return PRIMARY;
+        }
+        return healthy.get(Math.floorMod(next.getAndIncrement(), healthy.size()));
+    }
+
+    /**
+     * check every replica and bring recovered ones back into rotation
+     */
+    @Scheduled(fixedDelayString = "${payment.datasource.replica.health-check-interval:PT5S}")
+    public void checkReplicas() {
+        replicas.forEach((key, replica) -> {
+            final boolean healthy = isHealthy(key, replica);
+            if (healthy && unhealthy.remove(key)) {
+                log.info("Read replica {} is healthy again", key);
+            } else if (!healthy && unhealthy.add(key)) {
+                log.warn("Read replica {} removed from rotation", key);
+            }
+        });
+    }
+
+    /**
+     * replica is healthy when it hands out a valid connection and, if
+     * replication status is visible to the user, replicates within max lag
+     *
+     * @param key     replica key
+     * @param replica {@link DataSource} replica data source
+     * @return {@link Boolean} replica can serve reads
+     */
+    boolean isHealthy(final String key, final DataSource replica) {
+        try (Connection connection = replica.getConnection()) {
+            if (!connection.isValid(1)) {
+                return false;
+            }
+            try (Statement statement = connection.createStatement();
+                 ResultSet status = statement.executeQuery("SHOW REPLICA STATUS")) {
+                if (!status.next()) {
+                    return true;
+                }
+                final long lag = status.getLong("Seconds_Behind_Source");
+                return !status.wasNull() && lag <= maxLag.toSeconds();
+            } catch (final SQLException e) {
+                // replication status needs REPLICATION CLIENT privilege, connectivity is enough then
+                log.debug("Replication status of {} not available, error: {}", key, e.getMessage());
+                return true;
+            }
+        } catch (final SQLException e) {
+            log.debug("Read replica {} health check failed, error: {}", key, e.getMessage());
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (final DataSource replica : replicas.values()) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -1,18 +1,49 @@
 package com.microservice.payment.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import io.swagger.v3.oas.annotations.media.Schema;
 
 import java.util.List;
 
 /**
- * class that resides response with pagination properties
+ * class that resides response with pagination properties, cursor
+ * pages carry next cursor instead of page number and carry totals
+ * only when they were requested
  *
  * @author Asif Bakht
  * @since 2024
  */
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record ResponsePager<T>(
         @Schema(description = "Content") List<T> content,
-        @Schema(description = "currentPage") int currentPage,
-        @Schema(description = "totalRecords") long totalRecords,
-        @Schema(description = "totalRecords") int totalPages) {
+        @Schema(description = "currentPage") Integer currentPage,
+        @Schema(description = "totalRecords") Long totalRecords,
+        @Schema(description = "totalPages") Integer totalPages,
+        @Schema(description = "nextCursor") String nextCursor) {
+
+    /**
+     * offset page of content
+     *
+     * @param content      {@link List} page content
+     * @param currentPage  current page number
+     * @param totalRecords total records
+     * @param totalPages   total pages
+     */
+    public ResponsePager(final List<T> content, final int currentPage, final long totalRecords, final int totalPages) {
+        this(content, currentPage, totalRecords, totalPages, null);
+    }
+
+    /**
+     * cursor page of content
+     *
+     * @param content      {@link List} page content
+     * @param totalRecords {@link Long} total records or null when not requested
+     * @param nextCursor   {@link String} cursor of next page or null on last page
+     * @param <T>          content type
+     * @return {@link ResponsePager} cursor page
+     */
+    public static <T> ResponsePager<T> ofCursor(final List<T> content, final Long totalRecords,
+                                                final String nextCursor) {
+        return new ResponsePager<>(content, null, totalRecords, null, nextCursor);
+    }
 }
\ No newline at end of file
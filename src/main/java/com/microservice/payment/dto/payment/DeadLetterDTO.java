@@ -0,0 +1,19 @@
+package com.microservice.payment.dto.payment;
+
+import lombok.Value;
+
+/**
+ * class resides dead lettered payment properties
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Value
+public class DeadLetterDTO {
+
+    private Long id;
+    private String paymentId;
+    private int attemptCount;
+    private String lastError;
+    private String dateCreated;
+}
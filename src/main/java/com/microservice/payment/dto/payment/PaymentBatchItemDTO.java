@@ -0,0 +1,19 @@
+package com.microservice.payment.dto.payment;
+
+import lombok.Value;
+
+/**
+ * class resides result of a single payment of a batch,
+ * either created payment or reason it was rejected
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Value
+public class PaymentBatchItemDTO {
+
+    private int index;
+    private int statusCode;
+    private PaymentDTO payment;
+    private String error;
+}
@@ -0,0 +1,49 @@
+package com.microservice.payment.dto.payment;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * keyset position of customer payment search, payments are ordered by
+ * (date_created, id) descending and the next page starts right after the
+ * last returned payment. Position is handed to clients as an opaque token
+ *
+ * @param dateCreated {@link Instant} creation time of the last returned payment
+ * @param id          {@link UUID} id of the last returned payment
+ * @author Asif Bakht
+ * @since 2024
+ */
+public record PaymentCursor(Instant dateCreated, UUID id) {
+
+    private static final String SEPARATOR = ":";
+
+    /**
+     * encode position as url safe opaque token
+     *
+     * @return {@link String} cursor token
+     */
+    public String encode() {
+        final String position = dateCreated.toEpochMilli() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * decode position from token returned by previous page
+     *
+     * @param cursor {@link String} cursor token
+     * @return {@link PaymentCursor} keyset position
+     * @throws IllegalArgumentException when token is not a valid cursor
+     */
+    public static PaymentCursor decode(final String cursor) {
+        try {
+            final String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            final int separator = position.indexOf(SEPARATOR);
+            return new PaymentCursor(Instant.ofEpochMilli(Long.parseLong(position.substring(0, separator))),
+                    UUID.fromString(position.substring(separator + 1)));
+        } catch (final RuntimeException e) {
+            throw new IllegalArgumentException("cursor is invalid");
+        }
+    }
+}
@@ -1,8 +1,8 @@
 package com.microservice.payment.dto.payment;
 
+import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import lombok.Value;
-import org.apache.logging.log4j.core.config.plugins.validation.constraints.NotBlank;
 
 /**
  * class resides payment request payload properties
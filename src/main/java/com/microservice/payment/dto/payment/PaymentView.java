@@ -0,0 +1,23 @@
+package com.microservice.payment.dto.payment;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * read only projection of payment columns exposed by search apis,
+ * selected through constructor expression so rows are not loaded as
+ * managed entities into persistence context
+ *
+ * @param id              {@link UUID} payment id
+ * @param customerId      {@link String} customer id
+ * @param amount          {@link Double} payment amount
+ * @param paymentMethodId {@link String} payment method id
+ * @param status          {@link String} payment status
+ * @param processingTime  {@link Instant} payment processing time
+ * @param dateCreated     {@link Instant} payment creation time, position of cursor pages
+ * @author Asif Bakht
+ * @since 2024
+ */
+public record PaymentView(UUID id, String customerId, Double amount, String paymentMethodId,
+                          String status, Instant processingTime, Instant dateCreated) {
+}
@@ -1,12 +1,15 @@
 package com.microservice.payment.entity;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.MappedSuperclass;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
+
 /**
  * base entity class properties
  *
@@ -16,13 +19,14 @@ import org.hibernate.annotations.UpdateTimestamp;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@MappedSuperclass
 public class BaseEntity {
 
     @CreationTimestamp
     @Column(name = "date_created", updatable = false, nullable = false)
-    private String dateCreated;
+    private Instant dateCreated;
 
     @UpdateTimestamp
     @Column(name = "date_updated")
-    private String dateUpdated;
+    private Instant dateUpdated;
 }
@@ -1,8 +1,7 @@
 package com.microservice.payment.entity;
 
+import com.microservice.payment.entity.generator.GeneratedUuidV7;
 import jakarta.persistence.Entity;
-import jakarta.persistence.GeneratedValue;
-import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import jakarta.persistence.Version;
@@ -12,6 +11,9 @@ import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+import java.util.UUID;
+
 /**
  * entity class that have payment
  * related attributes
@@ -29,13 +31,16 @@ import lombok.NoArgsConstructor;
 public class Payment extends BaseEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
-    private String id;
+    @GeneratedUuidV7
+    private UUID id;
     private String customerId;
     private String paymentMethodId;
     private Double amount;
     private String status;
-    private String processingTime;
+    private Instant processingTime;
+    private int attemptCount;
+    private Instant nextAttemptTime;
+    private String lastError;
     @Version
     private int version;
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+package com.microservice.payment.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * entity class that keeps payments which exhausted
+ * their settlement attempts until they are replayed
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "payment_dead_letter")
+@EqualsAndHashCode(callSuper = true)
+public class PaymentDeadLetter extends BaseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private UUID paymentId;
+    private int attemptCount;
+    private String lastError;
+}
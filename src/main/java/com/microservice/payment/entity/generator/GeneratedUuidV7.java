@@ -0,0 +1,22 @@
+package com.microservice.payment.entity.generator;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * marks entity id that is generated as time ordered UUID version 7,
+ * new rows are appended to the end of clustered index instead of
+ * random pages
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@IdGeneratorType(UuidV7Generator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface GeneratedUuidV7 {
+}
@@ -0,0 +1,20 @@
+package com.microservice.payment.entity.generator;
+
+import com.microservice.payment.utils.UuidV7;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+
+/**
+ * hibernate identifier generator that assigns time ordered
+ * UUID version 7 ids before insert
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public class UuidV7Generator implements IdentifierGenerator {
+
+    @Override
+    public Object generate(final SharedSessionContractImplementor session, final Object entity) {
+        return UuidV7.randomUUID();
+    }
+}
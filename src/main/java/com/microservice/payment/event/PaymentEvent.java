@@ -0,0 +1,19 @@
+package com.microservice.payment.event;
+
+import java.time.Instant;
+
+/**
+ * payment lifecycle event written to outbox in the same transaction as
+ * the payment state change and relayed to downstream consumers. Event
+ * id grows with every event so consumers can drop duplicates
+ *
+ * @param id         outbox event id, null until event is stored
+ * @param paymentId  {@link String} payment id
+ * @param status     {@link String} payment status after the change
+ * @param payload    {@link String} payment json after the change
+ * @param occurredAt {@link Instant} time of the change
+ * @author Asif Bakht
+ * @since 2024
+ */
+public record PaymentEvent(Long id, String paymentId, String status, String payload, Instant occurredAt) {
+}
@@ -0,0 +1,21 @@
+package com.microservice.payment.event;
+
+/**
+ * service provider interface of the stream payment events are pushed to,
+ * e.g. kafka, sqs or rabbitMQ. Implementation is selected through
+ * payment.outbox.publisher.type property
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public interface PaymentEventPublisher {
+
+    /**
+     * publish event to downstream consumers, an event is relayed again
+     * until it is published without exception so publishing must be
+     * safe to repeat
+     *
+     * @param event {@link PaymentEvent} event to publish
+     */
+    void publish(final PaymentEvent event);
+}
@@ -0,0 +1,73 @@
+package com.microservice.payment.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.mapper.PaymentMapper;
+import com.microservice.payment.repository.PaymentOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * transactional outbox of payment lifecycle events. Events must be
+ * appended in the same transaction as the payment state change so an
+ * event exists if and only if the change was committed. Events are also
+ * published within the application for listeners bound to the transaction
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Component
+@RequiredArgsConstructor
+public class PaymentOutbox {
+
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    private final PaymentMapper mapper;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final Clock clock;
+
+    /**
+     * append event of a single payment state change
+     *
+     * @param payment {@link Payment} payment after the change
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(final Payment payment) {
+        append(List.of(payment));
+    }
+
+    /**
+     * append events of payment state changes in one batch
+     *
+     * @param payments {@link List<Payment>} payments after the change
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(final List<Payment> payments) {
+        if (payments.isEmpty()) {
+            return;
+        }
+        final Instant occurredAt = clock.instant();
+        final List<PaymentEvent> events = payments.stream()
+                .map(payment -> new PaymentEvent(null, payment.getId().toString(), payment.getStatus(),
+                        toJson(payment), occurredAt))
+                .toList();
+        paymentOutboxRepository.saveAll(events);
+        events.forEach(applicationEventPublisher::publishEvent);
+    }
+
+    private String toJson(final Payment payment) {
+        try {
+            return objectMapper.writeValueAsString(mapper.toDTO(payment));
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Payment event could not be serialized: " + payment.getId(), e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.microservice.payment.event;
+
+import com.microservice.payment.repository.PaymentOutboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * relay that drains payment outbox in batches to the configured
+ * publisher. Only one instance relays at a time and events are read in
+ * the order they were stored, an event that cannot be published holds
+ * back later events of the same payment only, so delivery is at least
+ * once and ordered per payment
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+class PaymentOutboxRelay {
+
+    @Value("${payment.outbox.batch-size:500}")
+    private int batchSize;
+    @Value("${payment.outbox.run-budget:PT10S}")
+    private Duration runBudget;
+
+    private final PaymentOutboxRepository paymentOutboxRepository;
+    private final PaymentEventPublisher paymentEventPublisher;
+
+    /**
+     * relay stored events batch by batch until outbox is drained, run
+     * budget is consumed or an event could not be published
+     */
+    @Scheduled(fixedDelayString = "${payment.outbox.relay-interval:PT1S}")
+    @SchedulerLock(name = "paymentOutboxRelay", lockAtMostFor = "PT30S")
+    public void relay() {
+        final long startedAt = System.nanoTime();
+        try {
+            int relayed = 0;
+            Batch batch;
+            do {
+                batch = relayBatch();
+                relayed += batch.published();
+            } while (batch.drainable(batchSize) &&
+                    Duration.ofNanos(System.nanoTime() - startedAt).compareTo(runBudget) < 0);
+            if (relayed > 0) {
+                log.info("Payment events relayed: {}, elapsed: {}ms", relayed,
+                        Duration.ofNanos(System.nanoTime() - startedAt).toMillis());
+            }
+        } catch (final Exception e) {
+            log.error("Error occurred relaying payment events", e);
+        }
+    }
+
+    /**
+     * publish the oldest batch and remove published events from outbox
+     *
+     * @return {@link Batch} relayed batch
+     */
+    private Batch relayBatch() {
+        final List<PaymentEvent> events = paymentOutboxRepository.findOldest(batchSize);
+        final List<Long> published = new ArrayList<>();
+        final Set<String> heldBack = new HashSet<>();
+        for (final PaymentEvent event : events) {
+            if (heldBack.contains(event.paymentId())) {
+                continue;
+            }
+            try {
+                paymentEventPublisher.publish(event);
+                published.add(event.id());
+            } catch (final Exception e) {
+                log.warn("Payment event could not be published: {}, payment: {}, error: {}",
+                        event.id(), event.paymentId(), e.getMessage());
+                heldBack.add(event.paymentId());
+            }
+        }
+        if (!published.isEmpty()) {
+            paymentOutboxRepository.deleteAllById(published);
+        }
+        return new Batch(events.size(), published.size());
+    }
+
+    /**
+     * result of a single relayed batch
+     *
+     * @param read      total events read from outbox
+     * @param published total events published
+     */
+    private record Batch(int read, int published) {
+
+        /**
+         * outbox may hold more events only when a full batch was read and
+         * published, held back events are relayed again on next run
+         */
+        boolean drainable(final int batchSize) {
+            return read == batchSize && published == read;
+        }
+    }
+}
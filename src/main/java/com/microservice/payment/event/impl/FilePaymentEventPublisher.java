@@ -0,0 +1,58 @@
+package com.microservice.payment.event.impl;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservice.payment.event.PaymentEvent;
+import com.microservice.payment.event.PaymentEventPublisher;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * publisher that appends every event as a json line to a local file,
+ * used for local environment to inspect the event stream
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "payment.outbox.publisher.type", havingValue = "file")
+public class FilePaymentEventPublisher implements PaymentEventPublisher {
+
+    private final Path path;
+    private final ObjectMapper objectMapper;
+
+    public FilePaymentEventPublisher(@Value("${payment.outbox.publisher.file.path:payment-events.jsonl}") final Path path,
+                                     final ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * append event as json line
+     *
+     * @param event {@link PaymentEvent} event to publish
+     */
+    @Override
+    public synchronized void publish(final PaymentEvent event) {
+        try {
+            final String line = objectMapper.writeValueAsString(event) + System.lineSeparator();
+            Files.writeString(path, line, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.debug("Payment event published: {}, payment: {}", event.id(), event.paymentId());
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Payment event could not be serialized: " + event.id(), e);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
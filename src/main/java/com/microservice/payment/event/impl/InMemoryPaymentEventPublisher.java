@@ -0,0 +1,58 @@
+package com.microservice.payment.event.impl;
+
+import com.microservice.payment.event.PaymentEvent;
+import com.microservice.payment.event.PaymentEventPublisher;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * in-process publisher that keeps the latest published events in memory,
+ * used for local environment and tests until a real stream is configured
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "payment.outbox.publisher.type", havingValue = "memory", matchIfMissing = true)
+public class InMemoryPaymentEventPublisher implements PaymentEventPublisher {
+
+    private final int capacity;
+    private final Deque<PaymentEvent> events = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    public InMemoryPaymentEventPublisher(@Value("${payment.outbox.publisher.memory.capacity:10000}") final int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * keep published event, oldest event is dropped once capacity is reached
+     *
+     * @param event {@link PaymentEvent} event to publish
+     */
+    @Override
+    public void publish(final PaymentEvent event) {
+        log.debug("Payment event published: {}, payment: {}", event.id(), event.paymentId());
+        events.addLast(event);
+        if (size.incrementAndGet() > capacity && events.pollFirst() != null) {
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * published events in publish order
+     *
+     * @return {@link List<PaymentEvent>} published events
+     */
+    public List<PaymentEvent> getEvents() {
+        return new ArrayList<>(events);
+    }
+}
@@ -1,7 +1,10 @@
 package com.microservice.payment.exception;
 
 import com.microservice.payment.dto.Response;
+import com.microservice.payment.ratelimit.CustomerRateLimiter;
 import lombok.extern.log4j.Log4j2;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -15,6 +18,7 @@ import static org.springframework.http.HttpStatus.BAD_REQUEST;
 import static org.springframework.http.HttpStatus.CONFLICT;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
 
 /**
  * exception thrown from business services or controller
@@ -69,6 +73,36 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(CONFLICT).body(new Response<>(e.getMessage(), CONFLICT.value()));
     }
 
+    /**
+     * exception handler when payment was changed by a concurrent
+     * request between read and write, client may retry
+     *
+     * @param e {@link OptimisticLockingFailureException} exception
+     * @return {@link ResponseEntity} response entity
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<Response<?>> handleOptimisticLockingFailureException(
+            final OptimisticLockingFailureException e) {
+        log.warn("Concurrent modification: {}", e.getMessage());
+        return ResponseEntity.status(CONFLICT)
+                .body(new Response<>("Payment was modified by another request, please retry", CONFLICT.value()));
+    }
+
+    /**
+     * exception handler when customer exceeds its rate limit, client
+     * is told when to retry with retry after header
+     *
+     * @param e {@link TooManyRequestsException} exception
+     * @return {@link ResponseEntity} response entity
+     */
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Response<?>> handleTooManyRequestsException(final TooManyRequestsException e) {
+        return ResponseEntity.status(TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER,
+                        Long.toString(CustomerRateLimiter.retryAfterSeconds(e.getRetryAfter())))
+                .body(new Response<>(e.getMessage(), TOO_MANY_REQUESTS.value()));
+    }
+
     /**
      * exception handler that catches generic exception within entire application
      * will be handled here
@@ -0,0 +1,30 @@
+package com.microservice.payment.exception;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * too many requests exception is used when a customer
+ * sends requests faster than its rate limit allows
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    /**
+     * Constructor class with dependency
+     *
+     * @param message    {@link String} exception message
+     * @param retryAfter {@link Duration} time until next request is allowed
+     */
+    public TooManyRequestsException(final String message, final Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.microservice.payment.gateway;
+
+/**
+ * response returned by payment gateway once payment is settled
+ *
+ * @param approved  indicates payment is approved by gateway
+ * @param reference {@link String} gateway transaction reference
+ * @param reason    {@link String} decline reason when not approved
+ * @author Asif Bakht
+ * @since 2024
+ */
+public record GatewayResponse(boolean approved, String reference, String reason) {
+
+    public static GatewayResponse approved(final String reference) {
+        return new GatewayResponse(true, reference, null);
+    }
+
+    public static GatewayResponse declined(final String reason) {
+        return new GatewayResponse(false, null, reason);
+    }
+}
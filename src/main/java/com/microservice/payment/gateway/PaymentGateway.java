@@ -0,0 +1,30 @@
+package com.microservice.payment.gateway;
+
+import com.microservice.payment.dto.payment.PaymentDTO;
+
+/**
+ * service provider interface of external payment gateway that
+ * settles due payments. Implementation is selected through
+ * payment.gateway.type property
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public interface PaymentGateway {
+
+    /**
+     * settle payment with external gateway, transient failures such as
+     * network errors must be thrown as exception so that payment can be
+     * settled again later, business rejection is returned as declined.
+     * A payment is settled again whenever its outcome is unknown, e.g.
+     * the call timed out but may still complete at the gateway, so the
+     * gateway must deduplicate on the settlement reference: a settlement
+     * with a reference already settled returns the original response
+     * instead of settling the payment twice
+     *
+     * @param paymentDTO          {@link PaymentDTO} payment to settle
+     * @param settlementReference {@link String} idempotency reference, same for every attempt of the payment
+     * @return {@link GatewayResponse} gateway response
+     */
+    GatewayResponse settle(final PaymentDTO paymentDTO, final String settlementReference);
+}
@@ -0,0 +1,64 @@
+package com.microservice.payment.gateway.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.microservice.payment.dto.payment.PaymentDTO;
+import com.microservice.payment.gateway.GatewayResponse;
+import com.microservice.payment.gateway.PaymentGateway;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * in-process payment gateway that simulates downstream latency,
+ * used for local environment and tests until real gateway is configured.
+ * Payments above configured limit are declined, responses are kept by
+ * settlement reference so repeated settlements are deduplicated the
+ * same way a real gateway must do
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@ConditionalOnProperty(name = "payment.gateway.type", havingValue = "stub", matchIfMissing = true)
+public class StubPaymentGateway implements PaymentGateway {
+
+    @Value("${payment.gateway.stub.latency:PT0.05S}")
+    private Duration latency;
+    @Value("${payment.gateway.stub.decline-above:1000000}")
+    private double declineAbove;
+
+    private final Cache<String, GatewayResponse> settled = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .build();
+
+    /**
+     * simulate settlement call with configured latency, settlement of
+     * a known reference returns its original response
+     *
+     * @param paymentDTO          {@link PaymentDTO} payment to settle
+     * @param settlementReference {@link String} idempotency reference
+     * @return {@link GatewayResponse} gateway response
+     */
+    @Override
+    public GatewayResponse settle(final PaymentDTO paymentDTO, final String settlementReference) {
+        return settled.get(settlementReference, reference -> {
+            log.debug("Stub gateway settling payment: {}", paymentDTO.getId());
+            try {
+                Thread.sleep(latency.toMillis());
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Gateway call interrupted", e);
+            }
+            if (paymentDTO.getAmount() > declineAbove) {
+                return GatewayResponse.declined("Amount exceeds limit %s".formatted(declineAbove));
+            }
+            return GatewayResponse.approved(UUID.randomUUID().toString());
+        });
+    }
+}
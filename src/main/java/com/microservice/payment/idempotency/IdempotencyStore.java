@@ -0,0 +1,196 @@
+package com.microservice.payment.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservice.payment.dto.Response;
+import com.microservice.payment.exception.DuplicateException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * redis backed store of idempotent requests. Keys are scoped per
+ * customer, so the same key sent by two customers never shares a
+ * response. First request of a key stores an in progress marker with SET NX and its final response once
+ * done, retries of the key get the stored response without running the
+ * request again. Duplicates arriving while the first one is running wait
+ * for its response instead of racing it. Server errors are not stored so
+ * the request can be retried, and when redis is not reachable requests
+ * run without deduplication
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class IdempotencyStore {
+
+    public static final String HEADER_IDEMPOTENCY_KEY = "Idempotency-Key";
+    public static final String HEADER_REPLAYED = "Idempotent-Replayed";
+
+    private static final String KEY_PREFIX = "payment:idempotency:";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(50);
+    private static final TypeReference<Response<Object>> RESPONSE_TYPE = new TypeReference<>() {
+    };
+
+    @Value("${payment.idempotency.enabled:true}")
+    private boolean enabled;
+    @Value("${payment.idempotency.time-to-live:PT24H}")
+    private Duration timeToLive;
+    @Value("${payment.idempotency.lock-timeout:PT30S}")
+    private Duration lockTimeout;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * run request once per idempotency key of the customer, request
+     * without key always runs
+     *
+     * @param customerId {@link String} customer of the request payload
+     * @param key        {@link String} idempotency key sent by client, may be null
+     * @param request    {@link Object} request payload, a key must not be reused with another payload
+     * @param action     {@link Supplier} runs the request
+     * @return {@link ResponseEntity<Response>} response of the request or stored response of the key
+     */
+    public ResponseEntity<Response<?>> execute(final String customerId, final String key, final Object request,
+                                               final Supplier<ResponseEntity<Response<?>>> action) {
+        if (!enabled || key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(String.format("%s must contain between 1 and %d characters",
+                    HEADER_IDEMPOTENCY_KEY, MAX_KEY_LENGTH));
+        }
+        final String redisKey = KEY_PREFIX + customerId + ":" + key;
+        final String fingerprint = fingerprint(request);
+        final Optional<ResponseEntity<Response<?>>> stored;
+        try {
+            stored = acquireOrAwait(redisKey, fingerprint);
+        } catch (final DataAccessException e) {
+            log.warn("Idempotency key could not be checked, request runs without it: {}, error: {}",
+                    key, e.getMessage());
+            return action.get();
+        }
+        return stored.orElseGet(() -> run(redisKey, fingerprint, action));
+    }
+
+    /**
+     * store in progress marker of the key, when key is already taken wait
+     * for the response of the request that owns it
+     *
+     * @return {@link Optional} stored response, empty when marker was stored
+     */
+    private Optional<ResponseEntity<Response<?>>> acquireOrAwait(final String redisKey, final String fingerprint) {
+        final long deadline = System.nanoTime() + lockTimeout.toNanos();
+        try {
+            while (true) {
+                if (Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(redisKey,
+                        write(new StoredResponse(fingerprint, null, null)), lockTimeout))) {
+                    return Optional.empty();
+                }
+                final String stored = redisTemplate.opsForValue().get(redisKey);
+                if (stored != null) {
+                    final StoredResponse response = objectMapper.readValue(stored, StoredResponse.class);
+                    if (!fingerprint.equals(response.fingerprint())) {
+                        throw new DuplicateException(HEADER_IDEMPOTENCY_KEY + " was already used with another request");
+                    }
+                    if (response.statusCode() != null) {
+                        log.info("Idempotent request replayed: {}", redisKey);
+                        return Optional.of(ResponseEntity
+                                .status(response.statusCode())
+                                .header(HEADER_REPLAYED, Boolean.TRUE.toString())
+                                .body(objectMapper.readValue(response.body(), RESPONSE_TYPE)));
+                    }
+                }
+                if (System.nanoTime() >= deadline) {
+                    throw new DuplicateException("Request with same " + HEADER_IDEMPOTENCY_KEY + " is in progress");
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DuplicateException("Request with same " + HEADER_IDEMPOTENCY_KEY + " is in progress");
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Idempotent response could not be read: " + redisKey, e);
+        }
+    }
+
+    /**
+     * run request owning the in progress marker, final response replaces
+     * the marker while server errors and exceptions remove it
+     */
+    private ResponseEntity<Response<?>> run(final String redisKey, final String fingerprint,
+                                            final Supplier<ResponseEntity<Response<?>>> action) {
+        final ResponseEntity<Response<?>> response;
+        try {
+            response = action.get();
+        } catch (final RuntimeException e) {
+            release(redisKey);
+            throw e;
+        }
+        if (response.getStatusCode().is5xxServerError()) {
+            release(redisKey);
+            return response;
+        }
+        try {
+            redisTemplate.opsForValue().set(redisKey, write(new StoredResponse(fingerprint,
+                    response.getStatusCode().value(), objectMapper.writeValueAsString(response.getBody()))), timeToLive);
+        } catch (final Exception e) {
+            log.warn("Idempotent response could not be stored: {}, error: {}", redisKey, e.getMessage());
+        }
+        return response;
+    }
+
+    private void release(final String redisKey) {
+        try {
+            redisTemplate.delete(redisKey);
+        } catch (final Exception e) {
+            log.warn("Idempotency key could not be released: {}, error: {}", redisKey, e.getMessage());
+        }
+    }
+
+    private String write(final StoredResponse response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (final JsonProcessingException e) {
+            throw new IllegalStateException("Idempotent response could not be written", e);
+        }
+    }
+
+    /**
+     * sha-256 of request json, same payload always has same fingerprint
+     */
+    String fingerprint(final Object request) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(objectMapper.writeValueAsBytes(request)));
+        } catch (final JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Idempotent request could not be fingerprinted", e);
+        }
+    }
+
+    /**
+     * stored state of an idempotency key
+     *
+     * @param fingerprint {@link String} fingerprint of the request payload
+     * @param statusCode  {@link Integer} response status, null while request is in progress
+     * @param body        {@link String} response json, null while request is in progress
+     */
+    record StoredResponse(String fingerprint, Integer statusCode, String body) {
+    }
+}
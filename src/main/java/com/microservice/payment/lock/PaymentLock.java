@@ -0,0 +1,152 @@
+package com.microservice.payment.lock;
+
+import com.microservice.payment.exception.DuplicateException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * serializes concurrent writes of the same payment so that double
+ * submitted changes queue in memory instead of colliding on the row
+ * while holding a database connection. Payments are mapped to a fixed
+ * set of lock stripes, writes of different payments rarely share a
+ * stripe. When distributed lock is enabled writes of the same payment
+ * are serialized across instances as well with a short redis lease,
+ * when redis is not reachable only the local lock is held
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class PaymentLock {
+
+    private static final String KEY_PREFIX = "payment:lock:";
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(20);
+    // release only the lease this instance still owns, it may have expired and been taken over
+    private static final RedisScript<Long> RELEASE = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    @Value("${payment.lock.stripes:1024}")
+    private int stripeCount;
+    @Value("${payment.lock.timeout:PT5S}")
+    private Duration timeout;
+    @Value("${payment.lock.distributed:false}")
+    private boolean distributed;
+    @Value("${payment.lock.lease:PT30S}")
+    private Duration lease;
+
+    private final StringRedisTemplate redisTemplate;
+
+    private ReentrantLock[] stripes;
+
+    @PostConstruct
+    void createStripes() {
+        // power of two so stripe is selected with a mask
+        final int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * run provided write holding the lock of the payment, waiting
+     * for other writes of the payment at most the lock timeout
+     *
+     * @param id     {@link String} payment id
+     * @param action {@link Supplier} write of the payment
+     * @param <T>    write result type
+     * @return write result
+     */
+    public <T> T execute(final String id, final Supplier<T> action) {
+        final String key = id.toLowerCase(Locale.ROOT);
+        final ReentrantLock lock = stripes[stripe(key)];
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            if (!lock.tryLock(timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw busy(id);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw busy(id);
+        }
+        try {
+            final String token = distributed ? acquireLease(key, deadline) : null;
+            try {
+                return action.get();
+            } finally {
+                if (token != null) {
+                    releaseLease(key, token);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * take redis lease of the payment, waiting until deadline while
+     * another instance holds it
+     *
+     * @return {@link String} lease token, null when redis is not reachable
+     */
+    private String acquireLease(final String key, final long deadline) {
+        final String token = UUID.randomUUID().toString();
+        try {
+            while (!Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + key, token, lease))) {
+                if (System.nanoTime() >= deadline) {
+                    throw busy(key);
+                }
+                Thread.sleep(POLL_INTERVAL.toMillis());
+            }
+            return token;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw busy(key);
+        } catch (final DuplicateException e) {
+            throw e;
+        } catch (final Exception e) {
+            log.warn("Payment lease could not be taken, write is serialized on this instance only: {}, error: {}",
+                    key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void releaseLease(final String key, final String token) {
+        try {
+            redisTemplate.execute(RELEASE, List.of(KEY_PREFIX + key), token);
+        } catch (final Exception e) {
+            log.warn("Payment lease could not be released, it expires on its own: {}, error: {}",
+                    key, e.getMessage());
+        }
+    }
+
+    /**
+     * spread hash bits so ids differing only in high bits
+     * do not share a stripe
+     */
+    private int stripe(final String key) {
+        final int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+
+    private static DuplicateException busy(final String id) {
+        return new DuplicateException("Payment is being modified by another request: " + id);
+    }
+}
@@ -1,10 +1,18 @@
 package com.microservice.payment.mapper;
 
+import com.microservice.payment.dto.payment.DeadLetterDTO;
 import com.microservice.payment.dto.payment.PaymentDTO;
+import com.microservice.payment.dto.payment.PaymentView;
 import com.microservice.payment.entity.Payment;
+import com.microservice.payment.entity.PaymentDeadLetter;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 
+import java.time.Instant;
+
+import static com.microservice.payment.utils.Helper.fromUTCDateTime;
+import static com.microservice.payment.utils.Helper.toUTCDateTime;
+
 /**
  * payment mapper class to avoid boilerplate code
  * this class transform dto to entity and vice versa
@@ -17,13 +25,17 @@ public interface PaymentMapper {
 
     /**
      * converts dto to payment entity class this will ignore
-     * status and processing time to populate
+     * id, status, processing time and retry state to populate
      *
      * @param paymentDTO {@link PaymentDTO} payment object
      * @return {@link Payment} payment entity
      */
+    @Mapping(target = "id", ignore = true)
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "processingTime", ignore = true)
+    @Mapping(target = "attemptCount", ignore = true)
+    @Mapping(target = "nextAttemptTime", ignore = true)
+    @Mapping(target = "lastError", ignore = true)
     Payment toEntity(final PaymentDTO paymentDTO);
 
     /**
@@ -34,4 +46,39 @@ public interface PaymentMapper {
      */
     PaymentDTO toDTO(final Payment payment);
 
+    /**
+     * converts read only payment projection to dto class
+     *
+     * @param payment {@link PaymentView} payment projection
+     * @return {@link PaymentDTO} payment class
+     */
+    PaymentDTO toDTO(final PaymentView payment);
+
+    /**
+     * converts payment dead letter entity to dto class
+     *
+     * @param deadLetter {@link PaymentDeadLetter} dead letter object
+     * @return {@link DeadLetterDTO} dead letter class
+     */
+    DeadLetterDTO toDTO(final PaymentDeadLetter deadLetter);
+
+    /**
+     * converts typed entity timestamp to UTC date time exposed by apis
+     *
+     * @param instant {@link Instant} entity timestamp
+     * @return {@link String} UTC date time
+     */
+    default String toDateTime(final Instant instant) {
+        return toUTCDateTime(instant);
+    }
+
+    /**
+     * converts UTC date time exposed by apis to typed entity timestamp
+     *
+     * @param dateTime {@link String} UTC date time
+     * @return {@link Instant} entity timestamp
+     */
+    default Instant toInstant(final String dateTime) {
+        return fromUTCDateTime(dateTime);
+    }
 }
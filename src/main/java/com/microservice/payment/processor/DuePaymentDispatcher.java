@@ -0,0 +1,204 @@
+package com.microservice.payment.processor;
+
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.repository.PaymentRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * in memory dispatcher that triggers settlement exactly when payment
+ * processing time arrives instead of polling database. Due instants are
+ * kept in a delay queue, payments sharing same processing time share a
+ * single slot so one settlement run settles all of them. Instants are
+ * loaded on startup, on payment creation and periodically within the
+ * configured horizon, pending payment cron remains as safety net
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class DuePaymentDispatcher {
+
+    @Value("${payment.dispatcher.enabled:true}")
+    private boolean enabled;
+    @Value("${payment.dispatcher.horizon:PT1H}")
+    private Duration horizon;
+    @Value("${payment.dispatcher.max-slots:10000}")
+    private int maxSlots;
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentProcessor paymentProcessor;
+    private final Clock clock;
+
+    private final DelayQueue<DueSlot> dueSlots = new DelayQueue<>();
+    private final Set<Instant> scheduled = ConcurrentHashMap.newKeySet();
+    private volatile Thread dispatcher;
+
+    /**
+     * schedule settlement for given processing time, instants beyond the
+     * horizon are picked up later by periodic refresh
+     *
+     * @param processingTime {@link Instant} payment processing time
+     */
+    public void schedule(final Instant processingTime) {
+        if (!enabled || processingTime == null
+                || !processingTime.isBefore(clock.instant().plus(horizon))) {
+            return;
+        }
+        if (scheduled.size() >= maxSlots) {
+            log.warn("Due payment dispatcher is full, processing time {} left to sweep", processingTime);
+            return;
+        }
+        if (scheduled.add(processingTime)) {
+            dueSlots.put(new DueSlot(processingTime, clock));
+        }
+    }
+
+    /**
+     * schedule settlement once current transaction is committed so that
+     * dispatched run can see the payment, without transaction it is
+     * scheduled right away
+     *
+     * @param processingTime {@link Instant} payment processing time
+     */
+    public void scheduleAfterCommit(final Instant processingTime) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            schedule(processingTime);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                schedule(processingTime);
+            }
+        });
+    }
+
+    /**
+     * load due instants and start dispatching once application is ready
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!enabled || dispatcher != null) {
+            return;
+        }
+        refresh();
+        dispatcher = new Thread(this::dispatch, "due-payment-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * load pending processing times that fall within the horizon
+     * and the earliest scheduled retry
+     */
+    @Scheduled(fixedDelayString = "${payment.dispatcher.refresh-interval:PT10M}",
+            initialDelayString = "${payment.dispatcher.refresh-interval:PT10M}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            paymentRepository.findProcessingTimes(PaymentStatus.PENDING.name(), clock.instant().plus(horizon))
+                    .forEach(this::schedule);
+            scheduleNextRetry();
+        } catch (final Exception e) {
+            log.error("Error occurred loading due payments, error: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        final Thread thread = dispatcher;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                release(dueSlots.take());
+                // coalesce every slot that became due meanwhile into the same run
+                DueSlot slot;
+                while ((slot = dueSlots.poll()) != null) {
+                    release(slot);
+                }
+                settle();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final RuntimeException e) {
+                log.error("Error occurred dispatching due payments, error: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * keep settling while runs still claim payments, a run stops early on
+     * its time budget so remaining payments are settled by the next one.
+     * Retried payments mean gateway is unavailable and wait for their backoff
+     */
+    private void settle() {
+        Optional<SettlementReport> report;
+        do {
+            report = paymentProcessor.settleDuePayments();
+        } while (report.filter(run -> run.claimed() > 0 && run.retried() == 0).isPresent()
+                && !Thread.currentThread().isInterrupted());
+        scheduleNextRetry();
+    }
+
+    /**
+     * retries are scheduled with per payment backoff, only the earliest
+     * one is tracked and the next one is looked up once it was settled.
+     * Retries already overdue were left by an unavailable gateway and are
+     * left to sweep instead of dispatching them again right away
+     */
+    private void scheduleNextRetry() {
+        paymentRepository.findNextAttemptTime(PaymentStatus.FAILED.name())
+                .filter(nextAttemptTime -> nextAttemptTime.isAfter(clock.instant()))
+                .ifPresent(this::schedule);
+    }
+
+    private void release(final DueSlot slot) {
+        scheduled.remove(slot.dueTime());
+    }
+
+    /**
+     * delay queue entry that becomes available on payment processing time
+     *
+     * @param dueTime {@link Instant} processing time of the slot
+     * @param clock   {@link Clock} clock used to compute remaining delay
+     */
+    private record DueSlot(Instant dueTime, Clock clock) implements Delayed {
+
+        @Override
+        public long getDelay(final TimeUnit unit) {
+            return unit.convert(Duration.between(clock.instant(), dueTime));
+        }
+
+        @Override
+        public int compareTo(final Delayed other) {
+            return dueTime.compareTo(((DueSlot) other).dueTime);
+        }
+    }
+}
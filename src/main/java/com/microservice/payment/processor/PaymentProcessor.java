@@ -1,14 +1,17 @@
 package com.microservice.payment.processor;
 
-import com.microservice.payment.dto.payment.PaymentStatus;
-import com.microservice.payment.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockingTaskExecutor;
 import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import static com.microservice.payment.utils.Helper.getCurrentUTCDateTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
 
 /**
  * class that is responsible to process all pending payments
@@ -22,33 +25,77 @@ import static com.microservice.payment.utils.Helper.getCurrentUTCDateTime;
 @RequiredArgsConstructor
 class PaymentProcessor {
 
-    private final PaymentRepository paymentRepository;
+    private static final String PENDING_PAYMENT_LOCK = "pendingPaymentScheduler";
 
-    /**
-     * scheduler lock can be programmatically set with configured lock times
-     * https://github.com/lukas-krecan/ShedLock#running-without-spring
-     */
+    @Value("${payment.settlement.mode:SHARED}")
+    private SettlementMode mode;
+
+    private final SettlementEngine settlementEngine;
+    private final LockingTaskExecutor lockingTaskExecutor;
 
     /**
-     * process pending payment scheduled wise with lock mechanism to avoid other
-     * instances to process those records.
+     * safety net sweep that settles pending payments scheduled wise, due
+     * payments are usually settled on time by {@link DuePaymentDispatcher}
      */
     @Scheduled(cron = "${spring.cron.pending-payment}")
-    @SchedulerLock(name = "pendingPaymentScheduler", lockAtLeastFor = "PT5S", lockAtMostFor = "PT10S")
     public void scheduledTask() {
-        // process payment code lies here.
-        // it can be processed through even driven architecture using kafka, aws sqs + lambda, rabbitMQ
-
-        // for the purpose of task a simple process will be coded here
-        // in real based scenario data will be fetched with limit to avoid
-        // memory heap issue then each payment will be processed individually
+        settleDuePayments();
+    }
 
+    /**
+     * return payments leased by crashed instances back to pending, only
+     * one instance performs the housekeeping at a time
+     */
+    @Scheduled(cron = "${spring.cron.settlement-lease-reclaim}")
+    @SchedulerLock(name = "settlementLeaseReclaimScheduler", lockAtLeastFor = "PT5S", lockAtMostFor = "PT30S")
+    public void reclaimExpiredLeases() {
         try {
-            paymentRepository.processPendingPayment(PaymentStatus.PROCESSED.name(),
-                    PaymentStatus.PENDING.name(),
-                    getCurrentUTCDateTime());
+            final int reclaimed = settlementEngine.reclaimExpiredLeases();
+            if (reclaimed > 0) {
+                log.warn("Reclaimed {} payments with expired settlement lease", reclaimed);
+            }
         } catch (final Exception e) {
-            log.error("Error occurred processing pending payments, error: {}", e.getMessage());
+            log.error("Error occurred reclaiming expired settlement leases, error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * due payments are claimed in bounded chunks and each chunk is committed
+     * individually to avoid locking the whole table. In shared mode every
+     * instance claims its own chunks with skip locked, in exclusive mode a
+     * lock mechanism avoids other instances to process those records.
+     *
+     * @return {@link Optional<SettlementReport>} run summary, empty when run was skipped or failed
+     */
+    Optional<SettlementReport> settleDuePayments() {
+        // process payment code lies here.
+        // it can be processed through even driven architecture using kafka, aws sqs + lambda, rabbitMQ
+        try {
+            final SettlementReport report;
+            if (mode == SettlementMode.EXCLUSIVE) {
+                // scheduler lock can be programmatically set with configured lock times
+                // https://github.com/lukas-krecan/ShedLock#running-without-spring
+                final LockingTaskExecutor.TaskResult<SettlementReport> result = lockingTaskExecutor.executeWithLock(
+                        settlementEngine::run,
+                        new LockConfiguration(Instant.now(), PENDING_PAYMENT_LOCK,
+                                Duration.ofSeconds(10), Duration.ofSeconds(5)));
+                if (!result.wasExecuted()) {
+                    return Optional.empty();
+                }
+                report = result.getResult();
+            } else {
+                report = settlementEngine.run();
+            }
+            log.info("Pending payments settled, claimed: {}, processed: {}, failed: {}, retried: {}, " +
+                            "dead lettered: {}, chunks: {}, elapsed: {}ms, throughput: {}/s, lag: {}ms",
+                    report.claimed(), report.processed(), report.failed(), report.retried(),
+                    report.deadLettered(), report.chunks(),
+                    report.elapsed().toMillis(), String.format("%.2f", report.throughput()),
+                    report.lag().toMillis());
+            return Optional.of(report);
+        } catch (final Throwable e) {
+            log.error("Error occurred processing pending payments", e);
+            return Optional.empty();
         }
     }
 }
@@ -0,0 +1,58 @@
+package com.microservice.payment.processor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * retry policy for payments that could not be settled due to transient
+ * errors. Delay grows exponentially per attempt up to max interval and
+ * is jittered so that payments failed together do not retry together
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Component
+class RetryPolicy {
+
+    private final int maxAttempts;
+    private final Duration initialInterval;
+    private final double multiplier;
+    private final Duration maxInterval;
+
+    RetryPolicy(@Value("${payment.retry.max-attempts:5}") final int maxAttempts,
+                @Value("${payment.retry.initial-interval:PT30S}") final Duration initialInterval,
+                @Value("${payment.retry.multiplier:2}") final double multiplier,
+                @Value("${payment.retry.max-interval:PT1H}") final Duration maxInterval) {
+        this.maxAttempts = maxAttempts;
+        this.initialInterval = initialInterval;
+        this.multiplier = multiplier;
+        this.maxInterval = maxInterval;
+    }
+
+    /**
+     * indicates payment should not be retried anymore
+     *
+     * @param attempt number of failed attempts including the current one
+     * @return {@link Boolean} attempts are exhausted
+     */
+    boolean isExhausted(final int attempt) {
+        return attempt >= maxAttempts;
+    }
+
+    /**
+     * delay before next attempt, half of the exponential delay is kept
+     * and the other half is randomized
+     *
+     * @param attempt number of failed attempts including the current one
+     * @return {@link Duration} delay before next attempt
+     */
+    Duration backoff(final int attempt) {
+        final double exponential = initialInterval.toMillis() * Math.pow(multiplier, Math.max(0, attempt - 1));
+        final long delay = (long) Math.min(maxInterval.toMillis(), exponential);
+        final long fixed = delay / 2;
+        return Duration.ofMillis(fixed + ThreadLocalRandom.current().nextLong(delay - fixed + 1));
+    }
+}
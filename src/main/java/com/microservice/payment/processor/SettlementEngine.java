@@ -0,0 +1,436 @@
+package com.microservice.payment.processor;
+
+import com.microservice.payment.cache.PaymentCacheEvictor;
+import com.microservice.payment.datasource.ReadYourWritesGuard;
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.entity.PaymentDeadLetter;
+import com.microservice.payment.event.PaymentOutbox;
+import com.microservice.payment.helper.paymentvalidator.MinimumAmountValidation;
+import com.microservice.payment.helper.paymentvalidator.PaymentCommand;
+import com.microservice.payment.repository.PaymentDeadLetterRepository;
+import com.microservice.payment.repository.PaymentRepository;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.microservice.payment.utils.Constants.MINIMUM_PAYMENT_AMOUNT;
+
+/**
+ * settlement engine that claims due pending payments and due retries in
+ * bounded chunks using keyset pagination over (due time, id). Chunks are claimed
+ * with skip locked and leased to this instance, so every instance works
+ * on its own disjoint chunk. Claim and release are short transactions,
+ * no row lock is held while payments are settled through the gateway.
+ * Every change is recorded in read your writes guard, so payments evicted
+ * from cache are reloaded from primary instead of a lagging replica
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+class SettlementEngine {
+
+    private static final int LAST_ERROR_LENGTH = 512;
+    // lowest id, keyset of the first chunk starts before every payment
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    @Value("${payment.settlement.chunk-size:500}")
+    private int chunkSize;
+    @Value("${payment.settlement.run-budget:PT8S}")
+    private Duration runBudget;
+    @Value("${payment.settlement.lease-duration:PT60S}")
+    private Duration leaseDuration;
+    @Value("${payment.settlement.instance-id}")
+    private String instanceId;
+
+    private final PaymentRepository paymentRepository;
+    private final PaymentDeadLetterRepository paymentDeadLetterRepository;
+    private final RetryPolicy retryPolicy;
+    private final PaymentOutbox paymentOutbox;
+    private final TransactionTemplate transactionTemplate;
+    private final SettlementExecutor settlementExecutor;
+    private final CustomerPaymentStats customerPaymentStats;
+    private final PaymentCacheEvictor paymentCacheEvictor;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final Clock clock;
+
+    /**
+     * settle all payments and retries that are due at the time the run
+     * starts, chunk by chunk, until nothing is due or run budget is consumed
+     *
+     * @return {@link SettlementReport} run summary
+     */
+    SettlementReport run() {
+        final long startedAt = System.nanoTime();
+        final Instant currentTime = clock.instant();
+        final Totals totals = new Totals();
+        for (final DueQueue queue : DueQueue.values()) {
+            settleQueue(queue, currentTime, startedAt, totals);
+        }
+        return new SettlementReport(totals.chunks, totals.processed, totals.failed, totals.retried,
+                totals.deadLettered, Duration.ofNanos(System.nanoTime() - startedAt), totals.lag);
+    }
+
+    /**
+     * settle due payments of a single queue using keyset pagination
+     * over (due time, id) of the queue
+     *
+     * @param queue       {@link DueQueue} queue to settle
+     * @param currentTime {@link Instant} run start time
+     * @param startedAt   run start nano time
+     * @param totals      {@link Totals} run totals
+     */
+    private void settleQueue(final DueQueue queue, final Instant currentTime, final long startedAt,
+                             final Totals totals) {
+        Instant afterTime = Instant.EPOCH;
+        UUID afterId = FIRST_ID;
+        while (!settlementExecutor.isGatewayUnavailable() &&
+                Duration.ofNanos(System.nanoTime() - startedAt).compareTo(runBudget) < 0) {
+            final Instant keysetTime = afterTime;
+            final UUID keysetId = afterId;
+            final List<Payment> payments = transactionTemplate.execute(status ->
+                    claimChunk(queue, currentTime, keysetTime, keysetId));
+            if (payments == null || payments.isEmpty()) {
+                break;
+            }
+            // claim committed, detached payments now match their stored status and stats
+            payments.forEach(payment -> payment.setStatus(PaymentStatus.PROCESSING.name()));
+            if (queue == DueQueue.PENDING && totals.chunks == 0) {
+                totals.lag = Duration.between(queue.dueTime(payments.get(0)), currentTime);
+            }
+            totals.add(settleChunk(payments));
+            final Payment last = payments.get(payments.size() - 1);
+            afterTime = queue.dueTime(last);
+            afterId = last.getId();
+            log.debug("Settlement chunk {} committed, queue: {}, size: {}", totals.chunks, queue, payments.size());
+            if (payments.size() < chunkSize) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * return payments whose lease expired back to the queue they were
+     * claimed from, this covers payments claimed by an instance that
+     * crashed before releasing them
+     *
+     * @return total reclaimed payments
+     */
+    int reclaimExpiredLeases() {
+        int total = 0;
+        int reclaimed;
+        do {
+            reclaimed = Objects.requireNonNullElse(transactionTemplate.execute(status -> reclaimChunk()), 0);
+            total += reclaimed;
+        } while (reclaimed == chunkSize);
+        return total;
+    }
+
+    /**
+     * reclaim the next chunk of expired leases, retries have next attempt
+     * time and go back to failed, other payments go back to pending.
+     * Customer stats are moved out of processing along with them
+     *
+     * @return total reclaimed payments
+     */
+    private int reclaimChunk() {
+        final List<Payment> expired = paymentRepository.findExpiredLeaseChunk(PaymentStatus.PROCESSING.name(),
+                chunkSize);
+        final Map<Boolean, List<Payment>> retries = expired.stream()
+                .collect(Collectors.partitioningBy(payment -> payment.getNextAttemptTime() != null));
+        return reclaim(retries.get(false), PaymentStatus.PENDING) + reclaim(retries.get(true), PaymentStatus.FAILED);
+    }
+
+    private int reclaim(final List<Payment> payments, final PaymentStatus status) {
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        final List<UUID> ids = payments.stream().map(Payment::getId).toList();
+        final int reclaimed = paymentRepository.reclaimPayments(ids, status.name(), PaymentStatus.PROCESSING.name());
+        customerPaymentStats.moved(payments, status.name());
+        recordWrite(payments);
+        paymentCacheEvictor.evictAfterCommit(ids);
+        return reclaimed;
+    }
+
+    /**
+     * claim the next chunk of due payments that is not locked by
+     * any other instance and lease it to this instance. Customer stats
+     * count claimed payments as processing same as payment table does,
+     * cached copies are evicted as claim appends no payment event
+     *
+     * @param queue       {@link DueQueue} queue to claim from
+     * @param currentTime {@link Instant} run start time
+     * @param afterTime   {@link Instant} keyset due time
+     * @param afterId     {@link UUID} keyset payment id
+     * @return {@link List<Payment>} claimed payments
+     */
+    private List<Payment> claimChunk(final DueQueue queue, final Instant currentTime,
+                                     final Instant afterTime, final UUID afterId) {
+        final String status = queue.status().name();
+        final List<Payment> payments = queue == DueQueue.PENDING
+                ? paymentRepository.findDuePaymentChunk(status, currentTime, afterTime, afterId, chunkSize)
+                : paymentRepository.findRetryPaymentChunk(status, currentTime, afterTime, afterId, chunkSize);
+        if (payments.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final List<UUID> ids = payments.stream().map(Payment::getId).toList();
+        paymentRepository.claimPayments(ids, PaymentStatus.PROCESSING.name(), status, instanceId,
+                leaseDuration.toSeconds());
+        customerPaymentStats.moved(payments, PaymentStatus.PROCESSING.name());
+        recordWrite(payments);
+        paymentCacheEvictor.evictAfterCommit(ids);
+        return payments;
+    }
+
+    /**
+     * settle claimed payments in parallel through payment gateway, a single
+     * invalid or declined payment does not fail the entire chunk. Payments
+     * that could not reach the gateway are scheduled for retry with backoff
+     * or dead lettered once attempts are exhausted, then the chunk is
+     * released in one transaction
+     *
+     * @param payments {@link List<Payment>} claimed payments
+     * @return {@link Chunk} settled chunk
+     */
+    private Chunk settleChunk(final List<Payment> payments) {
+        final List<Payment> processed = new ArrayList<>();
+        final List<Payment> failed = new ArrayList<>();
+        final List<SettlementOutcome> retries = new ArrayList<>();
+        final List<SettlementOutcome> exhausted = new ArrayList<>();
+        final List<Payment> validPayments = new ArrayList<>();
+        for (final Payment payment : payments) {
+            try {
+                validate(payment);
+                validPayments.add(payment);
+            } catch (final Exception e) {
+                log.error("Error occurred settling payment: {}, error: {}", payment.getId(), e.getMessage());
+                failed.add(payment);
+            }
+        }
+        for (final SettlementOutcome outcome : settlementExecutor.settle(validPayments)) {
+            final UUID id = outcome.payment().getId();
+            if (outcome.approved()) {
+                processed.add(outcome.payment());
+            } else if (outcome.declined()) {
+                log.error("Payment declined by gateway: {}, reason: {}", id, outcome.response().reason());
+                failed.add(outcome.payment());
+            } else if (retryPolicy.isExhausted(outcome.payment().getAttemptCount() + 1)) {
+                log.error("Payment attempts exhausted: {}, error: {}", id, outcome.error().getMessage());
+                exhausted.add(outcome);
+            } else {
+                log.warn("Payment gateway unavailable for payment: {}, error: {}", id, outcome.error().getMessage());
+                retries.add(outcome);
+            }
+        }
+        final Chunk chunk = transactionTemplate.execute(status -> new Chunk(
+                release(processed, PaymentStatus.PROCESSED),
+                release(failed, PaymentStatus.FAILED),
+                retry(retries),
+                deadLetter(exhausted)));
+        if (chunk != null && chunk.released() < payments.size()) {
+            log.warn("Settlement lease lost for {} payments", payments.size() - chunk.released());
+        }
+        return Objects.requireNonNullElse(chunk, new Chunk(0, 0, 0, 0));
+    }
+
+    /**
+     * move payments to their final status and append their events to
+     * outbox and customer stats in the same transaction, when the lease of
+     * some payments was lost only payments found in the final status count
+     *
+     * @param payments {@link List<Payment>} settled payments
+     * @param status   {@link PaymentStatus} final status
+     * @return total released payments
+     */
+    private int release(final List<Payment> payments, final PaymentStatus status) {
+        if (payments.isEmpty()) {
+            return 0;
+        }
+        final List<UUID> ids = payments.stream().map(Payment::getId).toList();
+        final int released = paymentRepository.releasePayments(ids, status.name(),
+                PaymentStatus.PROCESSING.name(), instanceId);
+        final List<Payment> changed = released == payments.size()
+                ? payments
+                : paymentRepository.findAllById(ids).stream()
+                .filter(payment -> status.name().equals(payment.getStatus()))
+                .toList();
+        final Set<UUID> changedIds = changed.stream().map(Payment::getId).collect(Collectors.toSet());
+        customerPaymentStats.moved(payments.stream()
+                .filter(payment -> changedIds.contains(payment.getId()))
+                .toList(), status.name());
+        changed.forEach(payment -> payment.setStatus(status.name()));
+        recordWrite(changed);
+        paymentOutbox.append(changed);
+        return released;
+    }
+
+    /**
+     * schedule next attempt of each payment with its own jittered backoff,
+     * retried payments append no payment event so cached copies are evicted
+     *
+     * @param outcomes {@link List<SettlementOutcome>} transient failures
+     * @return total payments scheduled for retry
+     */
+    private int retry(final List<SettlementOutcome> outcomes) {
+        final List<Payment> retried = new ArrayList<>();
+        for (final SettlementOutcome outcome : outcomes) {
+            final Payment payment = outcome.payment();
+            final Instant nextAttemptTime = clock.instant()
+                    .plus(retryPolicy.backoff(payment.getAttemptCount() + 1));
+            if (paymentRepository.recordFailedAttempt(payment.getId(), PaymentStatus.FAILED.name(),
+                    PaymentStatus.PROCESSING.name(), instanceId, nextAttemptTime, lastError(outcome.error())) > 0) {
+                retried.add(payment);
+            }
+        }
+        customerPaymentStats.moved(retried, PaymentStatus.FAILED.name());
+        recordWrite(retried);
+        paymentCacheEvictor.evictAfterCommit(retried.stream().map(Payment::getId).toList());
+        return retried.size();
+    }
+
+    /**
+     * move payments that exhausted their attempts to dead letter, they stay
+     * failed without next attempt until replayed and get a failed event
+     *
+     * @param outcomes {@link List<SettlementOutcome>} exhausted failures
+     * @return total dead lettered payments
+     */
+    private int deadLetter(final List<SettlementOutcome> outcomes) {
+        if (outcomes.isEmpty()) {
+            return 0;
+        }
+        final List<Payment> deadLettered = new ArrayList<>();
+        for (final SettlementOutcome outcome : outcomes) {
+            final Payment payment = outcome.payment();
+            final String lastError = lastError(outcome.error());
+            if (paymentRepository.recordFailedAttempt(payment.getId(), PaymentStatus.FAILED.name(),
+                    PaymentStatus.PROCESSING.name(), instanceId, null, lastError) > 0) {
+                paymentDeadLetterRepository.save(PaymentDeadLetter.builder()
+                        .paymentId(payment.getId())
+                        .attemptCount(payment.getAttemptCount() + 1)
+                        .lastError(lastError)
+                        .build());
+                deadLettered.add(payment);
+            }
+        }
+        customerPaymentStats.moved(deadLettered, PaymentStatus.FAILED.name());
+        deadLettered.forEach(payment -> payment.setStatus(PaymentStatus.FAILED.name()));
+        recordWrite(deadLettered);
+        paymentOutbox.append(deadLettered);
+        return deadLettered.size();
+    }
+
+    /**
+     * remember changed payments and their customers in read your writes
+     * guard, reads within the sticky window go to primary
+     *
+     * @param payments {@link List<Payment>} changed payments
+     */
+    private void recordWrite(final List<Payment> payments) {
+        readYourWritesGuard.recordWrite(payments.stream()
+                .flatMap(payment -> Stream.of(payment.getCustomerId(), payment.getId().toString()))
+                .distinct()
+                .toList());
+    }
+
+    private static String lastError(final Throwable error) {
+        final String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        return message.length() > LAST_ERROR_LENGTH ? message.substring(0, LAST_ERROR_LENGTH) : message;
+    }
+
+    /**
+     * validate individual payment before settlement, payment that does
+     * not satisfy minimum amount anymore cannot be settled
+     *
+     * @param payment {@link Payment} payment to settle
+     */
+    private void validate(final Payment payment) {
+        new PaymentCommand.CommandBuilder()
+                .addCommand(new MinimumAmountValidation(
+                        payment.getAmount(),
+                        MINIMUM_PAYMENT_AMOUNT)
+                )
+                .build().executeAll();
+    }
+
+    /**
+     * queue of due payments, each queue is claimed by its own status
+     * and ordered by its own due time
+     */
+    private enum DueQueue {
+        PENDING(PaymentStatus.PENDING, Payment::getProcessingTime),
+        RETRY(PaymentStatus.FAILED, Payment::getNextAttemptTime);
+
+        private final PaymentStatus status;
+        private final Function<Payment, Instant> dueTime;
+
+        DueQueue(final PaymentStatus status, final Function<Payment, Instant> dueTime) {
+            this.status = status;
+            this.dueTime = dueTime;
+        }
+
+        PaymentStatus status() {
+            return status;
+        }
+
+        Instant dueTime(final Payment payment) {
+            return dueTime.apply(payment);
+        }
+    }
+
+    /**
+     * result of a single released chunk
+     *
+     * @param processed    total processed payments
+     * @param failed       total failed payments
+     * @param retried      total payments scheduled for retry
+     * @param deadLettered total dead lettered payments
+     */
+    private record Chunk(int processed, int failed, int retried, int deadLettered) {
+
+        int released() {
+            return processed + failed + retried + deadLettered;
+        }
+    }
+
+    /**
+     * running totals of a settlement run
+     */
+    private static final class Totals {
+        private int chunks;
+        private int processed;
+        private int failed;
+        private int retried;
+        private int deadLettered;
+        private Duration lag = Duration.ZERO;
+
+        private void add(final Chunk chunk) {
+            chunks++;
+            processed += chunk.processed();
+            failed += chunk.failed();
+            retried += chunk.retried();
+            deadLettered += chunk.deadLettered();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.microservice.payment.processor;
+
+import com.microservice.payment.dto.payment.PaymentDTO;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.gateway.GatewayResponse;
+import com.microservice.payment.gateway.PaymentGateway;
+import com.microservice.payment.mapper.PaymentMapper;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
+
+import static com.microservice.payment.utils.Constants.PAYMENT_GATEWAY;
+
+/**
+ * executor that settles claimed payments in parallel through payment
+ * gateway. Every gateway call runs on its own thread, virtual thread
+ * when spring virtual threads are active, bounded by configured
+ * concurrency and guarded by bulkhead, time limiter and circuit breaker.
+ * A timed out call is not stopped, it keeps running and may still settle
+ * the payment, so every attempt of a payment is sent with the payment id
+ * as settlement reference and the gateway deduplicates a later attempt.
+ * Gateway calls are executed outside any transaction so slow calls
+ * never hold database connections
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+class SettlementExecutor {
+
+    private final PaymentGateway paymentGateway;
+    private final PaymentMapper mapper;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final TimeLimiter timeLimiter;
+    private final SimpleAsyncTaskExecutor executor;
+    private final ScheduledExecutorService timeoutScheduler;
+
+    SettlementExecutor(final PaymentGateway paymentGateway,
+                       final PaymentMapper mapper,
+                       final CircuitBreakerRegistry circuitBreakerRegistry,
+                       final BulkheadRegistry bulkheadRegistry,
+                       final TimeLimiterRegistry timeLimiterRegistry,
+                       final Environment environment,
+                       @Value("${payment.settlement.concurrency:200}") final int concurrency) {
+        this.paymentGateway = paymentGateway;
+        this.mapper = mapper;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(PAYMENT_GATEWAY);
+        this.bulkhead = bulkheadRegistry.bulkhead(PAYMENT_GATEWAY);
+        this.timeLimiter = timeLimiterRegistry.timeLimiter(PAYMENT_GATEWAY);
+        this.executor = new SimpleAsyncTaskExecutor("settlement-");
+        this.executor.setVirtualThreads(Threading.VIRTUAL.isActive(environment));
+        this.executor.setConcurrencyLimit(concurrency);
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * settle payments in parallel and wait until every payment has an
+     * outcome, a failing payment never fails other payments
+     *
+     * @param payments {@link List<Payment>} payments to settle
+     * @return {@link List<SettlementOutcome>} outcome of each payment in same order
+     */
+    List<SettlementOutcome> settle(final List<Payment> payments) {
+        final List<CompletableFuture<SettlementOutcome>> outcomes = payments.stream()
+                .map(this::settleAsync)
+                .toList();
+        return outcomes.stream().map(CompletableFuture::join).toList();
+    }
+
+    /**
+     * indicates gateway calls are currently rejected by circuit breaker
+     *
+     * @return {@link Boolean} circuit breaker does not permit calls
+     */
+    boolean isGatewayUnavailable() {
+        return circuitBreaker.getState() == CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * settle a single payment, a payment that cannot even be prepared for
+     * the gateway results in a failed outcome instead of failing the chunk
+     *
+     * @param payment {@link Payment} payment to settle
+     * @return {@link CompletableFuture<SettlementOutcome>} outcome of the payment
+     */
+    private CompletableFuture<SettlementOutcome> settleAsync(final Payment payment) {
+        try {
+            final PaymentDTO paymentDTO = mapper.toDTO(payment);
+            final Supplier<GatewayResponse> gatewayCall = Bulkhead.decorateSupplier(bulkhead,
+                    () -> paymentGateway.settle(paymentDTO, paymentDTO.getId()));
+            final Supplier<CompletionStage<GatewayResponse>> guardedCall = CircuitBreaker.decorateCompletionStage(
+                    circuitBreaker,
+                    timeLimiter.decorateCompletionStage(timeoutScheduler,
+                            () -> CompletableFuture.supplyAsync(gatewayCall, executor)));
+            return guardedCall.get()
+                    .toCompletableFuture()
+                    .handle((response, error) -> new SettlementOutcome(payment, response, unwrap(error)));
+        } catch (final RuntimeException e) {
+            return CompletableFuture.completedFuture(new SettlementOutcome(payment, null, e));
+        }
+    }
+
+    private static Throwable unwrap(final Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        timeoutScheduler.shutdownNow();
+    }
+}
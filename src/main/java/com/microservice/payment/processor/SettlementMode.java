@@ -0,0 +1,19 @@
+package com.microservice.payment.processor;
+
+/**
+ * enum that provides how pending payments settlement
+ * is distributed between instances
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+enum SettlementMode {
+    /**
+     * every instance claims its own disjoint chunks of due payments
+     */
+    SHARED,
+    /**
+     * only the instance holding the scheduler lock settles payments
+     */
+    EXCLUSIVE
+}
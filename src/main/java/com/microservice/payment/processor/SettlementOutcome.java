@@ -0,0 +1,24 @@
+package com.microservice.payment.processor;
+
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.gateway.GatewayResponse;
+
+/**
+ * outcome of settling a single payment through payment gateway
+ *
+ * @param payment  {@link Payment} settled payment
+ * @param response {@link GatewayResponse} gateway response, null when call failed
+ * @param error    {@link Throwable} transient failure such as timeout, open circuit or full bulkhead
+ * @author Asif Bakht
+ * @since 2024
+ */
+record SettlementOutcome(Payment payment, GatewayResponse response, Throwable error) {
+
+    boolean approved() {
+        return error == null && response.approved();
+    }
+
+    boolean declined() {
+        return error == null && !response.approved();
+    }
+}
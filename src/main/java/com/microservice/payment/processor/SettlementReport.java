@@ -0,0 +1,41 @@
+package com.microservice.payment.processor;
+
+import java.time.Duration;
+
+/**
+ * summary of a single settlement run, used to report
+ * throughput and lag of pending payment processing
+ *
+ * @param chunks       number of chunks committed
+ * @param processed    number of payments moved to processed
+ * @param failed       number of payments moved to failed
+ * @param retried      number of payments scheduled for retry after a transient error
+ * @param deadLettered number of payments moved to dead letter after exhausting attempts
+ * @param elapsed      {@link Duration} total time spent in the run
+ * @param lag          {@link Duration} delay between the oldest claimed payment
+ *                     processing time and the start of the run
+ * @author Asif Bakht
+ * @since 2024
+ */
+record SettlementReport(int chunks, int processed, int failed, int retried, int deadLettered,
+                        Duration elapsed, Duration lag) {
+
+    /**
+     * total payments claimed within the run
+     *
+     * @return total claimed payments
+     */
+    int claimed() {
+        return processed + failed + retried + deadLettered;
+    }
+
+    /**
+     * settled payments per second within the run
+     *
+     * @return throughput per second
+     */
+    double throughput() {
+        final long millis = Math.max(1, elapsed.toMillis());
+        return claimed() * 1000d / millis;
+    }
+}
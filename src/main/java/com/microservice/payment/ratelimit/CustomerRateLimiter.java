@@ -0,0 +1,236 @@
+package com.microservice.payment.ratelimit;
+
+import com.microservice.payment.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * per customer rate limiter of write endpoints. Each customer has a
+ * token bucket per endpoint held in a concurrent map, buckets are
+ * updated with compare and set so requests never wait on a lock.
+ * Buckets that refilled completely are evicted periodically, they are
+ * recreated full on next request. When distributed mode is enabled
+ * buckets live in redis and are updated atomically by a lua script so
+ * the limit holds across instances, when redis is not reachable the
+ * local buckets are used. Customers throttled the most since last
+ * eviction are published as a bounded gauge
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class CustomerRateLimiter {
+
+    private static final String KEY_PREFIX = "payment:rate-limit:";
+    private static final String METRIC_REQUESTS = "payment.rate-limit.requests";
+    // refill lazily from redis time so instance clocks do not matter, bucket expires once full again
+    private static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>("""
+            local capacity = tonumber(ARGV[1])
+            local rate = tonumber(ARGV[2])
+            local time = redis.call('TIME')
+            local now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+            local bucket = redis.call('HMGET', KEYS[1], 'tokens', 'at')
+            local tokens = tonumber(bucket[1]) or capacity
+            local at = tonumber(bucket[2]) or now
+            tokens = math.min(capacity, tokens + math.max(0, now - at) * rate)
+            if tokens < 1 then
+                return math.ceil((1 - tokens) / rate)
+            end
+            redis.call('HSET', KEYS[1], 'tokens', tostring(tokens - 1), 'at', tostring(now))
+            redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate))
+            return 0
+            """, Long.class);
+
+    /**
+     * rate limited endpoints, each has its own limit
+     */
+    public enum Endpoint {
+        ADD_PAYMENT, UPDATE_PAYMENT;
+
+        private final String tag = name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+
+    @Value("${payment.rate-limit.enabled:true}")
+    private boolean enabled;
+    @Value("${payment.rate-limit.distributed:false}")
+    private boolean distributed;
+    @Value("${payment.rate-limit.add-payment.capacity:20}")
+    private long addCapacity;
+    @Value("${payment.rate-limit.add-payment.refill-per-second:5}")
+    private double addRefillPerSecond;
+    @Value("${payment.rate-limit.update-payment.capacity:10}")
+    private long updateCapacity;
+    @Value("${payment.rate-limit.update-payment.refill-per-second:2}")
+    private double updateRefillPerSecond;
+    @Value("${payment.rate-limit.top-customers:10}")
+    private int topCustomers;
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Endpoint, Limit> limits = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Map<String, TokenBucket>> buckets = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Counter> allowed = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Counter> throttled = new EnumMap<>(Endpoint.class);
+    private volatile Map<String, LongAdder> throttledByCustomer = new ConcurrentHashMap<>();
+    private MultiGauge topThrottled;
+    private LongSupplier nanoTime = System::nanoTime;
+
+    @PostConstruct
+    void configure() {
+        limits.put(Endpoint.ADD_PAYMENT, new Limit(addCapacity, addRefillPerSecond));
+        limits.put(Endpoint.UPDATE_PAYMENT, new Limit(updateCapacity, updateRefillPerSecond));
+        for (final Endpoint endpoint : Endpoint.values()) {
+            buckets.put(endpoint, new ConcurrentHashMap<>());
+            allowed.put(endpoint, Counter.builder(METRIC_REQUESTS)
+                    .tags("endpoint", endpoint.tag, "result", "allowed").register(meterRegistry));
+            throttled.put(endpoint, Counter.builder(METRIC_REQUESTS)
+                    .tags("endpoint", endpoint.tag, "result", "throttled").register(meterRegistry));
+        }
+        topThrottled = MultiGauge.builder("payment.rate-limit.top-throttled")
+                .description("requests throttled per customer since last eviction, most throttled customers only")
+                .register(meterRegistry);
+    }
+
+    /**
+     * take a request of the customer from its bucket of the endpoint
+     *
+     * @param endpoint   {@link Endpoint} endpoint being called
+     * @param customerId {@link String} customer sending the request
+     * @throws TooManyRequestsException when customer has no tokens left
+     */
+    public void acquire(final Endpoint endpoint, final String customerId) {
+        tryAcquire(endpoint, customerId).ifPresent(retryAfter -> {
+            throw new TooManyRequestsException(throttledMessage(retryAfter), retryAfter);
+        });
+    }
+
+    /**
+     * take a request of the customer from its bucket of the endpoint
+     * without failing, used where a single request carries many items
+     *
+     * @param endpoint   {@link Endpoint} endpoint being called
+     * @param customerId {@link String} customer sending the request
+     * @return {@link Optional} time until next token, empty when token was taken
+     */
+    public Optional<Duration> tryAcquire(final Endpoint endpoint, final String customerId) {
+        final Limit limit = limits.get(endpoint);
+        if (!enabled || customerId == null || !limit.isEnabled()) {
+            return Optional.empty();
+        }
+        final long waitNanos = distributed
+                ? acquireDistributed(endpoint, limit, customerId)
+                : acquireLocal(endpoint, limit, customerId);
+        if (waitNanos <= 0) {
+            allowed.get(endpoint).increment();
+            return Optional.empty();
+        }
+        throttled.get(endpoint).increment();
+        throttledByCustomer.computeIfAbsent(customerId, id -> new LongAdder()).increment();
+        log.warn("Rate limit exceeded, customerId: {}, endpoint: {}", customerId, endpoint.tag);
+        return Optional.of(Duration.ofNanos(waitNanos));
+    }
+
+    private long acquireLocal(final Endpoint endpoint, final Limit limit, final String customerId) {
+        final long now = nanoTime.getAsLong();
+        return buckets.get(endpoint)
+                .computeIfAbsent(customerId, id -> new TokenBucket(limit.capacity(), limit.refillPerSecond(), now))
+                .tryAcquire(now);
+    }
+
+    private long acquireDistributed(final Endpoint endpoint, final Limit limit, final String customerId) {
+        try {
+            final Long waitMillis = redisTemplate.execute(ACQUIRE,
+                    List.of(KEY_PREFIX + endpoint.tag + ":" + customerId),
+                    Long.toString(limit.capacity()), Double.toString(limit.refillPerSecond() / 1000d));
+            return waitMillis == null ? 0 : TimeUnit.MILLISECONDS.toNanos(waitMillis);
+        } catch (final Exception e) {
+            log.warn("Rate limit could not be checked in redis, local limit is used: {}, error: {}",
+                    customerId, e.getMessage());
+            return acquireLocal(endpoint, limit, customerId);
+        }
+    }
+
+    /**
+     * evict buckets that refilled completely and publish customers
+     * throttled the most since last run. A request racing the eviction
+     * of its bucket may get one extra token, which is harmless
+     */
+    @Scheduled(fixedDelayString = "${payment.rate-limit.eviction-interval:PT1M}")
+    public void evictIdleBuckets() {
+        final long now = nanoTime.getAsLong();
+        buckets.values().forEach(customerBuckets ->
+                customerBuckets.values().removeIf(bucket -> bucket.isFull(now)));
+        final Map<String, LongAdder> counts = throttledByCustomer;
+        throttledByCustomer = new ConcurrentHashMap<>();
+        topThrottled.register(counts.entrySet().stream()
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue().sum()))
+                .sorted(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(topCustomers)
+                .<MultiGauge.Row<?>>map(entry -> MultiGauge.Row.of(Tags.of("customer", entry.getKey()), entry.getValue()))
+                .toList(), true);
+    }
+
+    /**
+     * number of buckets held in memory
+     */
+    int bucketCount() {
+        return buckets.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /**
+     * message returned to a throttled customer
+     *
+     * @param retryAfter {@link Duration} time until next request is allowed
+     * @return {@link String} message
+     */
+    public static String throttledMessage(final Duration retryAfter) {
+        return "Too many requests, retry after %d seconds".formatted(retryAfterSeconds(retryAfter));
+    }
+
+    /**
+     * retry after header value, whole seconds rounded up
+     *
+     * @param retryAfter {@link Duration} time until next request is allowed
+     * @return seconds, at least 1
+     */
+    public static long retryAfterSeconds(final Duration retryAfter) {
+        return Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+    }
+
+    /**
+     * @param capacity        burst size of a customer, 0 disables the limit
+     * @param refillPerSecond sustained requests per second of a customer
+     */
+    private record Limit(long capacity, double refillPerSecond) {
+
+        boolean isEnabled() {
+            return capacity > 0 && refillPerSecond > 0;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.microservice.payment.ratelimit;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * lock free token bucket, state is replaced as a whole with compare
+ * and set so concurrent requests of a customer never block each other.
+ * Tokens are refilled lazily from the time elapsed since last update
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final AtomicReference<State> state;
+
+    /**
+     * @param capacity        burst size, bucket starts full
+     * @param refillPerSecond tokens added per second
+     * @param now             current {@link System#nanoTime()}
+     */
+    TokenBucket(final long capacity, final double refillPerSecond, final long now) {
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerSecond / 1_000_000_000d;
+        this.state = new AtomicReference<>(new State(capacity, now));
+    }
+
+    /**
+     * take a token when one is available
+     *
+     * @param now current {@link System#nanoTime()}
+     * @return 0 when token was taken, otherwise nanos until next token
+     */
+    long tryAcquire(final long now) {
+        while (true) {
+            final State current = state.get();
+            final double tokens = available(current, now);
+            if (tokens < 1) {
+                return (long) Math.ceil((1 - tokens) / tokensPerNano);
+            }
+            if (state.compareAndSet(current, new State(tokens - 1, Math.max(now, current.updatedAt())))) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * whether bucket refilled completely, a full bucket
+     * behaves exactly like a newly created one
+     */
+    boolean isFull(final long now) {
+        return available(state.get(), now) >= capacity;
+    }
+
+    private double available(final State current, final long now) {
+        final long elapsed = Math.max(0, now - current.updatedAt());
+        return Math.min(capacity, current.tokens() + elapsed * tokensPerNano);
+    }
+
+    /**
+     * @param tokens    tokens left at update time
+     * @param updatedAt {@link System#nanoTime()} of last update
+     */
+    private record State(double tokens, long updatedAt) {
+    }
+}
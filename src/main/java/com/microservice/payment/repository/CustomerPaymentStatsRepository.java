@@ -0,0 +1,123 @@
+package com.microservice.payment.repository;
+
+import com.microservice.payment.stats.CustomerPaymentStat;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * customer payment stats related query resides here, totals are
+ * changed through jdbc batch upsert in the transaction that changed
+ * the payments and recomputed from payment table by reconciliation
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Repository
+@RequiredArgsConstructor
+public class CustomerPaymentStatsRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * add changes to stored totals in caller transaction, missing
+     * totals are created
+     *
+     * @param changes {@link List<CustomerPaymentStat>} changes in lock order
+     */
+    public void addAll(final List<CustomerPaymentStat> changes) {
+        final SqlParameterSource[] rows = changes.stream()
+                .map(change -> new MapSqlParameterSource()
+                        .addValue("customerId", change.customerId())
+                        .addValue("status", change.status())
+                        .addValue("total", change.total()))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO `customer_payment_stats` (customer_id, status, total)
+                VALUES (:customerId, :status, :total)
+                ON DUPLICATE KEY UPDATE total = total + VALUES(total)""", rows);
+    }
+
+    /**
+     * total payments of a customer in every status
+     *
+     * @param customerId      {@link String} customer id
+     * @param includeArchived {@link Boolean} include payments moved to history
+     * @return total customer payments
+     */
+    public long findTotal(final String customerId, final boolean includeArchived) {
+        final Long total = jdbcTemplate.queryForObject("""
+                        SELECT COALESCE(SUM(total), 0) FROM `customer_payment_stats`
+                        WHERE customer_id = :customerId AND (:includeArchived OR status <> :archived)""",
+                new MapSqlParameterSource()
+                        .addValue("customerId", customerId)
+                        .addValue("includeArchived", includeArchived)
+                        .addValue("archived", CustomerPaymentStats.ARCHIVED), Long.class);
+        return total == null ? 0 : total;
+    }
+
+    /**
+     * next customers having payments, archived payments or stats after
+     * provided customer, each source is served from its customer id index
+     *
+     * @param afterCustomerId {@link String} last customer of previous chunk
+     * @param limit           maximum customers to return
+     * @return {@link List<String>} customer ids in ascending order
+     */
+    public List<String> findCustomerIds(final String afterCustomerId, final int limit) {
+        return jdbcTemplate.queryForList("""
+                        SELECT customer_id FROM (
+                            (SELECT DISTINCT customer_id FROM `payment`
+                             WHERE customer_id > :afterCustomerId ORDER BY customer_id LIMIT :limit)
+                            UNION
+                            (SELECT DISTINCT customer_id FROM `payment_history`
+                             WHERE customer_id > :afterCustomerId ORDER BY customer_id LIMIT :limit)
+                            UNION
+                            (SELECT DISTINCT customer_id FROM `customer_payment_stats`
+                             WHERE customer_id > :afterCustomerId ORDER BY customer_id LIMIT :limit)) customers
+                        ORDER BY customer_id LIMIT :limit""",
+                new MapSqlParameterSource()
+                        .addValue("afterCustomerId", afterCustomerId)
+                        .addValue("limit", limit),
+                String.class);
+    }
+
+    /**
+     * recompute totals of customers within provided range from payment
+     * and history tables in caller transaction. Counted rows are share
+     * locked until commit so changes committed meanwhile are not lost,
+     * payment rows are locked before stats rows same as regular writers do
+     *
+     * @param fromCustomerId {@link String} first customer of the range
+     * @param toCustomerId   {@link String} last customer of the range
+     */
+    public void reconcile(final String fromCustomerId, final String toCustomerId) {
+        final MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("fromCustomerId", fromCustomerId)
+                .addValue("toCustomerId", toCustomerId)
+                .addValue("archived", CustomerPaymentStats.ARCHIVED);
+        jdbcTemplate.update("""
+                INSERT INTO `customer_payment_stats` (customer_id, status, total)
+                SELECT counted.customer_id, counted.status, counted.total FROM (
+                    SELECT p.customer_id, p.status, COUNT(*) AS total FROM `payment` p
+                    WHERE p.customer_id BETWEEN :fromCustomerId AND :toCustomerId AND p.status IS NOT NULL
+                    GROUP BY p.customer_id, p.status
+                    UNION ALL
+                    SELECT h.customer_id, :archived, COUNT(*) FROM `payment_history` h
+                    WHERE h.customer_id BETWEEN :fromCustomerId AND :toCustomerId
+                    GROUP BY h.customer_id) counted
+                ON DUPLICATE KEY UPDATE total = counted.total""", params);
+        jdbcTemplate.update("""
+                DELETE s FROM `customer_payment_stats` s
+                WHERE s.customer_id BETWEEN :fromCustomerId AND :toCustomerId
+                AND NOT EXISTS (SELECT 1 FROM `payment` p
+                                WHERE p.customer_id = s.customer_id AND p.status = s.status)
+                AND (s.status <> :archived OR NOT EXISTS (SELECT 1 FROM `payment_history` h
+                                                          WHERE h.customer_id = s.customer_id))""", params);
+    }
+}
@@ -0,0 +1,26 @@
+package com.microservice.payment.repository;
+
+import com.microservice.payment.entity.PaymentDeadLetter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * payment dead letter related query resides here
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Repository
+public interface PaymentDeadLetterRepository extends JpaRepository<PaymentDeadLetter, Long> {
+
+    /**
+     * oldest dead letters first so that bulk replay follows failure order
+     *
+     * @param pageable {@link Pageable} page size properties
+     * @return {@link List<PaymentDeadLetter>} dead letters without counting total
+     */
+    List<PaymentDeadLetter> findAllByOrderByIdAsc(final Pageable pageable);
+}
@@ -0,0 +1,233 @@
+package com.microservice.payment.repository;
+
+import com.microservice.payment.dto.payment.PaymentView;
+import com.microservice.payment.entity.Payment;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * payment history related query resides here, settled payments are
+ * moved from payment table into history table that is range
+ * partitioned by month of creation. Times are stored in UTC same as
+ * hibernate jdbc time zone
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentHistoryRepository {
+
+    private static final DateTimeFormatter PARTITION_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    // keyset of the first page starts after every payment
+    private static final Instant LAST_TIME = Instant.parse("9999-12-31T23:59:59.999Z");
+    private static final UUID LAST_ID = new UUID(-1L, -1L);
+
+    private static final RowMapper<PaymentView> PAYMENT_VIEW = (rs, rowNum) -> new PaymentView(
+            toUUID(rs.getBytes("id")),
+            rs.getString("customer_id"),
+            rs.getDouble("amount"),
+            rs.getString("payment_method_id"),
+            rs.getString("status"),
+            toInstant(rs, "processing_time"),
+            toInstant(rs, "date_created"));
+
+    private static final RowMapper<Payment> PAYMENT = (rs, rowNum) -> {
+        final Payment payment = Payment.builder()
+                .id(toUUID(rs.getBytes("id")))
+                .customerId(rs.getString("customer_id"))
+                .paymentMethodId(rs.getString("payment_method_id"))
+                .amount(rs.getDouble("amount"))
+                .status(rs.getString("status"))
+                .processingTime(toInstant(rs, "processing_time"))
+                .attemptCount(rs.getInt("attempt_count"))
+                .lastError(rs.getString("last_error"))
+                .version(rs.getInt("version"))
+                .build();
+        payment.setDateCreated(toInstant(rs, "date_created"));
+        payment.setDateUpdated(toInstant(rs, "date_updated"));
+        return payment;
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * lock the oldest payments in provided status processed before
+     * provided time, served from (status, processing_time) index.
+     * Rows locked by other transactions are skipped
+     *
+     * @param status {@link String} terminal status
+     * @param before {@link Instant} payments processed before are returned
+     * @param limit  maximum payments to return
+     * @return {@link List<Payment>} payments with id, customer and status
+     */
+    public List<Payment> findArchivable(final String status, final Instant before, final int limit) {
+        return jdbcTemplate.query("""
+                        SELECT id, customer_id, status FROM `payment`
+                        WHERE status = :status AND processing_time < :before
+                        ORDER BY processing_time LIMIT :limit FOR UPDATE SKIP LOCKED""",
+                new MapSqlParameterSource()
+                        .addValue("status", status)
+                        .addValue("before", toDateTime(before))
+                        .addValue("limit", limit),
+                (rs, rowNum) -> Payment.builder()
+                        .id(toUUID(rs.getBytes("id")))
+                        .customerId(rs.getString("customer_id"))
+                        .status(rs.getString("status"))
+                        .build());
+    }
+
+    /**
+     * copy payments into history and remove them from payment
+     * table in caller transaction
+     *
+     * @param ids {@link Collection<UUID>} locked payment ids
+     * @return total archived payments
+     */
+    public int archive(final Collection<UUID> ids) {
+        final MapSqlParameterSource params = new MapSqlParameterSource("ids",
+                ids.stream().map(PaymentHistoryRepository::toBytes).toList());
+        jdbcTemplate.update("""
+                INSERT INTO `payment_history` (id, customer_id, payment_method_id, amount, status, processing_time,
+                version, attempt_count, last_error, date_created, date_updated)
+                SELECT id, customer_id, payment_method_id, amount, status, processing_time,
+                version, attempt_count, last_error, date_created, date_updated
+                FROM `payment` WHERE id IN (:ids)""", params);
+        return jdbcTemplate.update("DELETE FROM `payment` WHERE id IN (:ids)", params);
+    }
+
+    /**
+     * archived payment by id, primary key of history table starts with
+     * the id so each monthly partition serves it from its own index
+     *
+     * @param id {@link UUID} payment id
+     * @return {@link Optional<Payment>} archived payment
+     */
+    public Optional<Payment> findById(final UUID id) {
+        return findAllById(List.of(id)).stream().findFirst();
+    }
+
+    /**
+     * archived payments of provided ids
+     *
+     * @param ids {@link Collection<UUID>} payment ids
+     * @return {@link List<Payment>} archived payments, unknown ids are left out
+     */
+    public List<Payment> findAllById(final Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query("""
+                        SELECT id, customer_id, payment_method_id, amount, status, processing_time,
+                        version, attempt_count, last_error, date_created, date_updated
+                        FROM `payment_history` WHERE id IN (:ids)""",
+                new MapSqlParameterSource("ids", ids.stream().map(PaymentHistoryRepository::toBytes).toList()),
+                PAYMENT);
+    }
+
+    /**
+     * cursor page of customer payments from payment and history tables
+     * newest first, each table serves its part from its (customer_id,
+     * date_created, id) index and only the requested page is merged
+     *
+     * @param customerId {@link String} customer id
+     * @param beforeTime {@link Instant} creation time of the last row of previous page, null for first page
+     * @param beforeId   {@link UUID} id of the last row of previous page, null for first page
+     * @param limit      maximum payments to return
+     * @return {@link List<PaymentView>} customer payments of both tables
+     */
+    public List<PaymentView> findCustomerPayments(final String customerId, final Instant beforeTime,
+                                                  final UUID beforeId, final int limit) {
+        return jdbcTemplate.query("""
+                        (SELECT id, customer_id, amount, payment_method_id, status, processing_time, date_created
+                         FROM `payment`
+                         WHERE customer_id = :customerId
+                         AND (date_created < :beforeTime OR (date_created = :beforeTime AND id < :beforeId))
+                         ORDER BY date_created DESC, id DESC LIMIT :limit)
+                        UNION ALL
+                        (SELECT id, customer_id, amount, payment_method_id, status, processing_time, date_created
+                         FROM `payment_history`
+                         WHERE customer_id = :customerId
+                         AND (date_created < :beforeTime OR (date_created = :beforeTime AND id < :beforeId))
+                         ORDER BY date_created DESC, id DESC LIMIT :limit)
+                        ORDER BY date_created DESC, id DESC LIMIT :limit""",
+                new MapSqlParameterSource()
+                        .addValue("customerId", customerId)
+                        .addValue("beforeTime", toDateTime(beforeTime == null ? LAST_TIME : beforeTime))
+                        .addValue("beforeId", toBytes(beforeId == null ? LAST_ID : beforeId))
+                        .addValue("limit", limit),
+                PAYMENT_VIEW);
+    }
+
+    /**
+     * latest monthly partition of history table
+     *
+     * @return {@link Optional<YearMonth>} month of latest partition, empty when only initial partitions exist
+     */
+    public Optional<YearMonth> findLastPartition() {
+        return jdbcTemplate.queryForList("""
+                        SELECT PARTITION_NAME FROM information_schema.PARTITIONS
+                        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'payment_history'
+                        AND PARTITION_NAME REGEXP '^p[0-9]{6}$'""",
+                new MapSqlParameterSource(), String.class)
+                .stream()
+                .map(name -> YearMonth.parse(name, PARTITION_NAME))
+                .max(YearMonth::compareTo);
+    }
+
+    /**
+     * split future partition into monthly partitions for provided
+     * months, future partition is kept empty so the split is cheap
+     *
+     * @param months {@link List<YearMonth>} months in ascending order
+     */
+    public void addPartitions(final List<YearMonth> months) {
+        if (months.isEmpty()) {
+            return;
+        }
+        final String partitions = months.stream()
+                .map(month -> String.format("PARTITION `%s` VALUES LESS THAN ('%s')",
+                        PARTITION_NAME.format(month), month.plusMonths(1).atDay(1)))
+                .collect(Collectors.joining(", "));
+        jdbcTemplate.getJdbcTemplate().execute("ALTER TABLE `payment_history` REORGANIZE PARTITION `p_future` INTO ("
+                + partitions + ", PARTITION `p_future` VALUES LESS THAN (MAXVALUE))");
+    }
+
+    private static LocalDateTime toDateTime(final Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneOffset.UTC);
+    }
+
+    private static Instant toInstant(final ResultSet rs, final String column) throws SQLException {
+        final LocalDateTime dateTime = rs.getObject(column, LocalDateTime.class);
+        return dateTime == null ? null : dateTime.toInstant(ZoneOffset.UTC);
+    }
+
+    private static byte[] toBytes(final UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    private static UUID toUUID(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
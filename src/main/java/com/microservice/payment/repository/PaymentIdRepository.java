@@ -0,0 +1,92 @@
+package com.microservice.payment.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * payment id related query resides here, ids are read in chunks
+ * straight from primary key so that every id can be loaded without
+ * materializing payment entities. Ids of payment and payment history
+ * tables are read separately
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentIdRepository {
+
+    // keyset of the first chunk starts before every payment
+    private static final UUID FIRST_ID = new UUID(0L, 0L);
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * estimated payments of payment and history tables from table
+     * statistics, cheap to read but not exact so it is only meant for sizing
+     *
+     * @return estimated total payments
+     */
+    public long estimateCount() {
+        final Long total = jdbcTemplate.queryForObject("""
+                        SELECT COALESCE(SUM(table_rows), 0) FROM information_schema.tables
+                        WHERE table_schema = DATABASE() AND table_name IN ('payment', 'payment_history')""",
+                new MapSqlParameterSource(), Long.class);
+        return total == null ? 0 : total;
+    }
+
+    /**
+     * next payment ids after provided id, served from primary key
+     *
+     * @param after {@link UUID} last id of previous chunk, null for first chunk
+     * @param limit maximum ids to return
+     * @return {@link List<UUID>} payment ids in ascending order
+     */
+    public List<UUID> findIds(final UUID after, final int limit) {
+        return findIds("""
+                SELECT id FROM `payment`
+                WHERE id > :after
+                ORDER BY id LIMIT :limit""", after, limit);
+    }
+
+    /**
+     * next archived payment ids after provided id, served from primary
+     * key of history table that starts with the id
+     *
+     * @param after {@link UUID} last id of previous chunk, null for first chunk
+     * @param limit maximum ids to return
+     * @return {@link List<UUID>} archived payment ids in ascending order
+     */
+    public List<UUID> findArchivedIds(final UUID after, final int limit) {
+        return findIds("""
+                SELECT id FROM `payment_history`
+                WHERE id > :after
+                ORDER BY id LIMIT :limit""", after, limit);
+    }
+
+    private List<UUID> findIds(final String sql, final UUID after, final int limit) {
+        return jdbcTemplate.query(sql,
+                new MapSqlParameterSource()
+                        .addValue("after", toBytes(after == null ? FIRST_ID : after))
+                        .addValue("limit", limit),
+                (rs, rowNum) -> toUUID(rs.getBytes("id")));
+    }
+
+    private static byte[] toBytes(final UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+
+    private static UUID toUUID(final byte[] bytes) {
+        final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
+}
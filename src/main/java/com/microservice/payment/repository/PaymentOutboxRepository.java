@@ -0,0 +1,75 @@
+package com.microservice.payment.repository;
+
+import com.microservice.payment.event.PaymentEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * payment outbox related query resides here, rows are written through
+ * jdbc batch update so that outbox inserts are sent in batches. Times
+ * are stored in UTC same as hibernate jdbc time zone
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Repository
+@RequiredArgsConstructor
+public class PaymentOutboxRepository {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * store events in caller transaction
+     *
+     * @param events {@link List<PaymentEvent>} events to store
+     */
+    public void saveAll(final List<PaymentEvent> events) {
+        final SqlParameterSource[] rows = events.stream()
+                .map(event -> new MapSqlParameterSource()
+                        .addValue("paymentId", event.paymentId())
+                        .addValue("status", event.status())
+                        .addValue("payload", event.payload())
+                        .addValue("dateCreated", LocalDateTime.ofInstant(event.occurredAt(), ZoneOffset.UTC)))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO `payment_outbox` (payment_id, status, payload, date_created)
+                VALUES (:paymentId, :status, :payload, :dateCreated)""", rows);
+    }
+
+    /**
+     * oldest events first, in the order they were stored
+     *
+     * @param limit maximum events to return
+     * @return {@link List<PaymentEvent>} oldest events
+     */
+    public List<PaymentEvent> findOldest(final int limit) {
+        return jdbcTemplate.query("""
+                        SELECT id, payment_id, status, payload, date_created FROM `payment_outbox`
+                        ORDER BY id LIMIT :limit""",
+                new MapSqlParameterSource("limit", limit),
+                (rs, rowNum) -> new PaymentEvent(rs.getLong("id"),
+                        rs.getString("payment_id"),
+                        rs.getString("status"),
+                        rs.getString("payload"),
+                        rs.getObject("date_created", LocalDateTime.class).toInstant(ZoneOffset.UTC)));
+    }
+
+    /**
+     * remove published events
+     *
+     * @param ids {@link Collection<Long>} event ids
+     * @return total removed events
+     */
+    public int deleteAllById(final Collection<Long> ids) {
+        return jdbcTemplate.update("DELETE FROM `payment_outbox` WHERE id IN (:ids)",
+                new MapSqlParameterSource("ids", ids));
+    }
+}
@@ -1,17 +1,19 @@
 package com.microservice.payment.repository;
 
+import com.microservice.payment.dto.payment.PaymentView;
 import com.microservice.payment.entity.Payment;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
 /**
  * payment related query resides here
@@ -20,7 +22,7 @@ import java.util.Optional;
  * @since 2024
  */
 @Repository
-public interface PaymentRepository extends JpaRepository<Payment, String> {
+public interface PaymentRepository extends JpaRepository<Payment, UUID> {
 
     @Query(value = "SELECT * FROM `payment` p WHERE p.customer_id = :customerId", nativeQuery = true)
     List<Payment> findAllByCustomerId(@Param("customerId") final String customerId);
@@ -34,13 +36,282 @@ public interface PaymentRepository extends JpaRepository<Payment, String> {
     Optional<Payment> findByCustomerIdAndAccountNumber(@Param("customerId") final String customerId,
                                                        @Param("accountNumber") final String accountNumber);
 
+    /**
+     * fetch and lock the next chunk of due payments after the provided keyset
+     * position, ordered by (processing_time, id) so that consecutive chunks
+     * never revisit rows. Rows locked by other instances are skipped so every
+     * instance claims its own disjoint chunk
+     *
+     * @param status      {@link String} status of payments to claim
+     * @param currentTime {@link Instant} payments due up to this time are returned
+     * @param afterTime   {@link Instant} processing time of the last row of previous chunk
+     * @param afterId     {@link UUID} id of the last row of previous chunk
+     * @param limit       chunk size
+     * @return {@link List<Payment>} locked chunk of due payments
+     */
+    @Query(value = """
+            SELECT * FROM `payment` p
+            WHERE p.status = :status AND p.processing_time <= :currentTime
+            AND (p.processing_time > :afterTime OR (p.processing_time = :afterTime AND p.id > :afterId))
+            ORDER BY p.processing_time, p.id
+            LIMIT :limit FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    List<Payment> findDuePaymentChunk(@Param("status") final String status,
+                                      @Param("currentTime") final Instant currentTime,
+                                      @Param("afterTime") final Instant afterTime,
+                                      @Param("afterId") final UUID afterId,
+                                      @Param("limit") final int limit);
+
+    /**
+     * fetch and lock the next chunk of failed payments whose retry is due,
+     * ordered by (next_attempt_time, id). Only failed payments scheduled for
+     * retry have next attempt time so final failures are never scanned
+     *
+     * @param status      {@link String} status of payments scheduled for retry
+     * @param currentTime {@link Instant} retries due up to this time are returned
+     * @param afterTime   {@link Instant} next attempt time of the last row of previous chunk
+     * @param afterId     {@link UUID} id of the last row of previous chunk
+     * @param limit       chunk size
+     * @return {@link List<Payment>} locked chunk of due retries
+     */
+    @Query(value = """
+            SELECT * FROM `payment` p
+            WHERE p.status = :status AND p.next_attempt_time <= :currentTime
+            AND (p.next_attempt_time > :afterTime OR (p.next_attempt_time = :afterTime AND p.id > :afterId))
+            ORDER BY p.next_attempt_time, p.id
+            LIMIT :limit FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    List<Payment> findRetryPaymentChunk(@Param("status") final String status,
+                                        @Param("currentTime") final Instant currentTime,
+                                        @Param("afterTime") final Instant afterTime,
+                                        @Param("afterId") final UUID afterId,
+                                        @Param("limit") final int limit);
+
+    /**
+     * lease payments to the provided owner until lease expires, database
+     * time is used so that lease expiry does not depend on instance clocks
+     *
+     * @param ids           {@link Collection<UUID>} payment ids
+     * @param status        {@link String} claimed status
+     * @param currentStatus {@link String} status payments are claimed from
+     * @param owner         {@link String} instance that owns the lease
+     * @param leaseSeconds  lease duration in seconds
+     * @return total claimed payments
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE `payment` p SET p.status = :status, p.lease_owner = :owner,
+            p.lease_until = NOW(3) + INTERVAL :leaseSeconds SECOND
+            WHERE p.id IN (:ids) AND p.status = :currentStatus""", nativeQuery = true)
+    int claimPayments(@Param("ids") final Collection<UUID> ids,
+                      @Param("status") final String status,
+                      @Param("currentStatus") final String currentStatus,
+                      @Param("owner") final String owner,
+                      @Param("leaseSeconds") final long leaseSeconds);
+
+    /**
+     * move leased payments to their final status and clear any scheduled
+     * retry, payments whose lease was reclaimed from the owner are left untouched
+     *
+     * @param ids           {@link Collection<UUID>} payment ids
+     * @param status        {@link String} final status
+     * @param currentStatus {@link String} claimed status
+     * @param owner         {@link String} instance that owns the lease
+     * @return total released payments
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE `payment` p SET p.status = :status, p.next_attempt_time = NULL,
+            p.lease_owner = NULL, p.lease_until = NULL
+            WHERE p.id IN (:ids) AND p.status = :currentStatus AND p.lease_owner = :owner""", nativeQuery = true)
+    int releasePayments(@Param("ids") final Collection<UUID> ids,
+                        @Param("status") final String status,
+                        @Param("currentStatus") final String currentStatus,
+                        @Param("owner") final String owner);
+
+    /**
+     * record a failed settlement attempt of a leased payment, the payment
+     * is retried at next attempt time or never again when it is null
+     *
+     * @param id              {@link UUID} payment id
+     * @param status          {@link String} failed status
+     * @param currentStatus   {@link String} claimed status
+     * @param owner           {@link String} instance that owns the lease
+     * @param nextAttemptTime {@link Instant} time of next attempt, null when attempts are exhausted
+     * @param lastError       {@link String} error of the failed attempt
+     * @return total updated payments
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE `payment` p SET p.status = :status, p.attempt_count = p.attempt_count + 1,
+            p.next_attempt_time = :nextAttemptTime, p.last_error = :lastError,
+            p.lease_owner = NULL, p.lease_until = NULL
+            WHERE p.id = :id AND p.status = :currentStatus AND p.lease_owner = :owner""", nativeQuery = true)
+    int recordFailedAttempt(@Param("id") final UUID id,
+                            @Param("status") final String status,
+                            @Param("currentStatus") final String currentStatus,
+                            @Param("owner") final String owner,
+                            @Param("nextAttemptTime") final Instant nextAttemptTime,
+                            @Param("lastError") final String lastError);
+
+    /**
+     * schedule dead lettered payments for a fresh set of attempts
+     *
+     * @param ids             {@link Collection<UUID>} payment ids
+     * @param status          {@link String} failed status
+     * @param nextAttemptTime {@link Instant} time of first replayed attempt
+     * @return total replayed payments
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE `payment` p SET p.attempt_count = 0, p.next_attempt_time = :nextAttemptTime, p.last_error = NULL
+            WHERE p.id IN (:ids) AND p.status = :status AND p.next_attempt_time IS NULL""", nativeQuery = true)
+    int replayPayments(@Param("ids") final Collection<UUID> ids,
+                       @Param("status") final String status,
+                       @Param("nextAttemptTime") final Instant nextAttemptTime);
+
+    /**
+     * change payment method and amount of a pending payment in a single
+     * statement, status and remaining modifications are checked by the
+     * statement itself so concurrent changes cannot interleave
+     *
+     * @param id              {@link UUID} payment id
+     * @param paymentMethodId {@link String} new payment method id
+     * @param amount          {@link Double} new amount
+     * @param status          {@link String} status payment must be in
+     * @param maxVersion      modifications allowed, payment must have less
+     * @return total updated payments, 0 when payment is missing or cannot be updated
+     */
     @Modifying
-    @Transactional
-    @Query(value = "UPDATE `payment` p SET p.status = :status where p.status = :currentStatus and p.processing_time < :currentTime", nativeQuery = true)
-    void processPendingPayment(@Param("status") final String status,
-                               @Param("currentStatus") final String currentStatus,
-                               @Param("currentTime") final String currentTime);
+    @Query(value = """
+            UPDATE `payment` p SET p.payment_method_id = :paymentMethodId, p.amount = :amount,
+            p.version = p.version + 1
+            WHERE p.id = :id AND p.status = :status AND p.version < :maxVersion""", nativeQuery = true)
+    int updatePayment(@Param("id") final UUID id,
+                      @Param("paymentMethodId") final String paymentMethodId,
+                      @Param("amount") final Double amount,
+                      @Param("status") final String status,
+                      @Param("maxVersion") final int maxVersion);
+
+    /**
+     * move payment to provided status in a single statement when it
+     * is still in current status
+     *
+     * @param id            {@link UUID} payment id
+     * @param status        {@link String} new status
+     * @param currentStatus {@link String} status payment must be in
+     * @return total updated payments, 0 when payment is missing or in another status
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE `payment` p SET p.status = :status, p.version = p.version + 1
+            WHERE p.id = :id AND p.status = :currentStatus""", nativeQuery = true)
+    int updateStatus(@Param("id") final UUID id,
+                     @Param("status") final String status,
+                     @Param("currentStatus") final String currentStatus);
+
+    /**
+     * earliest scheduled retry, served from (status, next_attempt_time) index
+     *
+     * @param status {@link String} status of payments scheduled for retry
+     * @return {@link Optional<Instant>} earliest next attempt time
+     */
+    @Query("SELECT MIN(p.nextAttemptTime) FROM Payment p WHERE p.status = :status")
+    Optional<Instant> findNextAttemptTime(@Param("status") final String status);
+
+    /**
+     * fetch and lock payments whose lease expired, e.g. owner crashed,
+     * rows locked by another reclaim are skipped
+     *
+     * @param status {@link String} claimed status
+     * @param limit  maximum payments to return
+     * @return {@link List<Payment>} locked payments with expired lease
+     */
+    @Query(value = """
+            SELECT * FROM `payment` p
+            WHERE p.status = :status AND p.lease_until < NOW(3)
+            LIMIT :limit FOR UPDATE SKIP LOCKED""", nativeQuery = true)
+    List<Payment> findExpiredLeaseChunk(@Param("status") final String status,
+                                        @Param("limit") final int limit);
+
+    /**
+     * return payments whose lease expired to provided status so that
+     * any instance can claim them again
+     *
+     * @param ids           {@link Collection<UUID>} payment ids
+     * @param status        {@link String} status to return payments to
+     * @param currentStatus {@link String} claimed status
+     * @return total reclaimed payments
+     */
+    @Modifying
+    @Query(value = """
+            UPDATE `payment` p SET p.status = :status, p.lease_owner = NULL, p.lease_until = NULL
+            WHERE p.id IN (:ids) AND p.status = :currentStatus AND p.lease_until < NOW(3)""", nativeQuery = true)
+    int reclaimPayments(@Param("ids") final Collection<UUID> ids,
+                        @Param("status") final String status,
+                        @Param("currentStatus") final String currentStatus);
+
+    /**
+     * distinct processing times of payments in provided status that are
+     * due up to provided time, served from (status, processing_time) index
+     *
+     * @param status {@link String} payment status
+     * @param until  {@link Instant} upper bound of processing time
+     * @return {@link List<Instant>} distinct processing times
+     */
+    @Query("SELECT DISTINCT p.processingTime FROM Payment p WHERE p.status = :status AND p.processingTime <= :until")
+    List<Instant> findProcessingTimes(@Param("status") final String status,
+                                      @Param("until") final Instant until);
+
+    /**
+     * page of customer payments selected straight into read only
+     * views, neither count query nor entity hydration is involved
+     *
+     * @param customerId {@link String} customer id
+     * @param pageable   {@link Pageable} page and sort properties
+     * @return {@link List<PaymentView>} customer payments of the page
+     */
+    @Query("""
+            SELECT new com.microservice.payment.dto.payment.PaymentView(p.id, p.customerId, p.amount,
+            p.paymentMethodId, p.status, p.processingTime, p.dateCreated)
+            FROM Payment p WHERE p.customerId = :customerId""")
+    List<PaymentView> findViewsByCustomerId(@Param("customerId") final String customerId,
+                                            final Pageable pageable);
+
+    /**
+     * first cursor page of customer payments, newest first, served
+     * from (customer_id, date_created, id) index without sorting
+     *
+     * @param customerId {@link String} customer id
+     * @param limit      maximum payments to return
+     * @return {@link List<Payment>} newest customer payments
+     */
+    @Query(value = """
+            SELECT * FROM `payment` p
+            WHERE p.customer_id = :customerId
+            ORDER BY p.date_created DESC, p.id DESC
+            LIMIT :limit""", nativeQuery = true)
+    List<Payment> findCustomerPayments(@Param("customerId") final String customerId,
+                                       @Param("limit") final int limit);
 
-    Page<Payment> findAllByCustomerId(final String customerId, final Pageable pageable);
+    /**
+     * next cursor page of customer payments created before the provided
+     * keyset position, the index range starts right at the position so
+     * the cost does not grow with the number of pages already read
+     *
+     * @param customerId {@link String} customer id
+     * @param beforeTime {@link Instant} creation time of the last row of previous page
+     * @param beforeId   {@link UUID} id of the last row of previous page
+     * @param limit      maximum payments to return
+     * @return {@link List<Payment>} next customer payments
+     */
+    @Query(value = """
+            SELECT * FROM `payment` p
+            WHERE p.customer_id = :customerId
+            AND (p.date_created < :beforeTime OR (p.date_created = :beforeTime AND p.id < :beforeId))
+            ORDER BY p.date_created DESC, p.id DESC
+            LIMIT :limit""", nativeQuery = true)
+    List<Payment> findCustomerPaymentsBefore(@Param("customerId") final String customerId,
+                                             @Param("beforeTime") final Instant beforeTime,
+                                             @Param("beforeId") final UUID beforeId,
+                                             @Param("limit") final int limit);
 
 }
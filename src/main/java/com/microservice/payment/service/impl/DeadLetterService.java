@@ -0,0 +1,19 @@
+package com.microservice.payment.service.impl;
+
+import com.microservice.payment.dto.payment.DeadLetterDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * dead lettered payment related business logic resides here
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+
+public interface DeadLetterService {
+
+    Page<DeadLetterDTO> getDeadLetters(final Pageable pageable);
+
+    int replay(final int limit);
+}
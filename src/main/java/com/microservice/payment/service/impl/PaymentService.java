@@ -1,9 +1,13 @@
 package com.microservice.payment.service.impl;
 
+import com.microservice.payment.dto.ResponsePager;
+import com.microservice.payment.dto.payment.PaymentBatchItemDTO;
 import com.microservice.payment.dto.payment.PaymentDTO;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 /**
  * payment related business logic resides here
  *
@@ -15,11 +19,18 @@ public interface PaymentService {
 
     PaymentDTO pay(final PaymentDTO paymentDTO);
 
+    List<PaymentBatchItemDTO> payAll(final List<PaymentDTO> paymentDTOs);
+
     PaymentDTO cancel(final String id);
 
     PaymentDTO get(final String id);
 
+    List<PaymentBatchItemDTO> lookup(final List<String> ids);
+
     PaymentDTO update(final String id, final PaymentDTO paymentDTO);
 
     Page<PaymentDTO> getAllPayments(final Pageable pageable, final String customerId);
+
+    ResponsePager<PaymentDTO> getPayments(final String customerId, final String cursor, final int size,
+                                          final boolean includeTotal, final boolean includeHistory);
 }
@@ -0,0 +1,84 @@
+package com.microservice.payment.service.impl.impl;
+
+import com.microservice.payment.dto.payment.DeadLetterDTO;
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.PaymentDeadLetter;
+import com.microservice.payment.mapper.PaymentMapper;
+import com.microservice.payment.processor.DuePaymentDispatcher;
+import com.microservice.payment.repository.PaymentDeadLetterRepository;
+import com.microservice.payment.repository.PaymentRepository;
+import com.microservice.payment.service.impl.DeadLetterService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * dead lettered payment operations, payments that exhausted their
+ * settlement attempts are listed and replayed from here
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Service
+@RequiredArgsConstructor
+public class DeadLetterServiceImpl implements DeadLetterService {
+
+    @Value("${payment.retry.replay-limit:1000}")
+    private int replayLimit;
+
+    private final PaymentDeadLetterRepository paymentDeadLetterRepository;
+    private final PaymentRepository paymentRepository;
+    private final PaymentMapper mapper;
+    private final DuePaymentDispatcher duePaymentDispatcher;
+    private final Clock clock;
+
+    /**
+     * retrieve dead lettered payments with pagination
+     *
+     * @param pageable {@link Pageable} page size properties
+     * @return {@link Page<DeadLetterDTO>} page of dead letters
+     */
+    @Override
+    public Page<DeadLetterDTO> getDeadLetters(final Pageable pageable) {
+        return paymentDeadLetterRepository.findAll(pageable).map(mapper::toDTO);
+    }
+
+    /**
+     * replay oldest dead letters in bulk, their payments get a fresh set of
+     * attempts starting now and the dead letters are removed
+     *
+     * @param limit maximum dead letters to replay
+     * @return total replayed payments
+     */
+    @Override
+    @Transactional
+    public int replay(final int limit) {
+        if (limit <= 0 || limit > replayLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and %d".formatted(replayLimit));
+        }
+        log.info("Dead letter replay initiated, limit: {}", limit);
+        final List<PaymentDeadLetter> deadLetters = paymentDeadLetterRepository
+                .findAllByOrderByIdAsc(PageRequest.of(0, limit));
+        if (deadLetters.isEmpty()) {
+            return 0;
+        }
+        final Instant nextAttemptTime = clock.instant();
+        final int replayed = paymentRepository.replayPayments(
+                deadLetters.stream().map(PaymentDeadLetter::getPaymentId).toList(),
+                PaymentStatus.FAILED.name(), nextAttemptTime);
+        paymentDeadLetterRepository.deleteAllInBatch(deadLetters);
+        duePaymentDispatcher.scheduleAfterCommit(nextAttemptTime);
+        log.info("Dead letter replay completed, replayed: {}", replayed);
+        return replayed;
+    }
+}
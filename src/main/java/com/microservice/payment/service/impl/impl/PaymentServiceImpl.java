@@ -1,26 +1,69 @@
 package com.microservice.payment.service.impl.impl;
 
+import com.microservice.payment.cache.BatchCache;
+import com.microservice.payment.cache.PaymentIdFilter;
+import com.microservice.payment.datasource.ReadYourWritesGuard;
+import com.microservice.payment.dto.ResponsePager;
+import com.microservice.payment.dto.payment.PaymentBatchItemDTO;
+import com.microservice.payment.dto.payment.PaymentCursor;
 import com.microservice.payment.dto.payment.PaymentDTO;
 import com.microservice.payment.dto.payment.PaymentStatus;
 import com.microservice.payment.entity.Payment;
+import com.microservice.payment.event.PaymentOutbox;
 import com.microservice.payment.exception.NotFoundException;
 import com.microservice.payment.helper.paymentvalidator.MinimumAmountValidation;
 import com.microservice.payment.helper.paymentvalidator.MinimumModificationValidation;
 import com.microservice.payment.helper.paymentvalidator.PaymentCommand;
 import com.microservice.payment.helper.paymentvalidator.PendingStatusValidation;
 import com.microservice.payment.mapper.PaymentMapper;
+import com.microservice.payment.processor.DuePaymentDispatcher;
+import com.microservice.payment.ratelimit.CustomerRateLimiter;
+import com.microservice.payment.repository.PaymentHistoryRepository;
 import com.microservice.payment.repository.PaymentRepository;
 import com.microservice.payment.service.impl.PaymentService;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.microservice.payment.ratelimit.CustomerRateLimiter.Endpoint.ADD_PAYMENT;
+import static com.microservice.payment.utils.Constants.CACHE_PAYMENT;
+import static com.microservice.payment.utils.Constants.CACHE_PAYMENT_KEY;
 import static com.microservice.payment.utils.Constants.MINIMUM_PAYMENT_AMOUNT;
 import static com.microservice.payment.utils.Constants.PAYMENT_NOT_FOUND;
 import static com.microservice.payment.utils.Helper.getProcessingDateTime;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CREATED;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
 
 /**
  * Payment crud operation functionality resides here
@@ -37,18 +80,34 @@ public class PaymentServiceImpl implements PaymentService {
     private int processInDays;
     @Value("${payment.modification}")
     private int totalModification;
+    @Value("${payment.batch.max-size:1000}")
+    private int maxBatchSize;
 
     private final PaymentRepository paymentRepository;
+    private final PaymentHistoryRepository paymentHistoryRepository;
     private final PaymentMapper mapper;
+    private final Clock clock;
+    private final DuePaymentDispatcher duePaymentDispatcher;
+    private final PaymentOutbox paymentOutbox;
+    private final Validator validator;
+    private final ReadYourWritesGuard readYourWritesGuard;
+    private final CustomerPaymentStats customerPaymentStats;
+    private final PaymentIdFilter paymentIdFilter;
+    private final CacheManager cacheManager;
+    private final CustomerRateLimiter customerRateLimiter;
 
     /**
      * create payment in database, it will check the minimum amount
-     * if less than minimum amount then throw exception
+     * if less than minimum amount then throw exception. Payment
+     * event is written to outbox within the same transaction and
+     * created payment is cached once committed
      *
      * @param paymentDTO {@link PaymentDTO} payment dto object
      * @return {@link PaymentDTO} payment dto object
      */
     @Override
+    @Transactional
+    @CachePut(value = CACHE_PAYMENT, key = "#result.id")
     public PaymentDTO pay(final PaymentDTO paymentDTO) {
         log.info("Payment adding in process...");
         log.debug("Payment information: {}", paymentDTO);
@@ -60,108 +119,468 @@ public class PaymentServiceImpl implements PaymentService {
                 .build().executeAll();
         Payment payment = mapper.toEntity(paymentDTO);
         payment.setStatus(PaymentStatus.PENDING.name());
-        payment.setProcessingTime(getProcessingDateTime(processInDays));
+        payment.setProcessingTime(getProcessingDateTime(clock, processInDays));
         payment = paymentRepository.save(payment);
+        paymentOutbox.append(payment);
+        customerPaymentStats.created(List.of(payment));
+        paymentIdFilter.add(List.of(payment.getId()));
+        readYourWritesGuard.recordWrite(List.of(payment.getCustomerId(), payment.getId().toString()));
+        duePaymentDispatcher.scheduleAfterCommit(payment.getProcessingTime());
         log.info("Payment add completed: {}", payment.getId());
         return mapper.toDTO(payment);
     }
 
     /**
-     * update payment in database, it will check following:
+     * create payments of a batch in a single transaction, every payment
+     * is validated on its own and only valid ones are stored. Every valid
+     * payment takes a token of its customer's add payment rate limit, so
+     * batches do not bypass it, payments over the limit are rejected.
+     * Same as single payments the limit counts requests, so tokens are
+     * not given back when the batch fails to commit. Ids are generated by
+     * application so inserts are sent in jdbc batches
+     *
+     * @param paymentDTOs {@link List<PaymentDTO>} payment dto objects
+     * @return {@link List<PaymentBatchItemDTO>} result of every payment in request order
+     */
+    @Override
+    @Transactional
+    public List<PaymentBatchItemDTO> payAll(final List<PaymentDTO> paymentDTOs) {
+        log.info("Payment batch adding in process, size: {}", paymentDTOs.size());
+        if (paymentDTOs.isEmpty() || paymentDTOs.size() > maxBatchSize) {
+            throw new IllegalArgumentException(String.format("batch must contain between 1 and %d payments", maxBatchSize));
+        }
+        final Instant processingTime = getProcessingDateTime(clock, processInDays);
+        final PaymentBatchItemDTO[] results = new PaymentBatchItemDTO[paymentDTOs.size()];
+        final List<Integer> indexes = new ArrayList<>();
+        final List<Payment> payments = new ArrayList<>();
+        for (int index = 0; index < paymentDTOs.size(); index++) {
+            final String error = validate(paymentDTOs.get(index));
+            if (error != null) {
+                results[index] = new PaymentBatchItemDTO(index, BAD_REQUEST.value(), null, error);
+                continue;
+            }
+            final Optional<Duration> retryAfter = customerRateLimiter.tryAcquire(ADD_PAYMENT,
+                    paymentDTOs.get(index).getCustomerId());
+            if (retryAfter.isPresent()) {
+                results[index] = new PaymentBatchItemDTO(index, TOO_MANY_REQUESTS.value(), null,
+                        CustomerRateLimiter.throttledMessage(retryAfter.get()));
+                continue;
+            }
+            final Payment payment = mapper.toEntity(paymentDTOs.get(index));
+            payment.setStatus(PaymentStatus.PENDING.name());
+            payment.setProcessingTime(processingTime);
+            indexes.add(index);
+            payments.add(payment);
+        }
+        if (!payments.isEmpty()) {
+            final List<Payment> saved = paymentRepository.saveAll(payments);
+            paymentOutbox.append(saved);
+            customerPaymentStats.created(saved);
+            paymentIdFilter.add(saved.stream().map(Payment::getId).toList());
+            readYourWritesGuard.recordWrite(saved.stream()
+                    .flatMap(payment -> Stream.of(payment.getCustomerId(), payment.getId().toString()))
+                    .collect(Collectors.toSet()));
+            duePaymentDispatcher.scheduleAfterCommit(processingTime);
+            for (int i = 0; i < saved.size(); i++) {
+                results[indexes.get(i)] = new PaymentBatchItemDTO(indexes.get(i), CREATED.value(),
+                        mapper.toDTO(saved.get(i)), null);
+            }
+        }
+        log.info("Payment batch add completed, created: {}, rejected: {}",
+                payments.size(), paymentDTOs.size() - payments.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * update payment in database, minimum amount is checked first and
+     * the rest is checked by a single conditional update:
      * 1. payment exists in database
-     * 2. minimum amount if less than minimum amount
-     * then throw exception
-     * 3. total times modification is allowed after
-     * that throw exception
-     * 4. validate if the payment is in pending state
-     * or else throw exception
+     * 2. total times modification is allowed
+     * 3. payment is in pending state
+     * Payment is looked up only when nothing was updated to report
+     * the precise reason, there is no read-modify-write race. Unknown
+     * payment ids are rejected by payment id filter without querying.
+     * Updated payment replaces cached one once committed
      *
      * @param paymentDTO {@link PaymentDTO} payment dto object
      * @return {@link PaymentDTO} payment dto object
      */
     @Override
+    @Transactional
+    @CachePut(value = CACHE_PAYMENT, key = CACHE_PAYMENT_KEY)
     public PaymentDTO update(final String id, final PaymentDTO paymentDTO) {
         log.info("Processing to update pay: {}", id);
         log.debug("Updated payment: {}", paymentDTO);
-        Payment payment = paymentRepository
-                .findById(id)
-                .orElseThrow(() -> new NotFoundException(PAYMENT_NOT_FOUND));
-        log.debug("Previous payment: {}", payment);
-        new PaymentCommand.CommandBuilder()
-                .addCommand(new MinimumAmountValidation(
-                        paymentDTO.getAmount(),
-                        MINIMUM_PAYMENT_AMOUNT)
-                )
-                .addCommand(new MinimumModificationValidation(
-                        payment.getVersion(),
-                        totalModification
-                ))
-                .addCommand(new PendingStatusValidation(
-                        payment.getStatus())
-                )
-                .build().executeAll();
-        payment.setPaymentMethodId(paymentDTO.getPaymentMethodId());
-        payment.setAmount(paymentDTO.getAmount());
-        payment = paymentRepository.save(payment);
+        final UUID paymentId = UUID.fromString(id);
+        requireKnown(paymentId);
+        try {
+            new PaymentCommand.CommandBuilder()
+                    .addCommand(new MinimumAmountValidation(
+                            paymentDTO.getAmount(),
+                            MINIMUM_PAYMENT_AMOUNT)
+                    )
+                    .build().executeAll();
+        } catch (final IllegalArgumentException e) {
+            // missing payment is reported before invalid amount
+            findPayment(paymentId);
+            throw e;
+        }
+        if (paymentRepository.updatePayment(paymentId, paymentDTO.getPaymentMethodId(), paymentDTO.getAmount(),
+                PaymentStatus.PENDING.name(), totalModification) == 0) {
+            final Payment payment = findPayment(paymentId);
+            new PaymentCommand.CommandBuilder()
+                    .addCommand(new MinimumModificationValidation(
+                            payment.getVersion(),
+                            totalModification
+                    ))
+                    .addCommand(new PendingStatusValidation(
+                            payment.getStatus())
+                    )
+                    .build().executeAll();
+            throw new IllegalArgumentException("Payment cannot be updated");
+        }
+        final Payment payment = findPayment(paymentId);
+        paymentOutbox.append(payment);
+        readYourWritesGuard.recordWrite(List.of(payment.getCustomerId(), payment.getId().toString()));
         log.info("Payment update completed");
         return mapper.toDTO(payment);
     }
 
     /**
-     * update payment in database, it will check following:
+     * cancel payment in database with a single conditional update
+     * that only cancels pending payment, payment is looked up only
+     * when nothing was updated to report the precise reason:
      * 1. payment exists in database
-     * 2. validate if the payment is in pending state
-     * or else throw exception
+     * 2. payment is in pending state
+     * Unknown payment ids are rejected by payment id filter without
+     * querying. Cancelled payment replaces cached one once committed
      *
      * @param id {@link String} payment id
      * @return {@link PaymentDTO} payment dto object
      */
     @Override
+    @Transactional
+    @CachePut(value = CACHE_PAYMENT, key = CACHE_PAYMENT_KEY)
     public PaymentDTO cancel(final String id) {
         log.info("Cancelling payment in process: {}", id);
-        Payment payment = paymentRepository
-                .findById(id)
-                .orElseThrow(() -> new NotFoundException(PAYMENT_NOT_FOUND));
-        new PaymentCommand.CommandBuilder()
-                .addCommand(new PendingStatusValidation(payment.getStatus()))
-                .build().executeAll();
-        payment.setStatus(PaymentStatus.CANCELLED.name());
-        payment = paymentRepository.save(payment);
+        final UUID paymentId = UUID.fromString(id);
+        requireKnown(paymentId);
+        if (paymentRepository.updateStatus(paymentId, PaymentStatus.CANCELLED.name(),
+                PaymentStatus.PENDING.name()) == 0) {
+            new PaymentCommand.CommandBuilder()
+                    .addCommand(new PendingStatusValidation(findPayment(paymentId).getStatus()))
+                    .build().executeAll();
+            throw new IllegalArgumentException("Payment cannot be updated");
+        }
+        final Payment payment = findPayment(paymentId);
+        customerPaymentStats.moved(payment.getCustomerId(), PaymentStatus.PENDING.name(), payment.getStatus());
+        paymentOutbox.append(payment);
+        readYourWritesGuard.recordWrite(List.of(payment.getCustomerId(), payment.getId().toString()));
         log.info("Payment saved with cancel status");
         return mapper.toDTO(payment);
     }
 
     /**
-     * retrieve payment from database by payment id
+     * retrieve payment by payment id, id that is not a valid
+     * UUID is rejected. Payment is read through the cache and
+     * concurrent misses of the same payment share a single load.
+     * Unknown payment ids are rejected by payment id filter, other
+     * cache misses are served by a replica unless payment was
+     * written recently
      *
      * @param id {@link String} payment id
      * @return {@link PaymentDTO} payment dto object
      */
     @Override
+    @Transactional(readOnly = true)
+    @Cacheable(value = CACHE_PAYMENT, key = CACHE_PAYMENT_KEY, sync = true)
     public PaymentDTO get(String id) {
         log.info("Fetching payment in process: {}", id);
-        final Payment payment = paymentRepository
-                .findById(id)
-                .orElseThrow(() -> new NotFoundException(PAYMENT_NOT_FOUND));
+        final UUID paymentId = UUID.fromString(id);
+        requireKnown(paymentId);
+        readYourWritesGuard.beforeRead(id);
+        final Payment payment = findPayment(paymentId);
         log.debug("Payment information: {}", payment);
         log.info("Payment fetched");
         return mapper.toDTO(payment);
     }
 
     /**
-     * get all payment of customer from database
+     * retrieve payments of many ids in request order, ids that are not
+     * a valid UUID are rejected and unknown ids are reported as not found.
+     * Cached payments are read at once, misses are loaded by a single
+     * query and cached afterwards. Misses are served by a replica unless
+     * one of them was written recently
+     *
+     * @param ids {@link List<String>} payment ids
+     * @return {@link List<PaymentBatchItemDTO>} result of every id in request order
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<PaymentBatchItemDTO> lookup(final List<String> ids) {
+        log.info("Payment lookup in process, size: {}", ids.size());
+        if (ids.isEmpty() || ids.size() > maxBatchSize) {
+            throw new IllegalArgumentException(String.format("lookup must contain between 1 and %d ids", maxBatchSize));
+        }
+        final PaymentBatchItemDTO[] results = new PaymentBatchItemDTO[ids.size()];
+        final String[] keys = new String[ids.size()];
+        final Map<String, UUID> paymentIds = new LinkedHashMap<>();
+        for (int index = 0; index < ids.size(); index++) {
+            final UUID paymentId = toPaymentId(ids.get(index));
+            if (paymentId == null) {
+                results[index] = new PaymentBatchItemDTO(index, BAD_REQUEST.value(), null, "invalid payment id");
+            } else if (paymentIdFilter.isAbsent(paymentId)) {
+                results[index] = new PaymentBatchItemDTO(index, NOT_FOUND.value(), null, PAYMENT_NOT_FOUND);
+            } else {
+                keys[index] = paymentId.toString();
+                paymentIds.put(keys[index], paymentId);
+            }
+        }
+        final Map<String, PaymentDTO> payments = findPayments(paymentIds);
+        for (int index = 0; index < ids.size(); index++) {
+            if (keys[index] == null) {
+                continue;
+            }
+            final PaymentDTO payment = payments.get(keys[index]);
+            results[index] = payment == null
+                    ? new PaymentBatchItemDTO(index, NOT_FOUND.value(), null, PAYMENT_NOT_FOUND)
+                    : new PaymentBatchItemDTO(index, OK.value(), payment, null);
+        }
+        log.info("Payment lookup completed, found: {}", payments.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * get all payment of customer from database, read is served
+     * by a replica unless customer wrote recently. Payments are
+     * selected as read only views instead of managed entities and
+     * total is read from customer payment stats instead of counting
      *
      * @param pageable   {@link Pageable} pagination properties
      * @param customerId {@link String} customer id
      * @return {@link Page<PaymentDTO>} customer list with paginated properties
      */
     @Override
+    @Transactional(readOnly = true)
     public Page<PaymentDTO> getAllPayments(final Pageable pageable, final String customerId) {
         log.info("Search payments in process");
-        final Page<PaymentDTO> pagePayments = paymentRepository
-                .findAllByCustomerId(customerId, pageable)
-                .map(mapper::toDTO);
+        readYourWritesGuard.beforeRead(customerId);
+        final List<PaymentDTO> payments = paymentRepository
+                .findViewsByCustomerId(customerId, pageable)
+                .stream()
+                .map(mapper::toDTO)
+                .toList();
+        final Page<PaymentDTO> pagePayments = new PageImpl<>(payments, pageable,
+                customerPaymentStats.total(customerId, false));
         log.info("Search payments completed");
         return pagePayments;
     }
+
+    /**
+     * get a cursor page of customer payments, newest first. One extra
+     * payment is fetched to know whether a next page exists so total
+     * is only read from customer payment stats when requested. Archived
+     * payments are merged in from payment history only when requested
+     *
+     * @param customerId     {@link String} customer id
+     * @param cursor         {@link String} cursor returned by previous page, empty for first page
+     * @param size           page size
+     * @param includeTotal   {@link Boolean} include total customer payments
+     * @param includeHistory {@link Boolean} include archived payments
+     * @return {@link ResponsePager<PaymentDTO>} cursor page of customer payments
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ResponsePager<PaymentDTO> getPayments(final String customerId, final String cursor, final int size,
+                                                 final boolean includeTotal, final boolean includeHistory) {
+        log.info("Search payments by cursor in process");
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be greater than 0");
+        }
+        readYourWritesGuard.beforeRead(customerId);
+        final PaymentCursor position = cursor == null || cursor.isBlank() ? null : PaymentCursor.decode(cursor);
+        final Long totalRecords = includeTotal ? customerPaymentStats.total(customerId, includeHistory) : null;
+        final ResponsePager<PaymentDTO> page;
+        if (includeHistory) {
+            page = toCursorPage(paymentHistoryRepository.findCustomerPayments(customerId,
+                            position == null ? null : position.dateCreated(),
+                            position == null ? null : position.id(), size + 1),
+                    size, mapper::toDTO, view -> new PaymentCursor(view.dateCreated(), view.id()), totalRecords);
+        } else {
+            page = toCursorPage(position == null
+                            ? paymentRepository.findCustomerPayments(customerId, size + 1)
+                            : paymentRepository.findCustomerPaymentsBefore(customerId,
+                            position.dateCreated(), position.id(), size + 1),
+                    size, mapper::toDTO, payment -> new PaymentCursor(payment.getDateCreated(), payment.getId()),
+                    totalRecords);
+        }
+        log.info("Search payments by cursor completed");
+        return page;
+    }
+
+    /**
+     * build cursor page out of page size plus one fetched payments,
+     * the extra payment only signals that a next page exists
+     *
+     * @param payments     {@link List} fetched payments
+     * @param size         page size
+     * @param toDTO        {@link Function} converts payment to dto
+     * @param toCursor     {@link Function} keyset position of payment
+     * @param totalRecords {@link Long} total customer payments or null
+     * @param <T>          fetched payment type
+     * @return {@link ResponsePager<PaymentDTO>} cursor page of customer payments
+     */
+    private static <T> ResponsePager<PaymentDTO> toCursorPage(final List<T> payments, final int size,
+                                                              final Function<T, PaymentDTO> toDTO,
+                                                              final Function<T, PaymentCursor> toCursor,
+                                                              final Long totalRecords) {
+        final boolean hasNext = payments.size() > size;
+        final List<T> page = hasNext ? payments.subList(0, size) : payments;
+        final String nextCursor = hasNext ? toCursor.apply(page.get(size - 1)).encode() : null;
+        return ResponsePager.ofCursor(page.stream().map(toDTO).toList(), totalRecords, nextCursor);
+    }
+
+    /**
+     * retrieve payment from database or throw not found exception,
+     * payment missing in payment table is looked up in history as it
+     * may have been archived. Missing payment is reported to payment
+     * id filter
+     *
+     * @param id {@link UUID} payment id
+     * @return {@link Payment} payment entity
+     */
+    private Payment findPayment(final UUID id) {
+        return paymentRepository
+                .findById(id)
+                .or(() -> paymentHistoryRepository.findById(id))
+                .orElseThrow(() -> {
+                    paymentIdFilter.notFound(id);
+                    return new NotFoundException(PAYMENT_NOT_FOUND);
+                });
+    }
+
+    /**
+     * retrieve payments from cache and load the misses from database
+     * with a single query, misses not found in payment table are looked
+     * up in history. Loaded payments are cached unless a change cached
+     * a newer one meanwhile
+     *
+     * @param paymentIds {@link Map} payment id by cache key
+     * @return {@link Map} found payments by cache key
+     */
+    private Map<String, PaymentDTO> findPayments(final Map<String, UUID> paymentIds) {
+        final Map<String, PaymentDTO> payments = new HashMap<>();
+        if (paymentIds.isEmpty()) {
+            return payments;
+        }
+        final Cache cache = cacheManager.getCache(CACHE_PAYMENT);
+        getCached(cache, paymentIds.keySet()).forEach((key, value) -> payments.put((String) key, (PaymentDTO) value));
+        final List<String> misses = paymentIds.keySet().stream()
+                .filter(key -> !payments.containsKey(key))
+                .toList();
+        if (misses.isEmpty()) {
+            return payments;
+        }
+        readYourWritesGuard.beforeRead(misses);
+        final Map<String, PaymentDTO> loaded = new HashMap<>();
+        paymentRepository.findAllById(misses.stream().map(paymentIds::get).toList())
+                .forEach(payment -> loaded.put(payment.getId().toString(), mapper.toDTO(payment)));
+        final List<UUID> archived = misses.stream()
+                .filter(key -> !loaded.containsKey(key))
+                .map(paymentIds::get)
+                .toList();
+        paymentHistoryRepository.findAllById(archived)
+                .forEach(payment -> loaded.put(payment.getId().toString(), mapper.toDTO(payment)));
+        misses.stream()
+                .filter(key -> !loaded.containsKey(key))
+                .forEach(key -> paymentIdFilter.notFound(paymentIds.get(key)));
+        putCached(cache, loaded);
+        payments.putAll(loaded);
+        return payments;
+    }
+
+    private static Map<Object, Object> getCached(final Cache cache, final Collection<String> keys) {
+        if (cache instanceof BatchCache batchCache) {
+            return batchCache.getAll(keys);
+        }
+        final Map<Object, Object> cached = new HashMap<>();
+        if (cache != null) {
+            keys.forEach(key -> {
+                final Cache.ValueWrapper value = cache.get(key);
+                if (value != null && value.get() != null) {
+                    cached.put(key, value.get());
+                }
+            });
+        }
+        return cached;
+    }
+
+    private static void putCached(final Cache cache, final Map<String, PaymentDTO> payments) {
+        if (cache instanceof BatchCache batchCache) {
+            batchCache.putAllIfAbsent(payments);
+        } else if (cache != null) {
+            payments.forEach(cache::putIfAbsent);
+        }
+    }
+
+    /**
+     * payment id of provided text or null when it is not a valid UUID
+     *
+     * @param id {@link String} payment id
+     * @return {@link UUID} payment id
+     */
+    private static UUID toPaymentId(final String id) {
+        if (id == null) {
+            return null;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * throw not found exception when payment id filter knows
+     * payment does not exist
+     *
+     * @param id {@link UUID} payment id
+     */
+    private void requireKnown(final UUID id) {
+        if (paymentIdFilter.isAbsent(id)) {
+            log.info("Payment rejected by id filter: {}", id);
+            throw new NotFoundException(PAYMENT_NOT_FOUND);
+        }
+    }
+
+    /**
+     * validate payment of a batch against payload constraints and
+     * minimum amount
+     *
+     * @param paymentDTO {@link PaymentDTO} payment dto object
+     * @return {@link String} validation error or null when payment is valid
+     */
+    private String validate(final PaymentDTO paymentDTO) {
+        if (paymentDTO == null) {
+            return "payment is required";
+        }
+        final String violations = validator.validate(paymentDTO).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+        if (!violations.isEmpty()) {
+            return violations;
+        }
+        try {
+            new PaymentCommand.CommandBuilder()
+                    .addCommand(new MinimumAmountValidation(
+                            paymentDTO.getAmount(),
+                            MINIMUM_PAYMENT_AMOUNT)
+                    )
+                    .build().executeAll();
+            return null;
+        } catch (final IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
 }
@@ -0,0 +1,24 @@
+package com.microservice.payment.stats;
+
+import java.util.Comparator;
+
+/**
+ * total payments of a customer in a single status, when written it
+ * holds the change to apply to the stored total
+ *
+ * @param customerId {@link String} customer id
+ * @param status     {@link String} payment status
+ * @param total      total payments or change of total
+ * @author Asif Bakht
+ * @since 2024
+ */
+public record CustomerPaymentStat(String customerId, String status, long total) {
+
+    /**
+     * order stats are written in, rows are always locked in
+     * the same order so concurrent writers do not deadlock
+     */
+    static final Comparator<CustomerPaymentStat> LOCK_ORDER = Comparator
+            .comparing(CustomerPaymentStat::customerId)
+            .thenComparing(CustomerPaymentStat::status);
+}
@@ -0,0 +1,115 @@
+package com.microservice.payment.stats;
+
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.repository.CustomerPaymentStatsRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * per customer payment totals by status, maintained in the same
+ * transaction as the payment changes so search does not have to count
+ * customer payments. Claimed payments are counted as processing, same
+ * as in payment table, and archived payments are counted in
+ * {@link #ARCHIVED} status. Drift left by
+ * anything else is fixed by {@link CustomerPaymentStatsReconciler}
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Component
+@RequiredArgsConstructor
+public class CustomerPaymentStats {
+
+    /**
+     * status payments are counted in once moved to payment history
+     */
+    public static final String ARCHIVED = "ARCHIVED";
+
+    private final CustomerPaymentStatsRepository customerPaymentStatsRepository;
+
+    /**
+     * count created payments in their status
+     *
+     * @param payments {@link List<Payment>} created payments
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void created(final List<Payment> payments) {
+        final Map<CustomerPaymentStat, Long> changes = new HashMap<>();
+        payments.forEach(payment -> add(changes, payment.getCustomerId(), payment.getStatus(), 1));
+        write(changes);
+    }
+
+    /**
+     * move payments from their current status to provided status, must
+     * be called before the status of payments is changed
+     *
+     * @param payments {@link List<Payment>} payments still in their previous status
+     * @param status   {@link String} new status
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void moved(final List<Payment> payments, final String status) {
+        final Map<CustomerPaymentStat, Long> changes = new HashMap<>();
+        payments.stream()
+                .filter(payment -> !Objects.equals(payment.getStatus(), status))
+                .forEach(payment -> {
+                    add(changes, payment.getCustomerId(), payment.getStatus(), -1);
+                    add(changes, payment.getCustomerId(), status, 1);
+                });
+        write(changes);
+    }
+
+    /**
+     * move a payment of customer from previous status to provided
+     * status, used when payment was changed by a conditional update
+     *
+     * @param customerId     {@link String} customer id
+     * @param previousStatus {@link String} status before the change
+     * @param status         {@link String} new status
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void moved(final String customerId, final String previousStatus, final String status) {
+        final Map<CustomerPaymentStat, Long> changes = new HashMap<>();
+        if (!Objects.equals(previousStatus, status)) {
+            add(changes, customerId, previousStatus, -1);
+            add(changes, customerId, status, 1);
+        }
+        write(changes);
+    }
+
+    /**
+     * total payments of a customer in every status
+     *
+     * @param customerId     {@link String} customer id
+     * @param includeHistory {@link Boolean} include archived payments
+     * @return total customer payments
+     */
+    public long total(final String customerId, final boolean includeHistory) {
+        return customerPaymentStatsRepository.findTotal(customerId, includeHistory);
+    }
+
+    private static void add(final Map<CustomerPaymentStat, Long> changes, final String customerId,
+                            final String status, final long change) {
+        if (status != null) {
+            changes.merge(new CustomerPaymentStat(customerId, status, 0), change, Long::sum);
+        }
+    }
+
+    private void write(final Map<CustomerPaymentStat, Long> changes) {
+        final List<CustomerPaymentStat> rows = changes.entrySet().stream()
+                .filter(change -> change.getValue() != 0)
+                .map(change -> new CustomerPaymentStat(change.getKey().customerId(), change.getKey().status(),
+                        change.getValue()))
+                .sorted(CustomerPaymentStat.LOCK_ORDER)
+                .toList();
+        if (!rows.isEmpty()) {
+            customerPaymentStatsRepository.addAll(rows);
+        }
+    }
+}
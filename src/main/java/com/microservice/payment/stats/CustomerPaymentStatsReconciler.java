@@ -0,0 +1,74 @@
+package com.microservice.payment.stats;
+
+import com.microservice.payment.repository.CustomerPaymentStatsRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import net.javacrumbs.shedlock.spring.annotation.SchedulerLock;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * recompute customer payment stats from payment and history tables to
+ * fix drift, e.g. payments changed outside the application. Customers
+ * whose payments were all archived and customers left with stale stats
+ * only are reconciled as well. Customers are reconciled in chunks, every
+ * chunk is committed individually so payment writes wait only for a
+ * short time
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class CustomerPaymentStatsReconciler {
+
+    @Value("${payment.stats.reconcile-chunk-size:500}")
+    private int chunkSize;
+
+    private final CustomerPaymentStatsRepository customerPaymentStatsRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * reconcile stats of every customer, only one instance
+     * performs the reconciliation at a time
+     */
+    @Scheduled(cron = "${spring.cron.payment-stats-reconcile}")
+    @SchedulerLock(name = "paymentStatsReconciler", lockAtMostFor = "PT30M")
+    public void scheduledTask() {
+        try {
+            log.info("Reconciled payment stats of {} customers", reconcile());
+        } catch (final Exception e) {
+            log.error("Error occurred reconciling payment stats, error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * reconcile stats of every customer chunk by chunk using keyset
+     * pagination over customer id
+     *
+     * @return total reconciled customers
+     */
+    int reconcile() {
+        int total = 0;
+        String afterCustomerId = "";
+        List<String> customerIds;
+        do {
+            customerIds = customerPaymentStatsRepository.findCustomerIds(afterCustomerId, chunkSize);
+            if (customerIds.isEmpty()) {
+                break;
+            }
+            final String fromCustomerId = customerIds.get(0);
+            final String toCustomerId = customerIds.get(customerIds.size() - 1);
+            transactionTemplate.executeWithoutResult(status ->
+                    customerPaymentStatsRepository.reconcile(fromCustomerId, toCustomerId));
+            total += customerIds.size();
+            afterCustomerId = toCustomerId;
+        } while (customerIds.size() == chunkSize);
+        return total;
+    }
+}
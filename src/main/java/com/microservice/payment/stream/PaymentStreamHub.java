@@ -0,0 +1,271 @@
+package com.microservice.payment.stream;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservice.payment.dto.payment.PaymentDTO;
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.event.PaymentEvent;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * fan out hub that pushes payment status changes to server sent event
+ * subscribers. Committed changes of any instance are broadcast through
+ * redis pub/sub and every instance pushes them to its own subscribers.
+ * Idle subscribers are plain registry entries, they hold no thread and
+ * no database connection while waiting
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class PaymentStreamHub implements MessageListener {
+
+    private static final String EVENT_NAME = "payment";
+
+    @Value("${payment.stream.channel:payment-status}")
+    private String channel;
+    @Value("${payment.stream.timeout:PT30M}")
+    private Duration timeout;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Set<SseEmitter>> customerSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<SseEmitter>> paymentSubscribers = new ConcurrentHashMap<>();
+    // changes pushed to payment subscribers whose current payment is not sent yet
+    private final Map<SseEmitter, List<String>> heldBack = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void listen() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(channel));
+    }
+
+    /**
+     * subscribe to status changes of all payments of a customer
+     *
+     * @param customerId {@link String} customer id
+     * @return {@link SseEmitter} subscriber emitter
+     */
+    public SseEmitter subscribeCustomer(final String customerId) {
+        final SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        subscribe(customerSubscribers, customerId, emitter);
+        return emitter;
+    }
+
+    /**
+     * subscribe to status changes of a single payment, current payment
+     * is read once subscribed and pushed first so no change is missed
+     * while subscribing. Changes pushed before current payment was sent
+     * are held back and sent right after it, so client never ends on an
+     * older status. Stream completes once payment reached final status.
+     * Subscriber is registered under canonical id same as changes are
+     * pushed, id that is not a valid UUID is rejected
+     *
+     * @param id       {@link String} payment id
+     * @param snapshot {@link Supplier} reads current payment
+     * @return {@link SseEmitter} subscriber emitter
+     */
+    public SseEmitter subscribePayment(final String id, final Supplier<PaymentDTO> snapshot) {
+        final String paymentId = UUID.fromString(id).toString();
+        final SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        heldBack.put(emitter, new ArrayList<>());
+        subscribe(paymentSubscribers, paymentId, emitter);
+        final PaymentDTO payment;
+        try {
+            payment = snapshot.get();
+        } catch (final RuntimeException e) {
+            heldBack.remove(emitter);
+            unsubscribe(paymentSubscribers, paymentId, emitter);
+            throw e;
+        }
+        try {
+            send(emitter, objectMapper.writeValueAsString(payment));
+        } catch (final IOException e) {
+            emitter.completeWithError(e);
+        }
+        // pushes wait on this entry until held back changes are sent, then go straight to emitter
+        heldBack.compute(emitter, (key, payloads) -> {
+            boolean finalStatus = isFinal(payment.getStatus());
+            for (final String payload : payloads) {
+                if (finalStatus) {
+                    break;
+                }
+                send(emitter, payload);
+                finalStatus = isFinal(readStatus(payload));
+            }
+            if (finalStatus) {
+                unsubscribe(paymentSubscribers, paymentId, emitter);
+                emitter.complete();
+            }
+            return null;
+        });
+        return emitter;
+    }
+
+    /**
+     * total subscribers connected to this instance
+     *
+     * @return total subscribers
+     */
+    public int getSubscribers() {
+        return customerSubscribers.values().stream().mapToInt(Set::size).sum()
+                + paymentSubscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    /**
+     * broadcast committed payment change to every instance, when redis is
+     * not reachable the change is pushed to subscribers of this instance only
+     *
+     * @param event {@link PaymentEvent} committed payment event
+     */
+    @TransactionalEventListener
+    public void onPaymentEvent(final PaymentEvent event) {
+        try {
+            redisTemplate.convertAndSend(channel, event.payload());
+        } catch (final Exception e) {
+            log.warn("Payment status could not be broadcast: {}, error: {}", event.paymentId(), e.getMessage());
+            push(event.payload());
+        }
+    }
+
+    /**
+     * payment change broadcast by any instance
+     *
+     * @param message {@link Message} payment json
+     * @param pattern subscribed pattern
+     */
+    @Override
+    public void onMessage(final Message message, final byte[] pattern) {
+        push(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * keep idle connections open through proxies and detect
+     * subscribers that went away
+     */
+    @Scheduled(fixedDelayString = "${payment.stream.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        customerSubscribers.values().forEach(emitters -> emitters.forEach(this::ping));
+        paymentSubscribers.values().forEach(emitters -> emitters.forEach(this::ping));
+    }
+
+    /**
+     * push payment json to subscribers of the payment and its customer,
+     * payment subscribers are completed once payment reached final status
+     *
+     * @param payload {@link String} payment json
+     */
+    void push(final String payload) {
+        if (customerSubscribers.isEmpty() && paymentSubscribers.isEmpty()) {
+            return;
+        }
+        try {
+            final JsonNode payment = objectMapper.readTree(payload);
+            final String paymentId = payment.path("id").asText();
+            final boolean finalStatus = isFinal(payment.path("status").asText());
+            customerSubscribers.getOrDefault(payment.path("customerId").asText(), Set.of())
+                    .forEach(emitter -> send(emitter, payload));
+            final Set<SseEmitter> emitters = finalStatus
+                    ? paymentSubscribers.remove(paymentId)
+                    : paymentSubscribers.get(paymentId);
+            if (emitters == null) {
+                return;
+            }
+            emitters.forEach(emitter -> {
+                if (holdBack(emitter, payload)) {
+                    return;
+                }
+                send(emitter, payload);
+                if (finalStatus) {
+                    emitter.complete();
+                }
+            });
+        } catch (final IOException e) {
+            log.error("Payment status could not be pushed, error: {}", e.getMessage());
+        }
+    }
+
+    private void subscribe(final Map<String, Set<SseEmitter>> subscribers, final String key,
+                           final SseEmitter emitter) {
+        subscribers.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(emitter);
+        emitter.onCompletion(() -> unsubscribe(subscribers, key, emitter));
+        emitter.onTimeout(() -> unsubscribe(subscribers, key, emitter));
+        emitter.onError(e -> unsubscribe(subscribers, key, emitter));
+    }
+
+    private void unsubscribe(final Map<String, Set<SseEmitter>> subscribers, final String key,
+                             final SseEmitter emitter) {
+        subscribers.computeIfPresent(key, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    /**
+     * hold back change of a payment subscriber whose current
+     * payment was not sent yet
+     *
+     * @return true when change was held back
+     */
+    private boolean holdBack(final SseEmitter emitter, final String payload) {
+        return heldBack.computeIfPresent(emitter, (key, payloads) -> {
+            payloads.add(payload);
+            return payloads;
+        }) != null;
+    }
+
+    private String readStatus(final String payload) {
+        try {
+            return objectMapper.readTree(payload).path("status").asText();
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    private void send(final SseEmitter emitter, final String payload) {
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(payload, MediaType.APPLICATION_JSON));
+        } catch (final IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void ping(final SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        } catch (final IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private static boolean isFinal(final String status) {
+        return PaymentStatus.PROCESSED.name().equals(status) || PaymentStatus.CANCELLED.name().equals(status);
+    }
+}
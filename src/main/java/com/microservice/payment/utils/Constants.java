@@ -22,7 +22,10 @@ public final class Constants {
      */
 
     public static final String CACHE_PAYMENT = "payment";
+    // payment id in canonical form, ids differing only in case share one entry
+    public static final String CACHE_PAYMENT_KEY = "T(java.util.UUID).fromString(#id).toString()";
     public static final String PAYMENT_SERVICE = "payment-service";
+    public static final String PAYMENT_GATEWAY = "payment-gateway";
 
     public static final String REQUIRE_ID = "id cannot be null";
 
@@ -1,11 +1,11 @@
 package com.microservice.payment.utils;
 
+import java.time.Clock;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneId;
+import java.time.ZoneOffset;
 
-import static com.microservice.payment.utils.Constants.ZONE_UTC;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
 /**
@@ -17,23 +17,39 @@ import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
  */
 public class Helper {
 
-    public static String getProcessingDateTime(final int processInDays) {
-        return LocalDateTime
-                .of(
-                        LocalDate
-                                .now(ZoneId.of(ZONE_UTC))
-                                .plusDays(processInDays),
-                        LocalTime.MIDNIGHT)
-                .format(ISO_LOCAL_DATE_TIME);
-
+    /**
+     * payment processing time, midnight UTC after provided days
+     *
+     * @param clock         {@link Clock} application clock
+     * @param processInDays days to add to current date
+     * @return {@link Instant} processing time
+     */
+    public static Instant getProcessingDateTime(final Clock clock, final int processInDays) {
+        return LocalDate
+                .now(clock.withZone(ZoneOffset.UTC))
+                .plusDays(processInDays)
+                .atStartOfDay(ZoneOffset.UTC)
+                .toInstant();
     }
 
-    public static String getCurrentUTCDateTime() {
-        return LocalDateTime
-                .of(
-                        LocalDate.now(ZoneId.of(ZONE_UTC)),
-                        LocalTime.now()).format(ISO_LOCAL_DATE_TIME);
+    /**
+     * format instant as UTC local date time, the format exposed by apis
+     *
+     * @param instant {@link Instant} instant to format
+     * @return {@link String} formatted date time
+     */
+    public static String toUTCDateTime(final Instant instant) {
+        return instant == null ? null : LocalDateTime.ofInstant(instant, ZoneOffset.UTC).format(ISO_LOCAL_DATE_TIME);
+    }
 
+    /**
+     * parse UTC local date time exposed by apis to instant
+     *
+     * @param dateTime {@link String} formatted date time
+     * @return {@link Instant} parsed instant
+     */
+    public static Instant fromUTCDateTime(final String dateTime) {
+        return dateTime == null ? null : LocalDateTime.parse(dateTime, ISO_LOCAL_DATE_TIME).toInstant(ZoneOffset.UTC);
     }
 
 }
@@ -0,0 +1,64 @@
+package com.microservice.payment.utils;
+
+import com.microservice.payment.exception.NoInstanceException;
+
+import java.security.SecureRandom;
+import java.util.OptionalLong;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * time ordered UUID version 7 generator, first 48 bits are unix epoch
+ * milliseconds followed by a 12 bit counter so ids generated within the
+ * same millisecond keep increasing, remaining bits are random. Ids
+ * generated later sort after earlier ones both as string and as bytes
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public final class UuidV7 {
+
+    private static final Random RANDOM = new SecureRandom();
+    // unix millis shifted by counter bits, counter overflow borrows next millisecond
+    private static final AtomicLong LAST_TIMESTAMP = new AtomicLong();
+
+    private UuidV7() throws NoInstanceException {
+        throw new NoInstanceException("Object creation of this class is not allowed");
+    }
+
+    /**
+     * generate next time ordered id
+     *
+     * @return {@link UUID} version 7 id
+     */
+    public static UUID randomUUID() {
+        return randomUUID(System.currentTimeMillis());
+    }
+
+    /**
+     * generate next time ordered id for provided time, ids never go
+     * backwards even if provided time does
+     *
+     * @param epochMillis unix epoch milliseconds
+     * @return {@link UUID} version 7 id
+     */
+    static UUID randomUUID(final long epochMillis) {
+        final long timestamp = LAST_TIMESTAMP.updateAndGet(last -> Math.max(last + 1, epochMillis << 12));
+        final long mostSigBits = (timestamp >>> 12) << 16 | 0x7000L | (timestamp & 0xFFFL);
+        final long leastSigBits = RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        return new UUID(mostSigBits, leastSigBits);
+    }
+
+    /**
+     * generation time carried by a version 7 id
+     *
+     * @param id {@link UUID} payment id
+     * @return {@link OptionalLong} unix epoch milliseconds, empty for other versions
+     */
+    public static OptionalLong epochMillis(final UUID id) {
+        return id.version() == 7 && id.variant() == 2
+                ? OptionalLong.of(id.getMostSignificantBits() >>> 16)
+                : OptionalLong.empty();
+    }
+}
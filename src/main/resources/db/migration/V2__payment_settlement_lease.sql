@@ -0,0 +1,5 @@
+ALTER TABLE `payment`
+    ADD COLUMN `lease_owner` varchar(64) DEFAULT NULL,
+    ADD COLUMN `lease_until` DATETIME(3) DEFAULT NULL;
+
+CREATE INDEX `idx_payment_status_lease_until` ON `payment` (`status`, `lease_until`);
@@ -0,0 +1,13 @@
+ALTER TABLE `payment` ADD COLUMN `processing_time_typed` DATETIME(3) DEFAULT NULL;
+
+UPDATE `payment`
+SET `processing_time_typed` = CAST(REPLACE(`processing_time`, 'T', ' ') AS DATETIME(3))
+WHERE `processing_time` IS NOT NULL;
+
+ALTER TABLE `payment`
+    DROP COLUMN `processing_time`,
+    RENAME COLUMN `processing_time_typed` TO `processing_time`,
+    MODIFY COLUMN `date_created` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    MODIFY COLUMN `date_updated` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3);
+
+CREATE INDEX `idx_payment_status_processing_time` ON `payment` (`status`, `processing_time`);
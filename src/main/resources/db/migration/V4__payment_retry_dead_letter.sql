@@ -0,0 +1,16 @@
+ALTER TABLE `payment`
+    ADD COLUMN `attempt_count` smallint(5) NOT NULL DEFAULT 0,
+    ADD COLUMN `next_attempt_time` DATETIME(3) DEFAULT NULL,
+    ADD COLUMN `last_error` varchar(512) DEFAULT NULL;
+
+CREATE INDEX `idx_payment_status_next_attempt_time` ON `payment` (`status`, `next_attempt_time`);
+
+CREATE TABLE IF NOT EXISTS `payment_dead_letter` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    `payment_id` VARCHAR(50) NOT NULL,
+    `attempt_count` smallint(5) NOT NULL,
+    `last_error` varchar(512) DEFAULT NULL,
+    `date_created` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    `date_updated` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    UNIQUE KEY `uk_payment_dead_letter_payment_id` (`payment_id`)
+)ENGINE=InnoDB DEFAULT CHARSET=UTF8;
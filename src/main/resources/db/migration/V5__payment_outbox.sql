@@ -0,0 +1,7 @@
+CREATE TABLE IF NOT EXISTS `payment_outbox` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    `payment_id` VARCHAR(50) NOT NULL,
+    `status` varchar(12) NOT NULL,
+    `payload` TEXT NOT NULL,
+    `date_created` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3)
+)ENGINE=InnoDB DEFAULT CHARSET=UTF8;
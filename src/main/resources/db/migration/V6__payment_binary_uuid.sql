@@ -0,0 +1,18 @@
+ALTER TABLE `payment` ADD COLUMN `id_binary` BINARY(16) DEFAULT NULL;
+
+UPDATE `payment` SET `id_binary` = UUID_TO_BIN(`id`);
+
+ALTER TABLE `payment`
+    DROP PRIMARY KEY,
+    DROP COLUMN `id`,
+    CHANGE COLUMN `id_binary` `id` BINARY(16) NOT NULL FIRST,
+    ADD PRIMARY KEY (`id`);
+
+ALTER TABLE `payment_dead_letter` ADD COLUMN `payment_id_binary` BINARY(16) DEFAULT NULL;
+
+UPDATE `payment_dead_letter` SET `payment_id_binary` = UUID_TO_BIN(`payment_id`);
+
+ALTER TABLE `payment_dead_letter`
+    DROP COLUMN `payment_id`,
+    CHANGE COLUMN `payment_id_binary` `payment_id` BINARY(16) NOT NULL AFTER `id`,
+    ADD UNIQUE KEY `uk_payment_dead_letter_payment_id` (`payment_id`);
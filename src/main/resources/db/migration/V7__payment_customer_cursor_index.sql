@@ -0,0 +1 @@
+CREATE INDEX `idx_payment_customer_date_created` ON `payment` (`customer_id`, `date_created`, `id`);
@@ -0,0 +1,12 @@
+CREATE TABLE IF NOT EXISTS `customer_payment_stats` (
+    `customer_id` varchar(50) NOT NULL,
+    `status` varchar(12) NOT NULL,
+    `total` BIGINT NOT NULL DEFAULT 0,
+    `date_updated` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (`customer_id`, `status`)
+)ENGINE=InnoDB DEFAULT CHARSET=UTF8;
+
+INSERT INTO `customer_payment_stats` (customer_id, status, total)
+SELECT customer_id, status, COUNT(*) FROM `payment`
+WHERE status IS NOT NULL
+GROUP BY customer_id, status;
@@ -0,0 +1,20 @@
+CREATE TABLE IF NOT EXISTS `payment_history` (
+    `id` BINARY(16) NOT NULL,
+    `customer_id` varchar(50) NOT NULL,
+    `payment_method_id` varchar(50) NOT NULL,
+    `amount` DECIMAL(12, 2) NOT NULL,
+    `status` varchar(12) NOT NULL,
+    `processing_time` DATETIME(3) DEFAULT NULL,
+    `version` smallint(5) DEFAULT 1,
+    `attempt_count` smallint(5) NOT NULL DEFAULT 0,
+    `last_error` varchar(512) DEFAULT NULL,
+    `date_created` DATETIME(3) NOT NULL,
+    `date_updated` DATETIME(3) NOT NULL,
+    `date_archived` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (`id`, `date_created`),
+    KEY `idx_payment_history_customer_date_created` (`customer_id`, `date_created`, `id`)
+)ENGINE=InnoDB DEFAULT CHARSET=UTF8
+PARTITION BY RANGE COLUMNS (`date_created`) (
+    PARTITION `p_history` VALUES LESS THAN ('2024-01-01'),
+    PARTITION `p_future` VALUES LESS THAN (MAXVALUE)
+);
@@ -0,0 +1,141 @@
+package com.microservice.payment.archive;
+
+import com.microservice.payment.cache.PaymentCacheEvictor;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.repository.PaymentHistoryRepository;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for payment archiver class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class PaymentArchiverTest {
+
+    private static final Instant NOW = Instant.parse("2025-06-15T00:00:00Z");
+
+    @Mock
+    private PaymentHistoryRepository paymentHistoryRepository;
+    @Mock
+    private CustomerPaymentStats customerPaymentStats;
+    @Mock
+    private PaymentCacheEvictor paymentCacheEvictor;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private Clock clock;
+
+    @InjectMocks
+    private PaymentArchiver underTest;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(underTest, "minAge", Duration.ofDays(365));
+        ReflectionTestUtils.setField(underTest, "batchSize", 2);
+        ReflectionTestUtils.setField(underTest, "pause", Duration.ZERO);
+        ReflectionTestUtils.setField(underTest, "runBudget", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(underTest, "partitionsAhead", 2);
+        when(clock.instant()).thenReturn(NOW);
+        when(clock.getZone()).thenReturn(ZoneOffset.UTC);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    /**
+     * settled payments are archived batch by batch, stats count
+     * them as archived and cached copies are evicted
+     */
+    @Test
+    void shouldArchiveSettledPaymentsInBatches() throws InterruptedException {
+        final Instant before = NOW.minus(Duration.ofDays(365));
+        final List<Payment> batch = List.of(payment(), payment());
+        final List<Payment> last = List.of(payment());
+
+        //mock repository
+        when(paymentHistoryRepository.findArchivable("PROCESSED", before, 2)).thenReturn(batch, last);
+        when(paymentHistoryRepository.findArchivable("CANCELLED", before, 2)).thenReturn(Collections.emptyList());
+        when(paymentHistoryRepository.archive(any())).thenAnswer(invocation ->
+                invocation.<List<UUID>>getArgument(0).size());
+
+        //execute actual unit test
+        final int archived = underTest.archive();
+
+        //verify
+        assertThat(archived, equalTo(3));
+        verify(customerPaymentStats).moved(batch, CustomerPaymentStats.ARCHIVED);
+        verify(customerPaymentStats).moved(last, CustomerPaymentStats.ARCHIVED);
+        verify(paymentCacheEvictor).evictAfterCommit(batch.stream().map(Payment::getId).toList());
+        verify(paymentCacheEvictor).evictAfterCommit(last.stream().map(Payment::getId).toList());
+    }
+
+    /**
+     * nothing is archived and stats stay untouched without settled payments
+     */
+    @Test
+    void shouldNotArchiveWithoutSettledPayments() throws InterruptedException {
+        //mock repository
+        when(paymentHistoryRepository.findArchivable(anyString(), any(), eq(2))).thenReturn(Collections.emptyList());
+
+        //execute actual unit test
+        final int archived = underTest.archive();
+
+        //verify
+        assertThat(archived, equalTo(0));
+        verify(paymentHistoryRepository, never()).archive(any());
+        verify(customerPaymentStats, never()).moved(any(), anyString());
+    }
+
+    /**
+     * monthly partitions continue after the last one
+     * up to configured months ahead
+     */
+    @Test
+    void shouldAddMissingMonthlyPartitions() {
+        //mock repository
+        when(paymentHistoryRepository.findLastPartition()).thenReturn(Optional.of(YearMonth.of(2025, 6)));
+
+        //execute actual unit test
+        underTest.addPartitions();
+
+        //verify
+        verify(paymentHistoryRepository).addPartitions(List.of(YearMonth.of(2025, 7), YearMonth.of(2025, 8)));
+    }
+
+    private static Payment payment() {
+        return Payment.builder()
+                .id(UUID.randomUUID())
+                .customerId("customerId1")
+                .status("PROCESSED")
+                .build();
+    }
+}
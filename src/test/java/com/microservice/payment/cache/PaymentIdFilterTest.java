@@ -0,0 +1,160 @@
+package com.microservice.payment.cache;
+
+import com.microservice.payment.repository.PaymentIdRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for payment id filter class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class PaymentIdFilterTest {
+
+    private static final Instant NOW = Instant.parse("2024-06-01T10:00:00Z");
+    private static final UUID STORED_ID = idAt(NOW.minus(Duration.ofDays(1)));
+
+    @Mock
+    private PaymentIdRepository paymentIdRepository;
+
+    private MeterRegistry meterRegistry;
+    private PaymentIdFilter underTest;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        underTest = new PaymentIdFilter(paymentIdRepository, Clock.fixed(NOW, ZoneOffset.UTC), meterRegistry);
+        ReflectionTestUtils.setField(underTest, "enabled", true);
+        ReflectionTestUtils.setField(underTest, "expectedFpp", 0.01);
+        ReflectionTestUtils.setField(underTest, "trustMargin", Duration.ofMinutes(5));
+        underTest.registerMetrics();
+    }
+
+    /**
+     * stored ids pass the filter and unknown ids generated
+     * before the rebuild are answered as absent
+     */
+    @Test
+    void shouldRejectUnknownIdAfterRebuild() {
+        //mock
+        when(paymentIdRepository.findIds(any(), anyInt())).thenReturn(List.of(STORED_ID));
+        final UUID unknownId = idAt(NOW.minus(Duration.ofDays(2)));
+
+        //execute actual unit test
+        final boolean absentBeforeBuild = underTest.isAbsent(unknownId);
+        underTest.rebuild();
+
+        //verify
+        assertThat(absentBeforeBuild, equalTo(false));
+        assertThat(underTest.isAbsent(STORED_ID), equalTo(false));
+        assertThat(underTest.isAbsent(unknownId), equalTo(true));
+        assertThat(underTest.isAbsent(UUID.randomUUID()), equalTo(true));
+    }
+
+    /**
+     * archived ids are loaded from history so archived
+     * payments are not answered as absent
+     */
+    @Test
+    void shouldKeepArchivedIdsAfterRebuild() {
+        //mock
+        final UUID archivedId = idAt(NOW.minus(Duration.ofDays(400)));
+        when(paymentIdRepository.findIds(any(), anyInt())).thenReturn(List.of(STORED_ID));
+        when(paymentIdRepository.findArchivedIds(any(), anyInt())).thenReturn(List.of(archivedId));
+
+        //execute actual unit test
+        underTest.rebuild();
+
+        //verify
+        assertThat(underTest.isAbsent(STORED_ID), equalTo(false));
+        assertThat(underTest.isAbsent(archivedId), equalTo(false));
+        assertThat(underTest.isAbsent(idAt(NOW.minus(Duration.ofDays(2)))), equalTo(true));
+    }
+
+    /**
+     * ids generated close to or after the rebuild may have been created
+     * by another instance and are left to database, ids created by this
+     * instance are added right away
+     */
+    @Test
+    void shouldNotJudgeIdsNewerThanRebuild() {
+        //mock
+        when(paymentIdRepository.findIds(any(), anyInt())).thenReturn(List.of());
+        final UUID recentId = idAt(NOW.minus(Duration.ofMinutes(1)));
+        final UUID addedId = UUID.randomUUID();
+
+        //execute actual unit test
+        underTest.rebuild();
+        underTest.add(List.of(addedId));
+
+        //verify
+        assertThat(underTest.isAbsent(recentId), equalTo(false));
+        assertThat(underTest.isAbsent(addedId), equalTo(false));
+        assertThat(meterRegistry.get("payment.id-filter.lookups").tag("result", "unchecked").counter().count(),
+                equalTo(1d));
+    }
+
+    /**
+     * ids are loaded chunk by chunk continuing after last id of previous chunk
+     * and the filter keeps its expected false positive rate
+     */
+    @Test
+    void shouldRebuildFromEveryChunk() {
+        //mock
+        final List<UUID> firstChunk = IntStream.range(0, 10_000)
+                .mapToObj(i -> idAt(NOW.minus(Duration.ofDays(3))))
+                .toList();
+        final UUID lastId = idAt(NOW.minus(Duration.ofDays(3)));
+        when(paymentIdRepository.estimateCount()).thenReturn(10_001L);
+        when(paymentIdRepository.findIds(eq(null), anyInt())).thenReturn(firstChunk);
+        when(paymentIdRepository.findIds(eq(firstChunk.get(firstChunk.size() - 1)), anyInt()))
+                .thenReturn(List.of(lastId));
+
+        //execute actual unit test
+        underTest.rebuild();
+        final long falsePositives = IntStream.range(0, 10_000)
+                .mapToObj(i -> UUID.randomUUID())
+                .filter(id -> !underTest.isAbsent(id))
+                .count();
+
+        //verify
+        assertThat(underTest.isAbsent(lastId), equalTo(false));
+        assertThat(firstChunk.stream().noneMatch(underTest::isAbsent), equalTo(true));
+        assertThat(falsePositives, lessThan(200L));
+        assertThat(meterRegistry.get("payment.id-filter.expected-fpp").gauge().value(), lessThan(0.01));
+    }
+
+    /**
+     * version 7 payment id generated at provided time
+     */
+    private static UUID idAt(final Instant generated) {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        return new UUID(generated.toEpochMilli() << 16 | 0x7000L | random.nextInt(0x1000),
+                random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L);
+    }
+}
@@ -0,0 +1,107 @@
+package com.microservice.payment.cache;
+
+import com.microservice.payment.dto.ResponsePager;
+import com.microservice.payment.dto.payment.PaymentDTO;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * compares encode and decode time and payload size of binary payment
+ * serializer against json serializer, for a single payment and for a
+ * page of 1k payments. Benchmark only runs with -Dbenchmark=true
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PaymentRedisSerializerBenchmarkTest {
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int WARMUP = 20_000;
+    private static final int ITERATIONS = 50_000;
+
+    private final RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer();
+    private final RedisSerializer<Object> binary = new PaymentRedisSerializer(1024);
+
+    /**
+     * binary payment must be smaller and faster to decode than json
+     */
+    @Test
+    void shouldEncodePaymentSmallerAndFaster() {
+        final PaymentDTO payment = payment(0);
+
+        //execute benchmark
+        final Result jsonResult = measure(json, payment, ITERATIONS);
+        final Result binaryResult = measure(binary, payment, ITERATIONS);
+
+        //verify
+        log.info("Payment json: {} bytes encode {} ns decode {} ns, binary: {} bytes encode {} ns decode {} ns",
+                jsonResult.bytes(), jsonResult.encodeNanos(), jsonResult.decodeNanos(),
+                binaryResult.bytes(), binaryResult.encodeNanos(), binaryResult.decodeNanos());
+        assertThat(binaryResult.bytes(), lessThan(jsonResult.bytes()));
+        assertThat(binaryResult.decodeNanos(), lessThan(jsonResult.decodeNanos()));
+    }
+
+    /**
+     * compressed binary page must be smaller and faster to decode than json
+     */
+    @Test
+    void shouldEncodePageSmallerAndFaster() {
+        final ResponsePager<PaymentDTO> page = ResponsePager.ofCursor(IntStream.range(0, PAGE_SIZE)
+                .mapToObj(PaymentRedisSerializerBenchmarkTest::payment)
+                .toList(), 25_000L, "cursor1");
+
+        //execute benchmark
+        final Result jsonResult = measure(json, page, ITERATIONS / PAGE_SIZE * 10);
+        final Result binaryResult = measure(binary, page, ITERATIONS / PAGE_SIZE * 10);
+
+        //verify
+        log.info("Page of {} json: {} bytes encode {} us decode {} us, binary: {} bytes encode {} us decode {} us",
+                PAGE_SIZE, jsonResult.bytes(), jsonResult.encodeNanos() / 1000, jsonResult.decodeNanos() / 1000,
+                binaryResult.bytes(), binaryResult.encodeNanos() / 1000, binaryResult.decodeNanos() / 1000);
+        assertThat(binaryResult.bytes(), lessThan(jsonResult.bytes()));
+        assertThat(binaryResult.decodeNanos(), lessThan(jsonResult.decodeNanos()));
+    }
+
+    private static Result measure(final RedisSerializer<Object> serializer, final Object value, final int iterations) {
+        final byte[] bytes = serializer.serialize(value);
+        for (int i = 0; i < Math.min(WARMUP, iterations * 10); i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.serialize(value);
+        }
+        final long encodeNanos = (System.nanoTime() - startedAt) / iterations;
+        startedAt = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            serializer.deserialize(bytes);
+        }
+        return new Result(bytes.length, encodeNanos, (System.nanoTime() - startedAt) / iterations);
+    }
+
+    private static PaymentDTO payment(final int index) {
+        return new PaymentDTO(new UUID(0x018f000000007000L, 0x8000000000000000L + index).toString(),
+                "customerId" + index % 10, 320d + index, "paymentMethod1", "PROCESSED", "2024-01-01T10:00:00");
+    }
+
+    /**
+     * average cost of a single value
+     *
+     * @param bytes       payload size
+     * @param encodeNanos encode time in nanoseconds
+     * @param decodeNanos decode time in nanoseconds
+     */
+    private record Result(int bytes, long encodeNanos, long decodeNanos) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.microservice.payment.cache;
+
+import com.microservice.payment.dto.ResponsePager;
+import com.microservice.payment.dto.payment.PaymentDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * unit test cases for payment redis serializer class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public class PaymentRedisSerializerTest {
+
+    private static final String ID1 = "018f0000-0000-7000-8000-000000000001";
+
+    private final PaymentRedisSerializer underTest = new PaymentRedisSerializer(1024);
+
+    /**
+     * payment is read back unchanged, missing fields stay missing
+     */
+    @Test
+    void shouldReadBackPayment() {
+        final PaymentDTO payment = new PaymentDTO(ID1, "customerId1", 320d, "paymentMethod1", "PENDING",
+                "2024-01-01T10:00:00");
+        final PaymentDTO partial = new PaymentDTO("payment-1", "customerId1", null, null, null, null);
+
+        //execute actual unit test and verify
+        assertThat(underTest.deserialize(underTest.serialize(payment)), equalTo(payment));
+        assertThat(underTest.deserialize(underTest.serialize(partial)), equalTo(partial));
+    }
+
+    /**
+     * large page is compressed and read back unchanged
+     */
+    @Test
+    void shouldCompressLargePage() {
+        final ResponsePager<PaymentDTO> page = ResponsePager.ofCursor(IntStream.range(0, 100)
+                .mapToObj(index -> new PaymentDTO(ID1, "customerId1", 320d, "paymentMethod1", "PROCESSED",
+                        "2024-01-01T10:00:00"))
+                .toList(), 250L, "cursor1");
+
+        //execute actual unit test
+        final byte[] compressed = underTest.serialize(page);
+
+        //verify
+        assertThat(compressed.length, lessThan(new PaymentRedisSerializer(0).serialize(page).length));
+        assertThat(underTest.deserialize(compressed), equalTo(page));
+    }
+
+    /**
+     * value written with another schema version is read as cache miss
+     */
+    @Test
+    void shouldIgnoreValueOfAnotherSchemaVersion() {
+        final byte[] value = underTest.serialize(new PaymentDTO(ID1, "customerId1", 320d, "paymentMethod1",
+                "PENDING", null));
+        value[0] = PaymentRedisSerializer.SCHEMA_VERSION + 1;
+
+        //execute actual unit test and verify
+        assertThat(underTest.deserialize(value), nullValue());
+        assertThat(underTest.deserialize("{\"@class\":\"json\"}".getBytes()), nullValue());
+    }
+
+    /**
+     * values other than payments and payment pages are rejected
+     */
+    @Test
+    void shouldRejectUnsupportedValue() {
+        //execute actual unit test and verify
+        assertThrows(SerializationException.class, () -> underTest.serialize(List.of(ID1)));
+        assertThrows(SerializationException.class, () -> underTest.serialize(ResponsePager.ofCursor(List.of(ID1),
+                null, null)));
+    }
+}
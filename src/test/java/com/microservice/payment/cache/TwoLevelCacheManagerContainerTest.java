@@ -0,0 +1,121 @@
+package com.microservice.payment.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * verifies local cache invalidation and multi key access between two
+ * instances sharing one redis, each instance has its own local cache
+ * and listener. Test is skipped when docker is not available
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class TwoLevelCacheManagerContainerTest {
+
+    @Container
+    private static final GenericContainer<?> REDIS = new GenericContainer<>("redis:7.2-alpine")
+            .withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisMessageListenerContainer firstListener;
+    private RedisMessageListenerContainer secondListener;
+    private TwoLevelCacheManager first;
+    private TwoLevelCacheManager second;
+
+    @BeforeEach
+    public void setUp() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        firstListener = listener();
+        secondListener = listener();
+        first = instance(firstListener);
+        second = instance(secondListener);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        firstListener.destroy();
+        secondListener.destroy();
+        connectionFactory.destroy();
+    }
+
+    /**
+     * change on one instance drops local copy of the other
+     * instance so it reads the changed entry
+     */
+    @Test
+    void shouldInvalidateLocalCopyOfOtherInstance() throws InterruptedException {
+        final Cache firstCache = first.getCache("payment");
+        final Cache secondCache = second.getCache("payment");
+        firstCache.put("id1", "pending");
+        assertThat(secondCache.get("id1", String.class), equalTo("pending"));
+
+        //execute actual unit test
+        firstCache.put("id1", "processed");
+
+        //verify
+        final long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!"processed".equals(secondCache.get("id1", String.class)) && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(secondCache.get("id1", String.class), equalTo("processed"));
+    }
+
+    /**
+     * entries filled at once by one instance are read at once by the
+     * other, entry changed meanwhile is not overwritten by the fill
+     */
+    @Test
+    void shouldReadAndFillManyEntriesAtOnce() {
+        final BatchCache firstCache = (BatchCache) first.getCache("payment");
+        final BatchCache secondCache = (BatchCache) second.getCache("payment");
+        firstCache.put("id3", "processed");
+
+        //execute actual unit test
+        firstCache.putAllIfAbsent(Map.of("id2", "pending", "id3", "pending"));
+        final Map<Object, Object> found = secondCache.getAll(List.of("id2", "id3", "id4"));
+
+        //verify
+        assertThat(found, equalTo(Map.of("id2", "pending", "id3", "processed")));
+        assertThat(firstCache.get("id3", String.class), equalTo("processed"));
+    }
+
+    private RedisMessageListenerContainer listener() {
+        final RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.afterPropertiesSet();
+        container.start();
+        return container;
+    }
+
+    private TwoLevelCacheManager instance(final RedisMessageListenerContainer listener) {
+        final StringRedisTemplate redisTemplate = new StringRedisTemplate(connectionFactory);
+        final TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(RedisCacheManager.create(connectionFactory),
+                redisTemplate, listener, new ObjectMapper(), new SimpleMeterRegistry(), "cache-invalidation",
+                100, Duration.ofMinutes(1), new RedisLoadLock(redisTemplate, Duration.ofSeconds(2)));
+        cacheManager.listen();
+        return cacheManager;
+    }
+}
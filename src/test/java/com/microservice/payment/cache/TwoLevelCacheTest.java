@@ -0,0 +1,286 @@
+package com.microservice.payment.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for two level cache class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class TwoLevelCacheTest {
+
+    private static final String KEY = "0190a4b2-7c3e-7d1a-9f2b-3c4d5e6f7a8b";
+
+    @Mock
+    private Cache remoteCache;
+    @Mock
+    private Consumer<String> invalidation;
+    @Mock
+    private RedisLoadLock loadLock;
+
+    private MeterRegistry meterRegistry;
+    private TwoLevelCache underTest;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(remoteCache.getName()).thenReturn("payment");
+        underTest = new TwoLevelCache(Caffeine.newBuilder().maximumSize(10).build(), remoteCache, null,
+                invalidation, null, meterRegistry);
+    }
+
+    /**
+     * remote hit is copied to local cache so next read
+     * does not leave the instance
+     */
+    @Test
+    void shouldServeRepeatedReadFromLocalCache() {
+        //mock remote cache
+        when(remoteCache.get(KEY)).thenReturn(new SimpleValueWrapper("payment1"));
+
+        //execute actual unit test
+        underTest.get(KEY);
+        final Cache.ValueWrapper value = underTest.get(KEY);
+
+        //verify
+        assertThat(value.get(), equalTo("payment1"));
+        verify(remoteCache, times(1)).get(KEY);
+        assertThat(gets("local", "hit"), equalTo(1d));
+        assertThat(gets("local", "miss"), equalTo(1d));
+        assertThat(gets("remote", "hit"), equalTo(1d));
+    }
+
+    /**
+     * remote miss is not cached locally
+     */
+    @Test
+    void shouldNotCacheRemoteMissLocally() {
+        //execute actual unit test
+        underTest.get(KEY);
+        final Cache.ValueWrapper value = underTest.get(KEY);
+
+        //verify
+        assertThat(value, nullValue());
+        verify(remoteCache, times(2)).get(KEY);
+        assertThat(gets("remote", "miss"), equalTo(2d));
+    }
+
+    /**
+     * writes go to both levels and are announced to other instances
+     */
+    @Test
+    void shouldPutBothLevelsAndAnnounceChange() {
+        //execute actual unit test
+        underTest.put(KEY, "payment2");
+
+        //verify
+        verify(remoteCache).put(KEY, "payment2");
+        verify(invalidation).accept(KEY);
+        assertThat(underTest.get(KEY, String.class), equalTo("payment2"));
+        verify(remoteCache, times(0)).get(any());
+    }
+
+    /**
+     * many keys are served from local cache first, the rest from
+     * remote cache, and filled entries are not announced
+     */
+    @Test
+    void shouldReadAndFillManyKeys() {
+        //mock remote cache
+        final String otherKey = "0190a4b2-7c3e-7d1a-9f2b-3c4d5e6f7a8c";
+        underTest.put(KEY, "payment1");
+        when(remoteCache.get("id2")).thenReturn(new SimpleValueWrapper("payment2"));
+
+        //execute actual unit test
+        final Map<Object, Object> found = underTest.getAll(List.of(KEY, "id2", otherKey));
+        underTest.putAllIfAbsent(Map.of(otherKey, "payment3"));
+
+        //verify
+        assertThat(found, equalTo(Map.of(KEY, "payment1", "id2", "payment2")));
+        verify(remoteCache, never()).get(KEY);
+        verify(remoteCache).putIfAbsent(otherKey, "payment3");
+        verify(invalidation, never()).accept(otherKey);
+        assertThat(underTest.get(otherKey, String.class), equalTo("payment3"));
+        assertThat(gets("local", "hit"), equalTo(2d));
+        assertThat(gets("remote", "miss"), equalTo(1d));
+    }
+
+    /**
+     * change announced by another instance drops local copy
+     * so next read goes to remote cache
+     */
+    @Test
+    void shouldEvictLocalCopyOnRemoteChange() {
+        //mock remote cache
+        when(remoteCache.get(KEY)).thenReturn(new SimpleValueWrapper("payment1"),
+                new SimpleValueWrapper("payment2"));
+        underTest.get(KEY);
+
+        //execute actual unit test
+        underTest.evictLocal(KEY);
+
+        //verify
+        assertThat(underTest.get(KEY, String.class), equalTo("payment2"));
+        verify(remoteCache, times(2)).get(KEY);
+    }
+
+    /**
+     * concurrent misses of the same key share a single load
+     */
+    @Test
+    void shouldLoadMissingEntryOncePerInstance() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final Callable<String> loader = () -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            release.await();
+            return "payment1";
+        };
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        //execute actual unit test
+        final Future<String> first = executor.submit(() -> underTest.get(KEY, loader));
+        loading.await();
+        final List<Future<String>> others = IntStream.range(0, 3)
+                .mapToObj(index -> executor.submit(() -> underTest.get(KEY, loader)))
+                .toList();
+        while (meterRegistry.get(TwoLevelCache.METRIC_LOADS).tag("result", "coalesced").counter().count() < 3) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        //verify
+        assertThat(first.get(), equalTo("payment1"));
+        for (final Future<String> other : others) {
+            assertThat(other.get(), equalTo("payment1"));
+        }
+        assertThat(loads.get(), equalTo(1));
+        verify(remoteCache).putIfAbsent(KEY, "payment1");
+        verify(invalidation, never()).accept(any());
+        executor.shutdown();
+    }
+
+    /**
+     * failed load is reported to every caller waiting for it
+     */
+    @Test
+    void shouldReportFailedLoad() {
+        //execute actual unit test
+        final Cache.ValueRetrievalException exception = assertThrows(Cache.ValueRetrievalException.class,
+                () -> underTest.get(KEY, () -> {
+                    throw new IllegalStateException("Payment not found");
+                }));
+
+        //verify
+        assertThat(exception.getCause().getMessage(), equalTo("Payment not found"));
+        verify(remoteCache, never()).putIfAbsent(any(), any());
+    }
+
+    /**
+     * instance that did not get the load lock waits for the entry
+     * loaded by another instance instead of loading it again
+     */
+    @Test
+    void shouldAwaitEntryLoadedByAnotherInstance() {
+        underTest = new TwoLevelCache(Caffeine.newBuilder().maximumSize(10).build(), remoteCache, null,
+                invalidation, loadLock, meterRegistry);
+
+        //mock remote cache and lock
+        when(remoteCache.get(KEY)).thenReturn(null, null, new SimpleValueWrapper("payment1"));
+        when(loadLock.tryAcquire("payment", KEY)).thenReturn(null);
+        when(loadLock.getTimeout()).thenReturn(Duration.ofSeconds(2));
+
+        //execute actual unit test
+        final String payment = underTest.get(KEY, () -> {
+            throw new IllegalStateException("must not load");
+        });
+
+        //verify
+        assertThat(payment, equalTo("payment1"));
+        verify(remoteCache, never()).putIfAbsent(any(), any());
+        verify(loadLock, never()).release(anyString(), anyString(), anyString());
+    }
+
+    /**
+     * lock owner loads the entry and releases the lock
+     */
+    @Test
+    void shouldLoadEntryAsLockOwner() {
+        underTest = new TwoLevelCache(Caffeine.newBuilder().maximumSize(10).build(), remoteCache, null,
+                invalidation, loadLock, meterRegistry);
+
+        //mock lock
+        when(loadLock.tryAcquire("payment", KEY)).thenReturn("token1");
+
+        //execute actual unit test
+        final String payment = underTest.get(KEY, () -> "payment1");
+
+        //verify
+        assertThat(payment, equalTo("payment1"));
+        verify(remoteCache).putIfAbsent(KEY, "payment1");
+        verify(loadLock).release("payment", KEY, "token1");
+    }
+
+    /**
+     * change cached while a stale row was loading is kept
+     * and returned instead of the loaded row
+     */
+    @Test
+    void shouldKeepChangeCachedWhileLoading() {
+        //mock remote cache, change was put while row was loading
+        when(remoteCache.putIfAbsent(KEY, "payment1")).thenReturn(new SimpleValueWrapper("payment2"));
+
+        //execute actual unit test
+        final String loaded = underTest.get(KEY, () -> "payment1");
+        final String cached = underTest.get(KEY, () -> "payment1");
+
+        //verify
+        assertThat(loaded, equalTo("payment2"));
+        assertThat(cached, equalTo("payment2"));
+        verify(remoteCache, never()).put(any(), any());
+    }
+
+    private double gets(final String level, final String result) {
+        return meterRegistry.get(TwoLevelCache.METRIC_GETS)
+                .tag("level", level)
+                .tag("result", result)
+                .counter()
+                .count();
+    }
+}
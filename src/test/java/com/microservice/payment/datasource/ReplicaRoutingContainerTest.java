@@ -0,0 +1,129 @@
+package com.microservice.payment.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * verifies replica routing against two mysql databases standing in for
+ * primary and replica, each one reports its own role so the database
+ * that served a statement is visible. Test is skipped when docker is
+ * not available
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class ReplicaRoutingContainerTest {
+
+    @Container
+    private static final MySQLContainer<?> PRIMARY = new MySQLContainer<>("mysql:8.0.36");
+    @Container
+    private static final MySQLContainer<?> REPLICA = new MySQLContainer<>("mysql:8.0.36");
+
+    private HikariDataSource primaryPool;
+    private HikariDataSource replicaPool;
+    private ReplicaRoutingDataSource routingDataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    public static void setUpDatabases() {
+        role(PRIMARY, "primary");
+        role(REPLICA, "replica");
+    }
+
+    @BeforeEach
+    public void setUp() {
+        primaryPool = pool(PRIMARY);
+        replicaPool = pool(REPLICA);
+        routingDataSource = new ReplicaRoutingDataSource(primaryPool, List.of(replicaPool), Duration.ofSeconds(10));
+        final LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        primaryPool.close();
+        replicaPool.close();
+    }
+
+    /**
+     * read only transactions are served by replica, others by primary
+     */
+    @Test
+    void shouldRouteReadOnlyTransactionsToReplica() {
+        //execute actual unit test and verify
+        assertThat(transactionTemplate.execute(status -> role()), equalTo("primary"));
+        transactionTemplate.setReadOnly(true);
+        assertThat(transactionTemplate.execute(status -> role()), equalTo("replica"));
+    }
+
+    /**
+     * read only transaction that has to see a recent write is served by primary
+     */
+    @Test
+    void shouldReadRecentWritesFromPrimary() {
+        transactionTemplate.setReadOnly(true);
+
+        //execute actual unit test
+        final String role = transactionTemplate.execute(status -> {
+            ReplicaRoutingDataSource.routeToPrimary();
+            return role();
+        });
+
+        //verify
+        assertThat(role, equalTo("primary"));
+    }
+
+    /**
+     * reads fail over to primary while replica is down
+     */
+    @Test
+    void shouldFailOverToPrimaryWhenReplicaIsDown() {
+        transactionTemplate.setReadOnly(true);
+
+        //execute actual unit test
+        replicaPool.close();
+        routingDataSource.checkReplicas();
+
+        //verify
+        assertThat(transactionTemplate.execute(status -> role()), equalTo("primary"));
+    }
+
+    private String role() {
+        return jdbcTemplate.queryForObject("SELECT name FROM `database_role`", String.class);
+    }
+
+    private static void role(final MySQLContainer<?> mysql, final String role) {
+        try (HikariDataSource pool = pool(mysql)) {
+            final JdbcTemplate template = new JdbcTemplate(pool);
+            template.execute("CREATE TABLE `database_role` (name VARCHAR(16) NOT NULL)");
+            template.update("INSERT INTO `database_role` (name) VALUES (?)", role);
+        }
+    }
+
+    private static HikariDataSource pool(final MySQLContainer<?> mysql) {
+        final HikariDataSource pool = new HikariDataSource();
+        pool.setJdbcUrl(mysql.getJdbcUrl());
+        pool.setUsername(mysql.getUsername());
+        pool.setPassword(mysql.getPassword());
+        return pool;
+    }
+}
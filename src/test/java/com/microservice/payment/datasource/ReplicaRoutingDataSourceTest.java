@@ -0,0 +1,116 @@
+package com.microservice.payment.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for replica routing data source
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class ReplicaRoutingDataSourceTest {
+
+    @Mock
+    private DataSource primary;
+    @Mock
+    private DataSource firstReplica;
+    @Mock
+    private DataSource secondReplica;
+    @Mock
+    private Connection primaryConnection;
+    @Mock
+    private Connection firstReplicaConnection;
+    @Mock
+    private Connection secondReplicaConnection;
+
+    private ReplicaRoutingDataSource underTest;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(firstReplica.getConnection()).thenReturn(firstReplicaConnection);
+        when(secondReplica.getConnection()).thenReturn(secondReplicaConnection);
+        underTest = new ReplicaRoutingDataSource(primary, List.of(firstReplica, secondReplica), Duration.ofSeconds(10));
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        TransactionSynchronizationManager.clear();
+    }
+
+    /**
+     * read only transactions are spread over replicas, others use primary
+     */
+    @Test
+    void shouldRouteReadOnlyTransactionsToReplicas() throws SQLException {
+        //execute actual unit test and verify
+        assertThat(underTest.getConnection(), sameInstance(primaryConnection));
+
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        assertThat(underTest.getConnection(), sameInstance(firstReplicaConnection));
+        assertThat(underTest.getConnection(), sameInstance(secondReplicaConnection));
+        assertThat(underTest.getConnection(), sameInstance(firstReplicaConnection));
+    }
+
+    /**
+     * read only transaction that has to see a recent write uses primary
+     */
+    @Test
+    void shouldRouteReadOnlyTransactionToPrimary() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+
+        //execute actual unit test
+        ReplicaRoutingDataSource.routeToPrimary();
+
+        //verify
+        assertThat(underTest.getConnection(), sameInstance(primaryConnection));
+    }
+
+    /**
+     * replica that cannot hand out connections is skipped until
+     * health check finds it healthy again
+     */
+    @Test
+    void shouldFailOverToPrimaryUntilReplicaRecovers() throws SQLException {
+        TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+        final List<DataSource> replicas = List.of(firstReplica);
+        underTest = new ReplicaRoutingDataSource(primary, replicas, Duration.ofSeconds(10));
+
+        //mock replica outage and recovery
+        when(firstReplica.getConnection())
+                .thenThrow(new SQLTransientConnectionException("replica down"))
+                .thenThrow(new SQLTransientConnectionException("replica down"))
+                .thenReturn(firstReplicaConnection);
+        when(firstReplicaConnection.isValid(1)).thenReturn(true);
+        when(firstReplicaConnection.createStatement()).thenThrow(new SQLException("access denied"));
+
+        //execute actual unit test and verify
+        assertThat(underTest.getConnection(), sameInstance(primaryConnection));
+        assertThat(underTest.getConnection(), sameInstance(primaryConnection));
+        underTest.checkReplicas();
+        underTest.checkReplicas();
+        assertThat(underTest.getConnection(), sameInstance(firstReplicaConnection));
+    }
+}
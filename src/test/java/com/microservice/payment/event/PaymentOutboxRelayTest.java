@@ -0,0 +1,117 @@
+package com.microservice.payment.event;
+
+import com.microservice.payment.event.impl.InMemoryPaymentEventPublisher;
+import com.microservice.payment.repository.PaymentOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for payment outbox relay class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class PaymentOutboxRelayTest {
+
+    @Mock
+    private PaymentOutboxRepository paymentOutboxRepository;
+    @Spy
+    private InMemoryPaymentEventPublisher paymentEventPublisher = new InMemoryPaymentEventPublisher(100);
+
+    @InjectMocks
+    private PaymentOutboxRelay underTest;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(underTest, "batchSize", 3);
+        ReflectionTestUtils.setField(underTest, "runBudget", Duration.ofSeconds(5));
+    }
+
+    /**
+     * outbox is drained batch by batch in stored order and published
+     * events are removed from outbox
+     */
+    @Test
+    void shouldRelayEventsInBatches() {
+        final PaymentEvent first = event(1L, "id1", "PENDING");
+        final PaymentEvent second = event(2L, "id2", "PENDING");
+        final PaymentEvent third = event(3L, "id1", "PROCESSED");
+        final PaymentEvent fourth = event(4L, "id2", "CANCELLED");
+
+        //mock repository
+        when(paymentOutboxRepository.findOldest(3))
+                .thenReturn(List.of(first, second, third))
+                .thenReturn(List.of(fourth))
+                .thenReturn(Collections.emptyList());
+
+        //execute actual unit test
+        underTest.relay();
+
+        //verify
+        assertThat(paymentEventPublisher.getEvents(), contains(first, second, third, fourth));
+        verify(paymentOutboxRepository).deleteAllById(List.of(1L, 2L, 3L));
+        verify(paymentOutboxRepository).deleteAllById(List.of(4L));
+        verify(paymentOutboxRepository, times(2)).findOldest(3);
+    }
+
+    /**
+     * event that cannot be published holds back later events of the same
+     * payment only and stays in outbox for next run
+     */
+    @Test
+    void shouldHoldBackLaterEventsOfSamePaymentWhenPublishFails() {
+        final PaymentEvent first = event(1L, "id1", "PENDING");
+        final PaymentEvent second = event(2L, "id2", "PENDING");
+        final PaymentEvent third = event(3L, "id1", "PROCESSED");
+
+        //mock repository and publisher
+        when(paymentOutboxRepository.findOldest(3)).thenReturn(List.of(first, second, third));
+        doThrow(new IllegalStateException("stream unavailable")).when(paymentEventPublisher).publish(first);
+
+        //execute actual unit test
+        underTest.relay();
+
+        //verify
+        assertThat(paymentEventPublisher.getEvents(), contains(second));
+        verify(paymentEventPublisher, never()).publish(third);
+        verify(paymentOutboxRepository).deleteAllById(List.of(2L));
+        verify(paymentOutboxRepository, times(1)).findOldest(3);
+    }
+
+    /**
+     * nothing is removed when outbox is empty
+     */
+    @Test
+    void shouldNotRemoveEventsWhenOutboxIsEmpty() {
+        //execute actual unit test
+        underTest.relay();
+
+        //verify
+        verify(paymentOutboxRepository, never()).deleteAllById(anyCollection());
+    }
+
+    private static PaymentEvent event(final Long id, final String paymentId, final String status) {
+        return new PaymentEvent(id, paymentId, status, "{}", Instant.now());
+    }
+}
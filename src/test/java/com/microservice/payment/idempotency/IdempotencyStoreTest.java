@@ -0,0 +1,161 @@
+package com.microservice.payment.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservice.payment.dto.Response;
+import com.microservice.payment.dto.payment.PaymentDTO;
+import com.microservice.payment.exception.DuplicateException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.CREATED;
+
+/**
+ * unit test cases for idempotency store class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class IdempotencyStoreTest {
+
+    private static final String CUSTOMER_ID = "customerId1";
+    private static final String KEY = "key1";
+    private static final String REDIS_KEY = "payment:idempotency:customerId1:key1";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final PaymentDTO request = new PaymentDTO(null, "customerId1", 320d, "paymentMethod1", null, null);
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Supplier<ResponseEntity<Response<?>>> action = () -> ResponseEntity
+            .status(CREATED)
+            .body(new Response<>("payment" + calls.incrementAndGet(), CREATED.value()));
+
+    private IdempotencyStore underTest;
+
+    @BeforeEach
+    public void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        underTest = new IdempotencyStore(redisTemplate, objectMapper);
+        ReflectionTestUtils.setField(underTest, "enabled", true);
+        ReflectionTestUtils.setField(underTest, "timeToLive", Duration.ofHours(24));
+        ReflectionTestUtils.setField(underTest, "lockTimeout", Duration.ofMillis(200));
+    }
+
+    /**
+     * retry of a completed request gets the stored response
+     * without running the request again
+     */
+    @Test
+    void shouldReplayStoredResponseOnRetry() {
+        //mock redis, first request takes the key and stores its response
+        final ArgumentCaptor<String> stored = ArgumentCaptor.forClass(String.class);
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(true, false);
+        final ResponseEntity<Response<?>> first = underTest.execute(CUSTOMER_ID, KEY, request, action);
+        verify(valueOperations).set(eq(REDIS_KEY), stored.capture(), eq(Duration.ofHours(24)));
+        when(valueOperations.get(REDIS_KEY)).thenReturn(stored.getValue());
+
+        //execute actual unit test
+        final ResponseEntity<Response<?>> retry = underTest.execute(CUSTOMER_ID, KEY, request, action);
+
+        //verify
+        assertThat(calls.get(), equalTo(1));
+        assertThat(retry.getStatusCode(), equalTo(first.getStatusCode()));
+        assertThat(retry.getBody(), equalTo(first.getBody()));
+        assertThat(retry.getHeaders().getFirst(IdempotencyStore.HEADER_REPLAYED), equalTo("true"));
+    }
+
+    /**
+     * same key sent by another customer runs its own request
+     * instead of getting the response of the first customer
+     */
+    @Test
+    void shouldScopeKeyPerCustomer() {
+        //mock redis
+        final PaymentDTO otherRequest = new PaymentDTO(null, "customerId2", 320d, "paymentMethod1", null, null);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+        //execute actual unit test
+        final ResponseEntity<Response<?>> first = underTest.execute(CUSTOMER_ID, KEY, request, action);
+        final ResponseEntity<Response<?>> other = underTest.execute("customerId2", KEY, otherRequest, action);
+
+        //verify
+        assertThat(first.getBody().getContent(), equalTo("payment1"));
+        assertThat(other.getBody().getContent(), equalTo("payment2"));
+        verify(valueOperations).setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class));
+        verify(valueOperations).setIfAbsent(eq("payment:idempotency:customerId2:key1"), anyString(),
+                any(Duration.class));
+    }
+
+    /**
+     * key reused with another payload is rejected, duplicate
+     * of a request still in progress gives up after lock timeout
+     */
+    @Test
+    void shouldRejectKeyOfAnotherOrUnfinishedRequest() throws Exception {
+        //mock redis, key is held by another request
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get(REDIS_KEY)).thenReturn(objectMapper.writeValueAsString(
+                new IdempotencyStore.StoredResponse("other", null, null)));
+        final PaymentDTO inProgress = new PaymentDTO(null, "customerId1", 950d, "paymentMethod1", null, null);
+
+        //execute actual unit test
+        final DuplicateException reused = assertThrows(DuplicateException.class,
+                () -> underTest.execute(CUSTOMER_ID, KEY, request, action));
+        when(valueOperations.get(REDIS_KEY)).thenAnswer(invocation -> objectMapper.writeValueAsString(
+                new IdempotencyStore.StoredResponse(underTest.fingerprint(inProgress), null, null)));
+        final DuplicateException unfinished = assertThrows(DuplicateException.class,
+                () -> underTest.execute(CUSTOMER_ID, KEY, inProgress, action));
+
+        //verify
+        assertThat(reused.getMessage(), equalTo("Idempotency-Key was already used with another request"));
+        assertThat(unfinished.getMessage(), equalTo("Request with same Idempotency-Key is in progress"));
+        assertThat(calls.get(), equalTo(0));
+    }
+
+    /**
+     * request runs without deduplication when redis is not reachable
+     * and failed request releases its key so it can be retried
+     */
+    @Test
+    void shouldRunRequestWhenKeyCannotBeStored() {
+        //mock redis
+        when(valueOperations.setIfAbsent(eq(REDIS_KEY), anyString(), any(Duration.class)))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(true);
+
+        //execute actual unit test
+        final ResponseEntity<Response<?>> response = underTest.execute(CUSTOMER_ID, KEY, request, action);
+        assertThrows(IllegalArgumentException.class, () -> underTest.execute(CUSTOMER_ID, KEY, request, () -> {
+            throw new IllegalArgumentException("Minimum amount");
+        }));
+
+        //verify
+        assertThat(response.getBody().getContent(), equalTo("payment1"));
+        verify(redisTemplate).delete(REDIS_KEY);
+    }
+}
@@ -0,0 +1,157 @@
+package com.microservice.payment.lock;
+
+import com.microservice.payment.exception.DuplicateException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for payment lock class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class PaymentLockTest {
+
+    private static final String ID1 = "018f0000-0000-7000-8000-000000000001";
+    private static final String ID2 = "018f0000-0000-7000-8000-000000000002";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private PaymentLock underTest;
+
+    @BeforeEach
+    public void setUp() {
+        underTest = new PaymentLock(redisTemplate);
+        ReflectionTestUtils.setField(underTest, "stripeCount", 1024);
+        ReflectionTestUtils.setField(underTest, "timeout", Duration.ofMillis(200));
+        ReflectionTestUtils.setField(underTest, "lease", Duration.ofSeconds(30));
+        underTest.createStripes();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * writes of the same payment run one after another, ids differing
+     * only in case share the lock, and other payments are not blocked
+     */
+    @Test
+    void shouldSerializeWritesOfSamePaymentOnly() throws Exception {
+        final CountDownLatch holding = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final Future<?> first = executor.submit(() -> underTest.execute(ID1, () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            holding.countDown();
+            await(release);
+            return running.decrementAndGet();
+        }));
+        holding.await(5, TimeUnit.SECONDS);
+
+        //execute actual unit test
+        final String other = underTest.execute(ID2, () -> "other");
+        final Future<?> second = executor.submit(() -> underTest.execute(ID1.toUpperCase(), () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            return running.decrementAndGet();
+        }));
+        Thread.sleep(50);
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        //verify
+        assertThat(other, equalTo("other"));
+        assertThat(maxRunning.get(), equalTo(1));
+    }
+
+    /**
+     * write waiting longer than lock timeout is rejected
+     * as conflict instead of piling up
+     */
+    @Test
+    void shouldRejectWriteAfterLockTimeout() throws Exception {
+        final CountDownLatch holding = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> underTest.execute(ID1, () -> {
+            holding.countDown();
+            await(release);
+            return null;
+        }));
+        holding.await(5, TimeUnit.SECONDS);
+
+        //execute actual unit test
+        final DuplicateException thrown = assertThrows(DuplicateException.class,
+                () -> underTest.execute(ID1, () -> "second"));
+        release.countDown();
+
+        //verify
+        assertThat(thrown.getMessage(), equalTo("Payment is being modified by another request: " + ID1));
+    }
+
+    /**
+     * distributed lock takes and releases a redis lease around the write,
+     * when redis is not reachable write still runs under local lock
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldHoldRedisLeaseWhenDistributed() {
+        //mock redis
+        ReflectionTestUtils.setField(underTest, "distributed", true);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq("payment:lock:" + ID1), anyString(), eq(Duration.ofSeconds(30))))
+                .thenReturn(true)
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        //execute actual unit test
+        final String leased = underTest.execute(ID1, () -> "leased");
+        final String local = underTest.execute(ID1, () -> "local");
+
+        //verify
+        assertThat(leased, equalTo("leased"));
+        assertThat(local, equalTo("local"));
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of("payment:lock:" + ID1)), anyString());
+    }
+
+    private static void await(final CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
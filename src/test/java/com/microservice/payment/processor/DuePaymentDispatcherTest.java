@@ -0,0 +1,149 @@
+package com.microservice.payment.processor;
+
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.repository.PaymentRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for due payment dispatcher class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class DuePaymentDispatcherTest {
+
+    @Mock
+    private PaymentRepository paymentRepository;
+    @Mock
+    private PaymentProcessor paymentProcessor;
+    @Spy
+    private Clock clock = Clock.systemUTC();
+
+    @InjectMocks
+    private DuePaymentDispatcher underTest;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(underTest, "enabled", true);
+        ReflectionTestUtils.setField(underTest, "horizon", Duration.ofHours(1));
+        ReflectionTestUtils.setField(underTest, "maxSlots", 100);
+        when(paymentRepository.findProcessingTimes(eq(PaymentStatus.PENDING.name()), any(Instant.class)))
+                .thenReturn(Collections.emptyList());
+        when(paymentProcessor.settleDuePayments()).thenReturn(Optional.of(report(0, 0)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        underTest.stop();
+    }
+
+    /**
+     * settlement is triggered once processing time arrives and not before
+     */
+    @Test
+    void shouldSettleWhenProcessingTimeArrives() {
+        //execute actual unit test
+        underTest.start();
+        underTest.schedule(Instant.now().plusMillis(300));
+
+        //verify
+        verify(paymentProcessor, after(100).never()).settleDuePayments();
+        verify(paymentProcessor, timeout(2000)).settleDuePayments();
+    }
+
+    /**
+     * payments sharing the same processing time are settled by one run
+     */
+    @Test
+    void shouldCoalescePaymentsWithSameProcessingTime() {
+        final Instant processingTime = Instant.now().plusMillis(100);
+
+        //execute actual unit test
+        underTest.schedule(processingTime);
+        underTest.schedule(processingTime);
+        underTest.schedule(processingTime);
+        underTest.start();
+
+        //verify
+        verify(paymentProcessor, after(500).times(1)).settleDuePayments();
+    }
+
+    /**
+     * pending processing times are loaded on start and settlement keeps
+     * running until a run claims nothing
+     */
+    @Test
+    void shouldLoadPendingPaymentsOnStart() {
+        //mock repository and processor
+        when(paymentRepository.findProcessingTimes(eq(PaymentStatus.PENDING.name()), any(Instant.class)))
+                .thenReturn(List.of(Instant.now().minus(Duration.ofHours(1))));
+        when(paymentProcessor.settleDuePayments())
+                .thenReturn(Optional.of(report(500, 0)))
+                .thenReturn(Optional.of(report(0, 0)));
+
+        //execute actual unit test
+        underTest.start();
+
+        //verify
+        verify(paymentProcessor, timeout(2000).times(2)).settleDuePayments();
+    }
+
+    /**
+     * processing times beyond horizon are left to periodic refresh
+     */
+    @Test
+    void shouldNotScheduleBeyondHorizon() {
+        //execute actual unit test
+        underTest.start();
+        underTest.schedule(Instant.now().plus(Duration.ofHours(2)));
+
+        //verify
+        verify(paymentProcessor, after(300).never()).settleDuePayments();
+    }
+
+    /**
+     * earliest scheduled retry is dispatched once its backoff elapsed
+     */
+    @Test
+    void shouldSettleWhenNextRetryIsDue() {
+        //mock repository and processor
+        when(paymentRepository.findNextAttemptTime(PaymentStatus.FAILED.name()))
+                .thenReturn(Optional.of(Instant.now().plusMillis(200)))
+                .thenReturn(Optional.empty());
+        when(paymentProcessor.settleDuePayments()).thenReturn(Optional.of(report(0, 1)));
+
+        //execute actual unit test
+        underTest.start();
+
+        //verify
+        verify(paymentProcessor, timeout(2000).times(1)).settleDuePayments();
+    }
+
+    private static SettlementReport report(final int processed, final int retried) {
+        return new SettlementReport(1, processed, 0, retried, 0, Duration.ofMillis(10), Duration.ZERO);
+    }
+}
@@ -0,0 +1,53 @@
+package com.microservice.payment.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+/**
+ * unit test cases for retry policy class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public class RetryPolicyTest {
+
+    private final RetryPolicy underTest = new RetryPolicy(4, Duration.ofSeconds(10), 2, Duration.ofSeconds(60));
+
+    /**
+     * backoff doubles per attempt, is jittered within upper half
+     * and never exceeds max interval
+     */
+    @Test
+    void shouldBackoffExponentiallyWithJitter() {
+        for (int run = 0; run < 100; run++) {
+            //execute actual unit test
+            final Duration first = underTest.backoff(1);
+            final Duration third = underTest.backoff(3);
+            final Duration tenth = underTest.backoff(10);
+
+            //verify
+            assertThat(first, greaterThanOrEqualTo(Duration.ofSeconds(5)));
+            assertThat(first, lessThanOrEqualTo(Duration.ofSeconds(10)));
+            assertThat(third, greaterThanOrEqualTo(Duration.ofSeconds(20)));
+            assertThat(third, lessThanOrEqualTo(Duration.ofSeconds(40)));
+            assertThat(tenth, greaterThanOrEqualTo(Duration.ofSeconds(30)));
+            assertThat(tenth, lessThanOrEqualTo(Duration.ofSeconds(60)));
+        }
+    }
+
+    /**
+     * attempts are exhausted once max attempts are reached
+     */
+    @Test
+    void shouldExhaustAfterMaxAttempts() {
+        //verify
+        assertThat(underTest.isExhausted(3), equalTo(false));
+        assertThat(underTest.isExhausted(4), equalTo(true));
+    }
+}
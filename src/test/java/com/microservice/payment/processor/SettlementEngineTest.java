@@ -0,0 +1,337 @@
+package com.microservice.payment.processor;
+
+import com.microservice.payment.cache.PaymentCacheEvictor;
+import com.microservice.payment.datasource.ReadYourWritesGuard;
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.entity.PaymentDeadLetter;
+import com.microservice.payment.event.PaymentOutbox;
+import com.microservice.payment.gateway.GatewayResponse;
+import com.microservice.payment.repository.PaymentDeadLetterRepository;
+import com.microservice.payment.repository.PaymentRepository;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for settlement engine class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class SettlementEngineTest {
+
+    private static final UUID ID1 = UUID.fromString("018f0000-0000-7000-8000-000000000001");
+    private static final UUID ID2 = UUID.fromString("018f0000-0000-7000-8000-000000000002");
+    private static final UUID ID3 = UUID.fromString("018f0000-0000-7000-8000-000000000003");
+
+    @Mock
+    private PaymentRepository paymentRepository;
+    @Mock
+    private PaymentDeadLetterRepository paymentDeadLetterRepository;
+    @Mock
+    private PaymentOutbox paymentOutbox;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private SettlementExecutor settlementExecutor;
+    @Mock
+    private CustomerPaymentStats customerPaymentStats;
+    @Mock
+    private PaymentCacheEvictor paymentCacheEvictor;
+    @Mock
+    private ReadYourWritesGuard readYourWritesGuard;
+    @Spy
+    private RetryPolicy retryPolicy = new RetryPolicy(3, Duration.ofSeconds(30), 2, Duration.ofHours(1));
+    @Spy
+    private Clock clock = Clock.systemUTC();
+
+    @InjectMocks
+    private SettlementEngine underTest;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(underTest, "chunkSize", 2);
+        ReflectionTestUtils.setField(underTest, "runBudget", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(underTest, "leaseDuration", Duration.ofSeconds(60));
+        ReflectionTestUtils.setField(underTest, "instanceId", "instance1");
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(paymentRepository.releasePayments(anyCollection(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+        when(paymentRepository.recordFailedAttempt(any(UUID.class), anyString(), anyString(), anyString(), any(), anyString()))
+                .thenReturn(1);
+        when(settlementExecutor.settle(anyList()))
+                .thenAnswer(invocation -> invocation.<List<Payment>>getArgument(0).stream()
+                        .map(payment -> new SettlementOutcome(payment, GatewayResponse.approved("reference"), null))
+                        .toList());
+    }
+
+    /**
+     * due payments are claimed, leased and settled chunk by chunk and
+     * the next chunk continues from the last keyset of previous chunk
+     */
+    @Test
+    void shouldSettlePaymentsInChunks() {
+        final Instant processingTime = Instant.now().minus(Duration.ofHours(1));
+        final Payment first = payment(ID1, processingTime, 320d);
+        final Payment second = payment(ID2, processingTime, 120d);
+        final Payment third = payment(ID3, processingTime, 95d);
+
+        //mock repository
+        when(paymentRepository.findDuePaymentChunk(eq(PaymentStatus.PENDING.name()), any(Instant.class), eq(Instant.EPOCH), eq(new UUID(0L, 0L)), eq(2)))
+                .thenReturn(List.of(first, second));
+        when(paymentRepository.findDuePaymentChunk(eq(PaymentStatus.PENDING.name()), any(Instant.class), eq(processingTime), eq(ID2), eq(2)))
+                .thenReturn(List.of(third));
+
+        //execute actual unit test
+        final SettlementReport report = underTest.run();
+
+        //verify
+        assertThat(report.chunks(), equalTo(2));
+        assertThat(report.processed(), equalTo(3));
+        assertThat(report.failed(), equalTo(0));
+        assertThat(report.lag(), greaterThan(Duration.ZERO));
+        verify(paymentRepository).claimPayments(List.of(ID1, ID2), PaymentStatus.PROCESSING.name(),
+                PaymentStatus.PENDING.name(), "instance1", 60L);
+        verify(paymentCacheEvictor).evictAfterCommit(List.of(ID1, ID2));
+        verify(customerPaymentStats).moved(List.of(first, second), PaymentStatus.PROCESSING.name());
+        verify(readYourWritesGuard, times(2)).recordWrite(List.of("customerId1", ID1.toString(), ID2.toString()));
+        verify(readYourWritesGuard, times(2)).recordWrite(List.of("customerId1", ID3.toString()));
+        verify(paymentRepository).releasePayments(List.of(ID1, ID2),
+                PaymentStatus.PROCESSED.name(), PaymentStatus.PROCESSING.name(), "instance1");
+        verify(paymentRepository).releasePayments(List.of(ID3),
+                PaymentStatus.PROCESSED.name(), PaymentStatus.PROCESSING.name(), "instance1");
+        verify(paymentOutbox).append(List.of(first, second));
+        verify(paymentOutbox).append(List.of(third));
+        assertThat(third.getStatus(), equalTo(PaymentStatus.PROCESSED.name()));
+        verify(paymentRepository).findRetryPaymentChunk(eq(PaymentStatus.FAILED.name()), any(Instant.class),
+                eq(Instant.EPOCH), eq(new UUID(0L, 0L)), eq(2));
+        verify(transactionTemplate, times(5)).execute(any());
+    }
+
+    /**
+     * payment that cannot be settled is moved to failed without
+     * failing other payments of the same chunk
+     */
+    @Test
+    void shouldFailOnlyInvalidPaymentOfChunk() {
+        final Instant processingTime = Instant.now().minus(Duration.ofHours(1));
+        final Payment valid = payment(ID1, processingTime, 320d);
+        final Payment invalid = payment(ID2, processingTime, 0.1d);
+
+        //mock repository
+        when(paymentRepository.findDuePaymentChunk(anyString(), any(Instant.class), any(Instant.class), any(UUID.class), anyInt()))
+                .thenReturn(List.of(valid, invalid))
+                .thenReturn(Collections.emptyList());
+
+        //execute actual unit test
+        final SettlementReport report = underTest.run();
+
+        //verify
+        assertThat(report.processed(), equalTo(1));
+        assertThat(report.failed(), equalTo(1));
+        verify(paymentRepository).releasePayments(List.of(ID1),
+                PaymentStatus.PROCESSED.name(), PaymentStatus.PROCESSING.name(), "instance1");
+        verify(paymentRepository).releasePayments(List.of(ID2),
+                PaymentStatus.FAILED.name(), PaymentStatus.PROCESSING.name(), "instance1");
+    }
+
+    /**
+     * payment whose lease was reclaimed by another instance is not
+     * reported as settled by this instance
+     */
+    @Test
+    void shouldNotCountPaymentsWithLostLease() {
+        final Instant processingTime = Instant.now().minus(Duration.ofHours(1));
+
+        //mock repository
+        when(paymentRepository.findDuePaymentChunk(anyString(), any(Instant.class), any(Instant.class), any(UUID.class), anyInt()))
+                .thenReturn(List.of(payment(ID1, processingTime, 320d)));
+        when(paymentRepository.releasePayments(anyCollection(), anyString(), anyString(), anyString()))
+                .thenReturn(0);
+
+        //execute actual unit test
+        final SettlementReport report = underTest.run();
+
+        //verify
+        assertThat(report.processed(), equalTo(0));
+        assertThat(report.failed(), equalTo(0));
+        verify(paymentOutbox).append(Collections.emptyList());
+        verify(customerPaymentStats).moved(Collections.emptyList(), PaymentStatus.PROCESSED.name());
+    }
+
+    /**
+     * payment declined by gateway is moved to failed while payment that
+     * could not reach the gateway is scheduled for retry with backoff
+     */
+    @Test
+    void shouldScheduleRetryWhenGatewayUnavailable() {
+        final Instant processingTime = Instant.now().minus(Duration.ofHours(1));
+        final Payment declined = payment(ID1, processingTime, 320d);
+        final Payment timedOut = payment(ID2, processingTime, 120d);
+        final ArgumentCaptor<Instant> nextAttemptTime = ArgumentCaptor.forClass(Instant.class);
+
+        //mock repository and gateway
+        when(paymentRepository.findDuePaymentChunk(anyString(), any(Instant.class), any(Instant.class), any(UUID.class), anyInt()))
+                .thenReturn(List.of(declined, timedOut))
+                .thenReturn(Collections.emptyList());
+        when(settlementExecutor.settle(List.of(declined, timedOut))).thenReturn(List.of(
+                new SettlementOutcome(declined, GatewayResponse.declined("limit"), null),
+                new SettlementOutcome(timedOut, null, new TimeoutException("timeout"))));
+
+        //execute actual unit test
+        final Instant startedAt = Instant.now();
+        final SettlementReport report = underTest.run();
+
+        //verify
+        assertThat(report.failed(), equalTo(1));
+        assertThat(report.retried(), equalTo(1));
+        verify(paymentRepository).releasePayments(List.of(ID1),
+                PaymentStatus.FAILED.name(), PaymentStatus.PROCESSING.name(), "instance1");
+        verify(paymentRepository).recordFailedAttempt(eq(ID2), eq(PaymentStatus.FAILED.name()),
+                eq(PaymentStatus.PROCESSING.name()), eq("instance1"), nextAttemptTime.capture(),
+                eq("TimeoutException: timeout"));
+        assertThat(nextAttemptTime.getValue(), greaterThanOrEqualTo(startedAt.plusSeconds(15)));
+        assertThat(nextAttemptTime.getValue(), lessThanOrEqualTo(Instant.now().plusSeconds(30)));
+        verify(paymentDeadLetterRepository, never()).save(any());
+        verify(customerPaymentStats).moved(List.of(declined), PaymentStatus.FAILED.name());
+        verify(customerPaymentStats).moved(List.of(timedOut), PaymentStatus.FAILED.name());
+        verify(paymentCacheEvictor).evictAfterCommit(List.of(ID2));
+        verify(readYourWritesGuard).recordWrite(List.of("customerId1", ID1.toString()));
+        verify(readYourWritesGuard).recordWrite(List.of("customerId1", ID2.toString()));
+    }
+
+    /**
+     * due retries are claimed from failed payments ordered by next attempt
+     * time and payment that exhausted its attempts is dead lettered
+     */
+    @Test
+    void shouldDeadLetterPaymentWithExhaustedAttempts() {
+        final Instant nextAttemptTime = Instant.now().minus(Duration.ofMinutes(1));
+        final Payment poison = payment(ID1, nextAttemptTime.minus(Duration.ofDays(1)), 320d);
+        poison.setStatus(PaymentStatus.FAILED.name());
+        poison.setAttemptCount(2);
+        poison.setNextAttemptTime(nextAttemptTime);
+        final ArgumentCaptor<PaymentDeadLetter> deadLetter = ArgumentCaptor.forClass(PaymentDeadLetter.class);
+
+        //mock repository and gateway
+        when(paymentRepository.findRetryPaymentChunk(eq(PaymentStatus.FAILED.name()), any(Instant.class),
+                eq(Instant.EPOCH), eq(new UUID(0L, 0L)), eq(2)))
+                .thenReturn(List.of(poison));
+        when(settlementExecutor.settle(List.of(poison))).thenReturn(List.of(
+                new SettlementOutcome(poison, null, new IllegalStateException("poison"))));
+
+        //execute actual unit test
+        final SettlementReport report = underTest.run();
+
+        //verify
+        assertThat(report.deadLettered(), equalTo(1));
+        assertThat(report.retried(), equalTo(0));
+        verify(paymentRepository).claimPayments(List.of(ID1), PaymentStatus.PROCESSING.name(),
+                PaymentStatus.FAILED.name(), "instance1", 60L);
+        verify(paymentRepository).recordFailedAttempt(ID1, PaymentStatus.FAILED.name(),
+                PaymentStatus.PROCESSING.name(), "instance1", null, "IllegalStateException: poison");
+        verify(paymentDeadLetterRepository).save(deadLetter.capture());
+        assertThat(deadLetter.getValue().getPaymentId(), equalTo(ID1));
+        assertThat(deadLetter.getValue().getAttemptCount(), equalTo(3));
+        verify(paymentOutbox).append(List.of(poison));
+    }
+
+    /**
+     * no payment is claimed while gateway circuit breaker is open
+     */
+    @Test
+    void shouldNotClaimPaymentsWhenGatewayUnavailable() {
+        //mock gateway
+        when(settlementExecutor.isGatewayUnavailable()).thenReturn(true);
+
+        //execute actual unit test
+        final SettlementReport report = underTest.run();
+
+        //verify
+        assertThat(report.claimed(), equalTo(0));
+        verify(paymentRepository, never()).findDuePaymentChunk(anyString(), any(Instant.class), any(Instant.class), any(UUID.class), anyInt());
+    }
+
+    /**
+     * expired leases are reclaimed in batches until no expired lease is
+     * left, retries go back to failed and their stats leave processing
+     */
+    @Test
+    void shouldReclaimExpiredLeasesInBatches() {
+        final Instant processingTime = Instant.now().minus(Duration.ofHours(1));
+        final Payment pending = payment(ID1, processingTime, 320d);
+        final Payment retry = payment(ID2, processingTime, 120d);
+        retry.setNextAttemptTime(processingTime);
+        final Payment other = payment(ID3, processingTime, 95d);
+        List.of(pending, retry, other).forEach(payment -> payment.setStatus(PaymentStatus.PROCESSING.name()));
+
+        //mock repository
+        when(paymentRepository.findExpiredLeaseChunk(PaymentStatus.PROCESSING.name(), 2))
+                .thenReturn(List.of(pending, retry))
+                .thenReturn(List.of(other));
+        when(paymentRepository.reclaimPayments(anyCollection(), anyString(), anyString()))
+                .thenAnswer(invocation -> invocation.<Collection<?>>getArgument(0).size());
+
+        //execute actual unit test
+        final int reclaimed = underTest.reclaimExpiredLeases();
+
+        //verify
+        assertThat(reclaimed, equalTo(3));
+        verify(paymentRepository).reclaimPayments(List.of(ID1), PaymentStatus.PENDING.name(),
+                PaymentStatus.PROCESSING.name());
+        verify(paymentRepository).reclaimPayments(List.of(ID2), PaymentStatus.FAILED.name(),
+                PaymentStatus.PROCESSING.name());
+        verify(customerPaymentStats).moved(List.of(pending), PaymentStatus.PENDING.name());
+        verify(customerPaymentStats).moved(List.of(retry), PaymentStatus.FAILED.name());
+        verify(customerPaymentStats).moved(List.of(other), PaymentStatus.PENDING.name());
+    }
+
+    private static Payment payment(final UUID id, final Instant processingTime, final double amount) {
+        return Payment.builder()
+                .id(id)
+                .customerId("customerId1")
+                .paymentMethodId("paymentMethod1")
+                .amount(amount)
+                .status(PaymentStatus.PENDING.name())
+                .processingTime(processingTime)
+                .version(0)
+                .build();
+    }
+}
@@ -0,0 +1,147 @@
+package com.microservice.payment.processor;
+
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.gateway.GatewayResponse;
+import com.microservice.payment.gateway.PaymentGateway;
+import com.microservice.payment.mapper.PaymentMapper;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for settlement executor class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public class SettlementExecutorTest {
+
+    private final PaymentGateway paymentGateway = mock(PaymentGateway.class);
+    private final PaymentMapper mapper = Mappers.getMapper(PaymentMapper.class);
+    private SettlementExecutor underTest;
+
+    @AfterEach
+    public void tearDown() {
+        underTest.shutdown();
+    }
+
+    /**
+     * slow gateway calls are executed in parallel instead of serially
+     */
+    @Test
+    void shouldSettlePaymentsInParallel() {
+        underTest = executor(10, Duration.ofSeconds(5));
+        //mock gateway
+        when(paymentGateway.settle(any(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(200);
+            return GatewayResponse.approved("reference");
+        });
+
+        //execute actual unit test
+        final long startedAt = System.nanoTime();
+        final List<SettlementOutcome> outcomes = underTest.settle(payments(10));
+        final long elapsed = Duration.ofNanos(System.nanoTime() - startedAt).toMillis();
+
+        //verify
+        assertThat(outcomes.size(), equalTo(10));
+        assertThat(outcomes.stream().allMatch(SettlementOutcome::approved), equalTo(true));
+        assertThat(elapsed, lessThan(1000L));
+    }
+
+    /**
+     * concurrent gateway calls never exceed configured concurrency
+     */
+    @Test
+    void shouldLimitConcurrentGatewayCalls() {
+        underTest = executor(2, Duration.ofSeconds(5));
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        //mock gateway
+        when(paymentGateway.settle(any(), anyString())).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            running.decrementAndGet();
+            return GatewayResponse.approved("reference");
+        });
+
+        //execute actual unit test
+        final List<SettlementOutcome> outcomes = underTest.settle(payments(6));
+
+        //verify
+        assertThat(outcomes.size(), equalTo(6));
+        assertThat(maxRunning.get(), lessThanOrEqualTo(2));
+    }
+
+    /**
+     * gateway call exceeding timeout is reported as transient failure,
+     * calls carry payment id as settlement reference so a later attempt
+     * is deduplicated by gateway
+     */
+    @Test
+    void shouldTimeoutSlowGatewayCall() {
+        underTest = executor(10, Duration.ofMillis(100));
+        //mock gateway
+        when(paymentGateway.settle(any(), anyString())).thenAnswer(invocation -> {
+            Thread.sleep(500);
+            return GatewayResponse.approved("reference");
+        });
+
+        //execute actual unit test
+        final List<SettlementOutcome> outcomes = underTest.settle(payments(2));
+
+        //verify
+        assertThat(outcomes.stream().map(SettlementOutcome::error).toList(),
+                everyItem(instanceOf(TimeoutException.class)));
+        verify(paymentGateway).settle(any(), eq(new UUID(0L, 0L).toString()));
+        verify(paymentGateway).settle(any(), eq(new UUID(0L, 1L).toString()));
+    }
+
+    private SettlementExecutor executor(final int concurrency, final Duration timeout) {
+        return new SettlementExecutor(paymentGateway,
+                mapper,
+                CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.ofDefaults(),
+                TimeLimiterRegistry.of(TimeLimiterConfig.custom().timeoutDuration(timeout).build()),
+                new MockEnvironment(),
+                concurrency);
+    }
+
+    private static List<Payment> payments(final int total) {
+        return IntStream.range(0, total)
+                .mapToObj(index -> Payment.builder()
+                        .id(new UUID(0L, index))
+                        .customerId("customerId1")
+                        .paymentMethodId("paymentMethod1")
+                        .amount(320d)
+                        .status(PaymentStatus.PROCESSING.name())
+                        .version(0)
+                        .build())
+                .toList();
+    }
+}
@@ -0,0 +1,136 @@
+package com.microservice.payment.ratelimit;
+
+import com.microservice.payment.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static com.microservice.payment.ratelimit.CustomerRateLimiter.Endpoint.ADD_PAYMENT;
+import static com.microservice.payment.ratelimit.CustomerRateLimiter.Endpoint.UPDATE_PAYMENT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for customer rate limiter class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class CustomerRateLimiterTest {
+
+    private static final String CUSTOMER1 = "customerId1";
+    private static final String CUSTOMER2 = "customerId2";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private CustomerRateLimiter underTest;
+
+    @BeforeEach
+    public void setUp() {
+        underTest = new CustomerRateLimiter(redisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(underTest, "enabled", true);
+        ReflectionTestUtils.setField(underTest, "addCapacity", 2L);
+        ReflectionTestUtils.setField(underTest, "addRefillPerSecond", 1d);
+        ReflectionTestUtils.setField(underTest, "updateCapacity", 1L);
+        ReflectionTestUtils.setField(underTest, "updateRefillPerSecond", 0.5d);
+        ReflectionTestUtils.setField(underTest, "topCustomers", 1);
+        ReflectionTestUtils.setField(underTest, "nanoTime", (LongSupplier) now::get);
+        underTest.configure();
+    }
+
+    /**
+     * customer is throttled once its burst is used until tokens refill,
+     * other customers and endpoints have their own buckets
+     */
+    @Test
+    void shouldThrottleCustomerAfterBurst() {
+        underTest.acquire(ADD_PAYMENT, CUSTOMER1);
+        underTest.acquire(ADD_PAYMENT, CUSTOMER1);
+
+        //execute actual unit test
+        final TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> underTest.acquire(ADD_PAYMENT, CUSTOMER1));
+        assertDoesNotThrow(() -> underTest.acquire(ADD_PAYMENT, CUSTOMER2));
+        assertDoesNotThrow(() -> underTest.acquire(UPDATE_PAYMENT, CUSTOMER1));
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertDoesNotThrow(() -> underTest.acquire(ADD_PAYMENT, CUSTOMER1));
+
+        //verify
+        assertThat(thrown.getRetryAfter(), equalTo(Duration.ofSeconds(1)));
+        assertThat(thrown.getMessage(), equalTo("Too many requests, retry after 1 seconds"));
+        assertThat(meterRegistry.get("payment.rate-limit.requests")
+                .tags("endpoint", "add-payment", "result", "throttled").counter().count(), equalTo(1d));
+    }
+
+    /**
+     * refilled buckets are evicted, bucket still refilling is kept,
+     * most throttled customer is published as gauge
+     */
+    @Test
+    void shouldEvictIdleBucketsAndPublishTopThrottled() {
+        underTest.acquire(ADD_PAYMENT, CUSTOMER1);
+        underTest.acquire(ADD_PAYMENT, CUSTOMER2);
+        underTest.acquire(ADD_PAYMENT, CUSTOMER2);
+        assertThrows(TooManyRequestsException.class, () -> underTest.acquire(ADD_PAYMENT, CUSTOMER2));
+        assertThrows(TooManyRequestsException.class, () -> underTest.acquire(ADD_PAYMENT, CUSTOMER2));
+        underTest.acquire(UPDATE_PAYMENT, CUSTOMER1);
+        assertThrows(TooManyRequestsException.class, () -> underTest.acquire(UPDATE_PAYMENT, CUSTOMER1));
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+
+        //execute actual unit test
+        underTest.evictIdleBuckets();
+
+        //verify
+        assertThat(underTest.bucketCount(), equalTo(2));
+        assertThat(meterRegistry.get("payment.rate-limit.top-throttled").gauges().size(), equalTo(1));
+        assertThat(meterRegistry.get("payment.rate-limit.top-throttled")
+                .tag("customer", CUSTOMER2).gauge().value(), equalTo(2d));
+    }
+
+    /**
+     * distributed limit is taken from redis script, when redis
+     * is not reachable local bucket limits the customer
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldUseRedisBucketWhenDistributed() {
+        //mock redis
+        ReflectionTestUtils.setField(underTest, "distributed", true);
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of("payment:rate-limit:add-payment:" + CUSTOMER1)),
+                anyString(), anyString()))
+                .thenReturn(0L, 1500L)
+                .thenThrow(new RedisConnectionFailureException("down"));
+
+        //execute actual unit test
+        underTest.acquire(ADD_PAYMENT, CUSTOMER1);
+        final TooManyRequestsException thrown = assertThrows(TooManyRequestsException.class,
+                () -> underTest.acquire(ADD_PAYMENT, CUSTOMER1));
+        underTest.acquire(ADD_PAYMENT, CUSTOMER1);
+
+        //verify
+        assertThat(CustomerRateLimiter.retryAfterSeconds(thrown.getRetryAfter()), equalTo(2L));
+        assertThat(underTest.bucketCount(), equalTo(1));
+    }
+}
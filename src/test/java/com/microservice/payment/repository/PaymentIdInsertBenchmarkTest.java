@@ -0,0 +1,102 @@
+package com.microservice.payment.repository;
+
+import com.microservice.payment.utils.UuidV7;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.nio.ByteBuffer;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * compares insert throughput of random UUID v4 string keys against time
+ * ordered UUID v7 binary keys on a real mysql database. Benchmark only
+ * runs with -Dbenchmark=true and when docker is available
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PaymentIdInsertBenchmarkTest {
+
+    private static final int TOTAL_ROWS = 500_000;
+    private static final int BATCH_SIZE = 1000;
+
+    @Container
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0.36")
+            // keep buffer pool smaller than the tables so page splits reach the disk
+            .withCommand("--innodb-buffer-pool-size=32M");
+
+    private static NamedParameterJdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    public static void setUp() {
+        jdbcTemplate = new NamedParameterJdbcTemplate(new DriverManagerDataSource(
+                MYSQL.getJdbcUrl() + "?rewriteBatchedStatements=true", MYSQL.getUsername(), MYSQL.getPassword()));
+        jdbcTemplate.getJdbcTemplate().execute("""
+                CREATE TABLE `payment_v4` (
+                    `id` VARCHAR(50) NOT NULL PRIMARY KEY,
+                    `customer_id` varchar(50) NOT NULL,
+                    `amount` DECIMAL(12, 2) NOT NULL,
+                    KEY `idx_payment_v4_customer_id` (`customer_id`)
+                )ENGINE=InnoDB""");
+        jdbcTemplate.getJdbcTemplate().execute("""
+                CREATE TABLE `payment_v7` (
+                    `id` BINARY(16) NOT NULL PRIMARY KEY,
+                    `customer_id` varchar(50) NOT NULL,
+                    `amount` DECIMAL(12, 2) NOT NULL,
+                    KEY `idx_payment_v7_customer_id` (`customer_id`)
+                )ENGINE=InnoDB""");
+    }
+
+    /**
+     * time ordered binary keys append to the clustered index and
+     * must insert faster than random string keys
+     */
+    @Test
+    void shouldInsertTimeOrderedBinaryIdsFaster() {
+        //execute benchmark
+        final double v4 = insert("payment_v4", index -> UUID.randomUUID().toString());
+        final double v7 = insert("payment_v7", index -> toBytes(UuidV7.randomUUID()));
+
+        //verify
+        log.info("Insert throughput, v4 varchar: {} rows/s, v7 binary: {} rows/s", (long) v4, (long) v7);
+        assertThat(v7, greaterThan(v4));
+    }
+
+    private static double insert(final String table, final Function<Integer, Object> id) {
+        final long startedAt = System.nanoTime();
+        for (int offset = 0; offset < TOTAL_ROWS; offset += BATCH_SIZE) {
+            final SqlParameterSource[] rows = IntStream.range(offset, offset + BATCH_SIZE)
+                    .mapToObj(index -> new MapSqlParameterSource()
+                            .addValue("id", id.apply(index))
+                            .addValue("customerId", "customerId" + index % 1000))
+                    .toArray(SqlParameterSource[]::new);
+            jdbcTemplate.batchUpdate("INSERT INTO `" + table + "` (id, customer_id, amount) "
+                    + "VALUES (:id, :customerId, 320)", rows);
+        }
+        return TOTAL_ROWS * 1_000_000_000d / (System.nanoTime() - startedAt);
+    }
+
+    private static byte[] toBytes(final UUID id) {
+        return ByteBuffer.allocate(16)
+                .putLong(id.getMostSignificantBits())
+                .putLong(id.getLeastSignificantBits())
+                .array();
+    }
+}
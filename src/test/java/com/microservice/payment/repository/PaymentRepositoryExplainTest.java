@@ -0,0 +1,157 @@
+package com.microservice.payment.repository;
+
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.utils.UuidV7;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+
+/**
+ * verifies execution plan of payment queries against real mysql
+ * database, test is skipped when docker is not available
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class PaymentRepositoryExplainTest {
+
+    @Container
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0.36");
+
+    private static NamedParameterJdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    public static void setUp() {
+        Flyway.configure()
+                .dataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword())
+                .locations("classpath:db/migration")
+                .load()
+                .migrate();
+        jdbcTemplate = new NamedParameterJdbcTemplate(
+                new DriverManagerDataSource(MYSQL.getJdbcUrl(), MYSQL.getUsername(), MYSQL.getPassword()));
+
+        // mostly settled payments with a small set of due and future pending payments
+        final Instant now = Instant.now();
+        insertPayments(5000, PaymentStatus.PROCESSED, now.minus(Duration.ofDays(30)));
+        insertPayments(50, PaymentStatus.PENDING, now.minus(Duration.ofHours(1)));
+        insertPayments(50, PaymentStatus.PENDING, now.plus(Duration.ofDays(1)));
+        // final failures without next attempt and a small set of scheduled retries
+        insertPayments(2000, PaymentStatus.FAILED, now.minus(Duration.ofDays(2)));
+        jdbcTemplate.update("UPDATE `payment` SET next_attempt_time = :nextAttemptTime WHERE status = :status LIMIT 50",
+                new MapSqlParameterSource()
+                        .addValue("nextAttemptTime", Timestamp.from(now.minus(Duration.ofMinutes(5))))
+                        .addValue("status", PaymentStatus.FAILED.name()));
+        jdbcTemplate.getJdbcTemplate().execute("ANALYZE TABLE `payment`");
+    }
+
+    /**
+     * due payment chunk query must be an index range scan on
+     * (status, processing_time) without sorting rows
+     */
+    @Test
+    void shouldScanDuePaymentsThroughStatusProcessingTimeIndex() throws NoSuchMethodException {
+        final String query = PaymentRepository.class
+                .getMethod("findDuePaymentChunk", String.class, Instant.class, Instant.class, UUID.class, int.class)
+                .getAnnotation(Query.class)
+                .value();
+        final SqlParameterSource params = new MapSqlParameterSource()
+                .addValue("status", PaymentStatus.PENDING.name())
+                .addValue("currentTime", Timestamp.from(Instant.now()))
+                .addValue("afterTime", Timestamp.from(Instant.EPOCH))
+                .addValue("afterId", new byte[16])
+                .addValue("limit", 500);
+
+        //execute explain
+        final Map<String, Object> plan = jdbcTemplate.queryForList("EXPLAIN " + query, params).get(0);
+
+        //verify
+        assertThat(plan.get("key"), equalTo("idx_payment_status_processing_time"));
+        assertThat(plan.get("type"), equalTo("range"));
+        assertThat(Objects.toString(plan.get("Extra")), not(containsString("filesort")));
+    }
+
+    /**
+     * due retry chunk query must be an index range scan on
+     * (status, next_attempt_time) so final failures are never scanned
+     */
+    @Test
+    void shouldScanDueRetriesThroughStatusNextAttemptTimeIndex() throws NoSuchMethodException {
+        final String query = PaymentRepository.class
+                .getMethod("findRetryPaymentChunk", String.class, Instant.class, Instant.class, UUID.class, int.class)
+                .getAnnotation(Query.class)
+                .value();
+        final SqlParameterSource params = new MapSqlParameterSource()
+                .addValue("status", PaymentStatus.FAILED.name())
+                .addValue("currentTime", Timestamp.from(Instant.now()))
+                .addValue("afterTime", Timestamp.from(Instant.EPOCH))
+                .addValue("afterId", new byte[16])
+                .addValue("limit", 500);
+
+        //execute explain
+        final Map<String, Object> plan = jdbcTemplate.queryForList("EXPLAIN " + query, params).get(0);
+
+        //verify
+        assertThat(plan.get("key"), equalTo("idx_payment_status_next_attempt_time"));
+        assertThat(plan.get("type"), equalTo("range"));
+        assertThat(Objects.toString(plan.get("Extra")), not(containsString("filesort")));
+    }
+
+    /**
+     * customer cursor page query must be an index range scan on
+     * (customer_id, date_created, id) without sorting rows
+     */
+    @Test
+    void shouldScanCustomerPaymentsThroughCustomerDateCreatedIndex() throws NoSuchMethodException {
+        final String query = PaymentRepository.class
+                .getMethod("findCustomerPaymentsBefore", String.class, Instant.class, UUID.class, int.class)
+                .getAnnotation(Query.class)
+                .value();
+        final SqlParameterSource params = new MapSqlParameterSource()
+                .addValue("customerId", "customerId1")
+                .addValue("beforeTime", Timestamp.from(Instant.now()))
+                .addValue("beforeId", new byte[16])
+                .addValue("limit", 21);
+
+        //execute explain
+        final Map<String, Object> plan = jdbcTemplate.queryForList("EXPLAIN " + query, params).get(0);
+
+        //verify
+        assertThat(plan.get("key"), equalTo("idx_payment_customer_date_created"));
+        assertThat(plan.get("type"), equalTo("range"));
+        assertThat(Objects.toString(plan.get("Extra")), not(containsString("filesort")));
+    }
+
+    private static void insertPayments(final int total, final PaymentStatus status, final Instant processingTime) {
+        final SqlParameterSource[] rows = IntStream.range(0, total)
+                .mapToObj(index -> new MapSqlParameterSource()
+                        .addValue("id", UuidV7.randomUUID().toString())
+                        .addValue("status", status.name())
+                        .addValue("processingTime", Timestamp.from(processingTime)))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO `payment` (id, customer_id, payment_method_id, amount, status, processing_time)
+                VALUES (UUID_TO_BIN(:id), 'customerId1', 'paymentMethod1', 320, :status, :processingTime)""", rows);
+    }
+}
@@ -0,0 +1,164 @@
+package com.microservice.payment.repository;
+
+import com.microservice.payment.dto.payment.PaymentDTO;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.mapper.PaymentMapper;
+import com.microservice.payment.utils.UuidV7;
+import jakarta.persistence.EntityManager;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.mapstruct.factory.Mappers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+
+/**
+ * compares allocation and latency of customer search through managed
+ * entities against read only view projection on 1k row pages. Benchmark
+ * only runs with -Dbenchmark=true and when docker is available
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@DataJpaTest(properties = "spring.jpa.show-sql=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers(disabledWithoutDocker = true)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PaymentSearchProjectionBenchmarkTest {
+
+    private static final String CUSTOMER_ID = "customerId1";
+    private static final int PAGE_SIZE = 1000;
+    private static final int WARMUP = 50;
+    private static final int ITERATIONS = 200;
+
+    @Container
+    private static final MySQLContainer<?> MYSQL = new MySQLContainer<>("mysql:8.0.36");
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final PaymentMapper mapper = Mappers.getMapper(PaymentMapper.class);
+    private final Pageable pageable = PageRequest.of(0, PAGE_SIZE);
+    private TransactionTemplate transactionTemplate;
+
+    @DynamicPropertySource
+    static void properties(final DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", MYSQL::getJdbcUrl);
+        registry.add("spring.datasource.username", MYSQL::getUsername);
+        registry.add("spring.datasource.password", MYSQL::getPassword);
+        registry.add("spring.flyway.url", MYSQL::getJdbcUrl);
+        registry.add("spring.flyway.user", MYSQL::getUsername);
+        registry.add("spring.flyway.password", MYSQL::getPassword);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setReadOnly(true);
+        final Long total = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM `payment`",
+                new MapSqlParameterSource(), Long.class);
+        if (total != null && total > 0) {
+            return;
+        }
+        final SqlParameterSource[] rows = IntStream.range(0, PAGE_SIZE)
+                .mapToObj(index -> new MapSqlParameterSource()
+                        .addValue("id", UuidV7.randomUUID().toString())
+                        .addValue("customerId", CUSTOMER_ID))
+                .toArray(SqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO `payment` (id, customer_id, payment_method_id, amount, status, processing_time)
+                VALUES (UUID_TO_BIN(:id), :customerId, 'paymentMethod1', 320, 'PROCESSED', NOW(3))""", rows);
+    }
+
+    /**
+     * view projection skips persistence context and must allocate
+     * less per page than loading managed entities
+     */
+    @Test
+    void shouldAllocateLessWithViewProjection() {
+        //execute benchmark
+        final Result entities = measure(() -> entityManager
+                .createQuery("SELECT p FROM Payment p WHERE p.customerId = :customerId", Payment.class)
+                .setParameter("customerId", CUSTOMER_ID)
+                .setMaxResults(PAGE_SIZE)
+                .getResultList()
+                .stream()
+                .map(mapper::toDTO)
+                .toList());
+        final Result views = measure(() -> paymentRepository
+                .findViewsByCustomerId(CUSTOMER_ID, pageable)
+                .stream()
+                .map(mapper::toDTO)
+                .toList());
+
+        //verify
+        log.info("Search page of {} payments, entities: {} bytes {} us, views: {} bytes {} us", PAGE_SIZE,
+                entities.bytes(), entities.micros(), views.bytes(), views.micros());
+        assertThat(views.bytes(), lessThan(entities.bytes()));
+    }
+
+    private Result measure(final Supplier<List<PaymentDTO>> search) {
+        for (int i = 0; i < WARMUP; i++) {
+            transactionTemplate.execute(status -> search.get());
+        }
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        final long startedAt = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            transactionTemplate.execute(status -> search.get());
+        }
+        return new Result((threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / ITERATIONS,
+                (System.nanoTime() - startedAt) / ITERATIONS / 1000);
+    }
+
+    /**
+     * average cost of searching a single page
+     *
+     * @param bytes  allocated bytes per page
+     * @param micros latency per page in microseconds
+     */
+    private record Result(long bytes, long micros) {
+    }
+
+    @Configuration
+    @EntityScan(basePackageClasses = Payment.class)
+    @EnableJpaRepositories(basePackageClasses = PaymentRepository.class)
+    static class JpaConfiguration {
+    }
+}
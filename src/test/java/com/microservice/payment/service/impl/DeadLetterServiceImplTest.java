@@ -0,0 +1,121 @@
+package com.microservice.payment.service.impl;
+
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.PaymentDeadLetter;
+import com.microservice.payment.mapper.PaymentMapper;
+import com.microservice.payment.processor.DuePaymentDispatcher;
+import com.microservice.payment.repository.PaymentDeadLetterRepository;
+import com.microservice.payment.repository.PaymentRepository;
+import com.microservice.payment.service.impl.impl.DeadLetterServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mapstruct.factory.Mappers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for dead letter service class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class DeadLetterServiceImplTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-10T10:15:30Z");
+    private static final UUID ID1 = UUID.fromString("018f0000-0000-7000-8000-000000000001");
+    private static final UUID ID2 = UUID.fromString("018f0000-0000-7000-8000-000000000002");
+
+    @Spy
+    private PaymentMapper mapper = Mappers.getMapper(PaymentMapper.class);
+    @Mock
+    private PaymentDeadLetterRepository paymentDeadLetterRepository;
+    @Mock
+    private PaymentRepository paymentRepository;
+    @Mock
+    private DuePaymentDispatcher duePaymentDispatcher;
+    @Spy
+    private Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+
+    @InjectMocks
+    private DeadLetterServiceImpl underTest;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(underTest, "replayLimit", 100);
+    }
+
+    /**
+     * oldest dead letters are replayed for a fresh set of attempts
+     * and dispatched once the replay is committed
+     */
+    @Test
+    void shouldReplayDeadLetters() {
+        final List<PaymentDeadLetter> deadLetters = List.of(
+                PaymentDeadLetter.builder().id(1L).paymentId(ID1).attemptCount(5).lastError("timeout").build(),
+                PaymentDeadLetter.builder().id(2L).paymentId(ID2).attemptCount(5).lastError("timeout").build());
+
+        //mock repository
+        when(paymentDeadLetterRepository.findAllByOrderByIdAsc(PageRequest.of(0, 10))).thenReturn(deadLetters);
+        when(paymentRepository.replayPayments(List.of(ID1, ID2), PaymentStatus.FAILED.name(), NOW))
+                .thenReturn(2);
+
+        //execute actual service unit test
+        final int replayed = underTest.replay(10);
+
+        //verify
+        assertThat(replayed, equalTo(2));
+        verify(paymentDeadLetterRepository).deleteAllInBatch(deadLetters);
+        verify(duePaymentDispatcher).scheduleAfterCommit(NOW);
+    }
+
+    /**
+     * nothing is replayed when there is no dead letter
+     */
+    @Test
+    void shouldNotReplayWithoutDeadLetters() {
+        //mock repository
+        when(paymentDeadLetterRepository.findAllByOrderByIdAsc(any())).thenReturn(Collections.emptyList());
+
+        //execute actual service unit test
+        final int replayed = underTest.replay(10);
+
+        //verify
+        assertThat(replayed, equalTo(0));
+        verify(paymentRepository, never()).replayPayments(anyCollection(), any(), any());
+    }
+
+    /**
+     * throw error when replay limit exceeds configured limit
+     */
+    @Test
+    void shouldNotReplayAboveLimit() {
+        //execute actual service unit test
+        final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> underTest.replay(101));
+
+        //verify
+        assertThat(thrown.getMessage(), equalTo("limit must be between 1 and 100"));
+    }
+}
@@ -0,0 +1,138 @@
+package com.microservice.payment.service.impl;
+
+import com.microservice.payment.cache.PaymentIdFilter;
+import com.microservice.payment.datasource.ReadYourWritesGuard;
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.event.PaymentOutbox;
+import com.microservice.payment.processor.DuePaymentDispatcher;
+import com.microservice.payment.ratelimit.CustomerRateLimiter;
+import com.microservice.payment.repository.PaymentHistoryRepository;
+import com.microservice.payment.repository.PaymentRepository;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import jakarta.validation.Validator;
+import lombok.extern.log4j.Log4j2;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.test.util.AopTestUtils;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * compares database reads and latency of payment lookups with and
+ * without the payment cache. Lookups are skewed towards hot payments
+ * and every database read costs a simulated round trip. Benchmark
+ * only runs with -Dbenchmark=true
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@Log4j2
+@SpringJUnitConfig(PaymentCachingTest.CachingConfiguration.class)
+@TestPropertySource(properties = {"payment.processing.day=1", "payment.modification=3"})
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+public class PaymentCacheBenchmarkTest {
+
+    private static final int PAYMENTS = 1000;
+    private static final int HOT_PAYMENTS = 100;
+    private static final int LOOKUPS = 5000;
+    private static final long ROUND_TRIP_NANOS = 500_000;
+
+    @MockBean
+    private PaymentRepository paymentRepository;
+    @MockBean
+    private PaymentHistoryRepository paymentHistoryRepository;
+    @MockBean
+    private DuePaymentDispatcher duePaymentDispatcher;
+    @MockBean
+    private PaymentOutbox paymentOutbox;
+    @MockBean
+    private Validator validator;
+    @MockBean
+    private ReadYourWritesGuard readYourWritesGuard;
+    @MockBean
+    private CustomerPaymentStats customerPaymentStats;
+    @MockBean
+    private PaymentIdFilter paymentIdFilter;
+    @MockBean
+    private CustomerRateLimiter customerRateLimiter;
+
+    @Autowired
+    private PaymentService cachedService;
+
+    private final AtomicInteger databaseReads = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        when(paymentRepository.findById(any(UUID.class))).thenAnswer(invocation -> {
+            databaseReads.incrementAndGet();
+            final long until = System.nanoTime() + ROUND_TRIP_NANOS;
+            while (System.nanoTime() < until) {
+                Thread.onSpinWait();
+            }
+            return Optional.of(Payment.builder()
+                    .id(invocation.getArgument(0))
+                    .customerId("customerId1")
+                    .paymentMethodId("paymentMethod1")
+                    .amount(320d)
+                    .status(PaymentStatus.PENDING.name())
+                    .processingTime(Instant.now())
+                    .build());
+        });
+    }
+
+    /**
+     * most lookups hit a small set of hot payments, cache must
+     * serve the majority of them without reading database
+     */
+    @Test
+    void shouldOffloadHotPaymentReadsFromDatabase() {
+        final PaymentService directService = AopTestUtils.getTargetObject(cachedService);
+
+        //execute benchmark
+        final Result direct = measure(directService::get);
+        final Result cached = measure(cachedService::get);
+
+        //verify
+        log.info("{} lookups, direct: {} database reads {} us, cached: {} database reads {} us", LOOKUPS,
+                direct.databaseReads(), direct.micros(), cached.databaseReads(), cached.micros());
+        assertThat(cached.databaseReads(), lessThan(direct.databaseReads() / 4));
+        assertThat(cached.micros(), lessThan(direct.micros()));
+    }
+
+    private Result measure(final Consumer<String> lookup) {
+        final SplittableRandom random = new SplittableRandom(42);
+        databaseReads.set(0);
+        final long startedAt = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            // 9 of 10 lookups go to hot payments
+            final int payment = random.nextInt(10) < 9 ? random.nextInt(HOT_PAYMENTS) : random.nextInt(PAYMENTS);
+            lookup.accept(new UUID(0x018f000000007000L, 0x8000000000000000L + payment).toString());
+        }
+        return new Result(databaseReads.get(), (System.nanoTime() - startedAt) / 1000);
+    }
+
+    /**
+     * cost of all lookups of a single run
+     *
+     * @param databaseReads payments read from database
+     * @param micros        total latency in microseconds
+     */
+    private record Result(int databaseReads, long micros) {
+    }
+}
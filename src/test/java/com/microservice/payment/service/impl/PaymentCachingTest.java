@@ -0,0 +1,325 @@
+package com.microservice.payment.service.impl;
+
+import com.microservice.payment.cache.PaymentCacheEvictor;
+import com.microservice.payment.cache.PaymentIdFilter;
+import com.microservice.payment.datasource.ReadYourWritesGuard;
+import com.microservice.payment.dto.payment.PaymentBatchItemDTO;
+import com.microservice.payment.dto.payment.PaymentDTO;
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.event.PaymentEvent;
+import com.microservice.payment.event.PaymentOutbox;
+import com.microservice.payment.mapper.PaymentMapper;
+import com.microservice.payment.processor.DuePaymentDispatcher;
+import com.microservice.payment.ratelimit.CustomerRateLimiter;
+import com.microservice.payment.repository.PaymentHistoryRepository;
+import com.microservice.payment.repository.PaymentRepository;
+import com.microservice.payment.service.impl.impl.PaymentServiceImpl;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.Ordered;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static com.microservice.payment.utils.Constants.CACHE_PAYMENT;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * cache coherence test cases of payment service, service is called
+ * through caching proxy with an in memory cache manager
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@SpringJUnitConfig
+@TestPropertySource(properties = {"payment.processing.day=1", "payment.modification=3"})
+public class PaymentCachingTest {
+
+    private static final String ID1 = "018f0000-0000-7000-8000-000000000001";
+
+    @MockBean
+    private PaymentRepository paymentRepository;
+    @MockBean
+    private PaymentHistoryRepository paymentHistoryRepository;
+    @MockBean
+    private DuePaymentDispatcher duePaymentDispatcher;
+    @MockBean
+    private PaymentOutbox paymentOutbox;
+    @MockBean
+    private Validator validator;
+    @MockBean
+    private ReadYourWritesGuard readYourWritesGuard;
+    @MockBean
+    private CustomerPaymentStats customerPaymentStats;
+    @MockBean
+    private PaymentIdFilter paymentIdFilter;
+    @MockBean
+    private CustomerRateLimiter customerRateLimiter;
+
+    @Autowired
+    private PaymentService underTest;
+    @Autowired
+    private PaymentCacheEvictor paymentCacheEvictor;
+    @Autowired
+    private CacheManager cacheManager;
+
+    @AfterEach
+    public void tearDown() {
+        cacheManager.getCache(CACHE_PAYMENT).clear();
+    }
+
+    /**
+     * repeated reads are served by cache, ids differing only
+     * in case share the same entry
+     */
+    @Test
+    void shouldReadPaymentThroughCache() {
+        //mock repository
+        when(paymentRepository.findById(UUID.fromString(ID1)))
+                .thenReturn(Optional.of(payment(PaymentStatus.PENDING, 320d)));
+
+        //execute actual unit test
+        underTest.get(ID1);
+        final PaymentDTO payment = underTest.get(ID1.toUpperCase());
+
+        //verify
+        assertThat(payment.getAmount(), equalTo(320d));
+        verify(paymentRepository, times(1)).findById(UUID.fromString(ID1));
+    }
+
+    /**
+     * updated payment replaces cached one
+     */
+    @Test
+    void shouldRefreshCachedPaymentOnUpdate() {
+        //mock repository
+        when(paymentRepository.findById(UUID.fromString(ID1)))
+                .thenReturn(Optional.of(payment(PaymentStatus.PENDING, 320d)))
+                .thenReturn(Optional.of(payment(PaymentStatus.PENDING, 950d)));
+        when(paymentRepository.updatePayment(eq(UUID.fromString(ID1)), anyString(), anyDouble(), anyString(), anyInt()))
+                .thenReturn(1);
+        underTest.get(ID1);
+
+        //execute actual unit test
+        underTest.update(ID1, new PaymentDTO(null, "customerId1", 950d, "paymentMethod1", null, null));
+
+        //verify
+        assertThat(underTest.get(ID1).getAmount(), equalTo(950d));
+        verify(paymentRepository, times(2)).findById(UUID.fromString(ID1));
+    }
+
+    /**
+     * cancelled payment replaces cached one
+     */
+    @Test
+    void shouldRefreshCachedPaymentOnCancel() {
+        //mock repository
+        when(paymentRepository.findById(UUID.fromString(ID1)))
+                .thenReturn(Optional.of(payment(PaymentStatus.PENDING, 320d)))
+                .thenReturn(Optional.of(payment(PaymentStatus.CANCELLED, 320d)));
+        when(paymentRepository.updateStatus(UUID.fromString(ID1), PaymentStatus.CANCELLED.name(),
+                PaymentStatus.PENDING.name())).thenReturn(1);
+        underTest.get(ID1);
+
+        //execute actual unit test
+        underTest.cancel(ID1);
+
+        //verify
+        assertThat(underTest.get(ID1).getStatus(), equalTo(PaymentStatus.CANCELLED.name()));
+        verify(paymentRepository, times(2)).findById(UUID.fromString(ID1));
+    }
+
+    /**
+     * committed change made outside of the service, e.g. settlement,
+     * evicts cached payment so next read sees the change
+     */
+    @Test
+    void shouldEvictCachedPaymentOnCommittedChange() {
+        //mock repository
+        when(paymentRepository.findById(UUID.fromString(ID1)))
+                .thenReturn(Optional.of(payment(PaymentStatus.PENDING, 320d)))
+                .thenReturn(Optional.of(payment(PaymentStatus.PROCESSED, 320d)));
+        underTest.get(ID1);
+
+        //execute actual unit test
+        paymentCacheEvictor.onPaymentEvent(new PaymentEvent(null, ID1, PaymentStatus.PROCESSED.name(), "{}",
+                Instant.now()));
+
+        //verify
+        assertThat(underTest.get(ID1).getStatus(), equalTo(PaymentStatus.PROCESSED.name()));
+    }
+
+    /**
+     * payment settled and evicted while replica still lags is reloaded
+     * from primary, as settlement recorded the write in the guard
+     */
+    @Test
+    void shouldReloadSettledPaymentFromPrimary() {
+        final Set<String> written = ConcurrentHashMap.newKeySet();
+        final AtomicBoolean primary = new AtomicBoolean();
+
+        //mock guard and lagging replica
+        doAnswer(invocation -> written.addAll(invocation.getArgument(0)))
+                .when(readYourWritesGuard).recordWrite(anyCollection());
+        doAnswer(invocation -> {
+            primary.set(written.contains(invocation.<String>getArgument(0)));
+            return null;
+        }).when(readYourWritesGuard).beforeRead(anyString());
+        when(paymentRepository.findById(UUID.fromString(ID1)))
+                .thenAnswer(invocation -> Optional.of(payment(primary.get()
+                        ? PaymentStatus.PROCESSED : PaymentStatus.PENDING, 320d)));
+        underTest.get(ID1);
+
+        //execute actual unit test
+        readYourWritesGuard.recordWrite(List.of("customerId1", ID1));
+        paymentCacheEvictor.evictAfterCommit(List.of(UUID.fromString(ID1)));
+
+        //verify
+        assertThat(underTest.get(ID1).getStatus(), equalTo(PaymentStatus.PROCESSED.name()));
+        verify(paymentRepository, times(2)).findById(UUID.fromString(ID1));
+    }
+
+    /**
+     * concurrent misses of the same payment read database once
+     */
+    @Test
+    void shouldLoadMissingPaymentOnceForConcurrentReads() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        //mock repository
+        when(paymentRepository.findById(UUID.fromString(ID1))).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await();
+            return Optional.of(payment(PaymentStatus.PENDING, 320d));
+        });
+
+        //execute actual unit test
+        final List<Future<PaymentDTO>> reads = IntStream.range(0, 8)
+                .mapToObj(index -> executor.submit(() -> underTest.get(ID1)))
+                .toList();
+        reading.await();
+        Thread.sleep(100);
+        release.countDown();
+
+        //verify
+        for (final Future<PaymentDTO> read : reads) {
+            assertThat(read.get().getAmount(), equalTo(320d));
+        }
+        verify(paymentRepository, times(1)).findById(UUID.fromString(ID1));
+        executor.shutdown();
+    }
+
+    /**
+     * lookup serves cached payments, loads the misses with a single
+     * query and caches them, results keep request order
+     */
+    @Test
+    void shouldLookupPaymentsThroughCache() {
+        //mock repository
+        final String id2 = "018f0000-0000-7000-8000-000000000002";
+        final Payment other = payment(PaymentStatus.PROCESSED, 950d);
+        other.setId(UUID.fromString(id2));
+        when(paymentRepository.findById(UUID.fromString(ID1)))
+                .thenReturn(Optional.of(payment(PaymentStatus.PENDING, 320d)));
+        when(paymentRepository.findAllById(List.of(UUID.fromString(id2)))).thenReturn(List.of(other));
+        underTest.get(ID1);
+
+        //execute actual unit test
+        final List<PaymentBatchItemDTO> results = underTest.lookup(List.of(id2, ID1, "id3", id2));
+        final List<PaymentBatchItemDTO> cached = underTest.lookup(List.of(id2));
+
+        //verify
+        assertThat(results.stream().map(PaymentBatchItemDTO::getStatusCode).toList(),
+                equalTo(List.of(200, 200, 400, 200)));
+        assertThat(results.get(0).getPayment().getAmount(), equalTo(950d));
+        assertThat(results.get(1).getPayment().getAmount(), equalTo(320d));
+        assertThat(cached.get(0).getPayment().getAmount(), equalTo(950d));
+        verify(paymentRepository, times(1)).findAllById(any());
+    }
+
+    /**
+     * cached payment is stored in redis as json and
+     * must be read back unchanged
+     */
+    @Test
+    void shouldReadBackCachedPaymentFromRedisJson() {
+        final GenericJackson2JsonRedisSerializer serializer = new GenericJackson2JsonRedisSerializer();
+        final PaymentDTO payment = new PaymentDTO(ID1, "customerId1", 320d, "paymentMethod1",
+                PaymentStatus.PENDING.name(), "2024-01-01T10:00:00");
+
+        //execute actual unit test and verify
+        assertThat(serializer.deserialize(serializer.serialize(payment)), equalTo(payment));
+    }
+
+    private static Payment payment(final PaymentStatus status, final double amount) {
+        return Payment.builder()
+                .id(UUID.fromString(ID1))
+                .customerId("customerId1")
+                .paymentMethodId("paymentMethod1")
+                .amount(amount)
+                .status(status.name())
+                .processingTime(Instant.now())
+                .version(0)
+                .build();
+    }
+
+    @Configuration
+    @EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+    @Import({PaymentServiceImpl.class, PaymentCacheEvictor.class})
+    static class CachingConfiguration {
+
+        @Bean
+        public CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager(CACHE_PAYMENT);
+        }
+
+        @Bean
+        public PaymentMapper paymentMapper() {
+            return Mappers.getMapper(PaymentMapper.class);
+        }
+
+        @Bean
+        public Clock clock() {
+            return Clock.systemUTC();
+        }
+    }
+}
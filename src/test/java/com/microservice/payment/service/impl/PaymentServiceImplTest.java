@@ -1,12 +1,26 @@
 package com.microservice.payment.service.impl;
 
+import com.microservice.payment.cache.PaymentIdFilter;
+import com.microservice.payment.datasource.ReadYourWritesGuard;
+import com.microservice.payment.dto.ResponsePager;
+import com.microservice.payment.dto.payment.PaymentBatchItemDTO;
+import com.microservice.payment.dto.payment.PaymentCursor;
 import com.microservice.payment.dto.payment.PaymentDTO;
 import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.dto.payment.PaymentView;
 import com.microservice.payment.entity.Payment;
+import com.microservice.payment.event.PaymentOutbox;
 import com.microservice.payment.exception.NotFoundException;
 import com.microservice.payment.mapper.PaymentMapper;
+import com.microservice.payment.processor.DuePaymentDispatcher;
+import com.microservice.payment.ratelimit.CustomerRateLimiter;
+import com.microservice.payment.repository.PaymentHistoryRepository;
 import com.microservice.payment.repository.PaymentRepository;
 import com.microservice.payment.service.impl.impl.PaymentServiceImpl;
+import com.microservice.payment.stats.CustomerPaymentStats;
+import com.microservice.payment.utils.UuidV7;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,26 +28,42 @@ import org.mapstruct.factory.Mappers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
+import org.mockito.invocation.InvocationOnMock;
+import org.springframework.cache.CacheManager;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
 
+import static com.microservice.payment.ratelimit.CustomerRateLimiter.Endpoint.ADD_PAYMENT;
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.mockito.AdditionalAnswers.returnsFirstArg;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 /**
@@ -45,11 +75,33 @@ import static org.mockito.Mockito.when;
 @ExtendWith(SpringExtension.class)
 public class PaymentServiceImplTest {
 
+    private static final String ID1 = "018f0000-0000-7000-8000-000000000001";
+
     @Spy
     @InjectMocks
     private PaymentMapper mapper = Mappers.getMapper(PaymentMapper.class);
     @Mock
     private PaymentRepository paymentRepository;
+    @Mock
+    private DuePaymentDispatcher duePaymentDispatcher;
+    @Mock
+    private PaymentOutbox paymentOutbox;
+    @Mock
+    private ReadYourWritesGuard readYourWritesGuard;
+    @Mock
+    private CustomerPaymentStats customerPaymentStats;
+    @Mock
+    private PaymentHistoryRepository paymentHistoryRepository;
+    @Mock
+    private PaymentIdFilter paymentIdFilter;
+    @Mock
+    private CustomerRateLimiter customerRateLimiter;
+    @Mock
+    private CacheManager cacheManager;
+    @Spy
+    private Clock clock = Clock.systemUTC();
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
 
     @InjectMocks
     private PaymentServiceImpl underTest;
@@ -58,6 +110,7 @@ public class PaymentServiceImplTest {
     public void setUp() {
         ReflectionTestUtils.setField(underTest, "processInDays", 2);
         ReflectionTestUtils.setField(underTest, "totalModification", 1);
+        ReflectionTestUtils.setField(underTest, "maxBatchSize", 3);
     }
 
 
@@ -72,7 +125,7 @@ public class PaymentServiceImplTest {
                 null);
 
         // mock repository
-        doAnswer(returnsFirstArg()).when(paymentRepository).save(any(Payment.class));
+        doAnswer(PaymentServiceImplTest::assignId).when(paymentRepository).save(any(Payment.class));
 
         //execute actual service unit test
         final PaymentDTO responseDTO = underTest.pay(requestPaymentDTO);
@@ -80,7 +133,92 @@ public class PaymentServiceImplTest {
         //verify
         assertThat(responseDTO.getStatus(), equalTo(PaymentStatus.PENDING.name()));
         assertThat(responseDTO.getProcessingTime(), greaterThan(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME)));
+        verify(paymentOutbox).append(any(Payment.class));
+        verify(customerPaymentStats).created(anyList());
+        verify(duePaymentDispatcher).scheduleAfterCommit(any(Instant.class));
+    }
+
+    /**
+     * valid payments of a batch are stored together and invalid
+     * ones are reported at their position
+     */
+    @Test
+    void shouldAddValidPaymentsOfBatch() {
+        // create payload
+        final List<PaymentDTO> requestPaymentDTOs = Arrays.asList(
+                new PaymentDTO(ID1, "customerId", 320d, "paymentId", null, null),
+                new PaymentDTO(null, "customerId", 0.2d, "paymentId", null, null),
+                new PaymentDTO(null, null, 10d, "paymentId", null, null));
 
+        // mock repository
+        doAnswer(invocation -> {
+            final List<Payment> payments = invocation.getArgument(0);
+            payments.forEach(payment -> payment.setId(UuidV7.randomUUID()));
+            return payments;
+        }).when(paymentRepository).saveAll(anyList());
+
+        //execute actual service unit test
+        final List<PaymentBatchItemDTO> results = underTest.payAll(requestPaymentDTOs);
+
+        //verify
+        assertThat(results, hasSize(3));
+        assertThat(results.get(0).getStatusCode(), equalTo(201));
+        assertThat(results.get(0).getPayment().getId(), notNullValue());
+        assertThat(results.get(0).getPayment().getStatus(), equalTo(PaymentStatus.PENDING.name()));
+        assertThat(results.get(1).getStatusCode(), equalTo(400));
+        assertThat(results.get(1).getError(), equalTo("Minimum amount 0.5 is required"));
+        assertThat(results.get(2).getIndex(), equalTo(2));
+        assertThat(results.get(2).getError(), equalTo("customerId is required"));
+        verify(paymentRepository).saveAll(anyList());
+        verify(paymentOutbox).append(anyList());
+        verify(duePaymentDispatcher).scheduleAfterCommit(any(Instant.class));
+    }
+
+    /**
+     * every payment of a batch is charged to rate limit of its
+     * customer, payments over the limit are not stored
+     */
+    @Test
+    void shouldRejectBatchPaymentsOverRateLimit() {
+        // create payload
+        final List<PaymentDTO> requestPaymentDTOs = Arrays.asList(
+                new PaymentDTO(null, "customerId1", 320d, "paymentId", null, null),
+                new PaymentDTO(null, "customerId2", 320d, "paymentId", null, null));
+
+        // mock rate limiter and repository
+        when(customerRateLimiter.tryAcquire(ADD_PAYMENT, "customerId2")).thenReturn(Optional.of(Duration.ofSeconds(2)));
+        when(paymentRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            final List<Payment> payments = invocation.getArgument(0);
+            payments.forEach(payment -> payment.setId(UuidV7.randomUUID()));
+            return payments;
+        });
+
+        //execute actual service unit test
+        final List<PaymentBatchItemDTO> results = underTest.payAll(requestPaymentDTOs);
+
+        //verify
+        assertThat(results.get(0).getStatusCode(), equalTo(201));
+        assertThat(results.get(1).getStatusCode(), equalTo(429));
+        assertThat(results.get(1).getError(), equalTo("Too many requests, retry after 2 seconds"));
+        verify(customerRateLimiter).tryAcquire(ADD_PAYMENT, "customerId1");
+    }
+
+    /**
+     * throw error when batch exceeds maximum size
+     */
+    @Test
+    void shouldNotAddOversizedBatch() {
+        // create payload
+        final List<PaymentDTO> requestPaymentDTOs = Collections.nCopies(4,
+                new PaymentDTO(null, "customerId", 320d, "paymentId", null, null));
+
+        //execute actual service unit test
+        final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> underTest.payAll(requestPaymentDTOs));
+
+        //verify
+        assertThat(thrown.getMessage(), equalTo("batch must contain between 1 and 3 payments"));
+        verify(paymentRepository, never()).saveAll(anyList());
     }
 
     /**
@@ -110,36 +248,39 @@ public class PaymentServiceImplTest {
     @Test
     void shouldUpdatePayment() {
         // create payload
-        final PaymentDTO requestPaymentDTO = new PaymentDTO("id1",
+        final PaymentDTO requestPaymentDTO = new PaymentDTO(ID1,
                 "customerId1",
                 950d,
                 "paymentMethod2",
                 null,
                 null);
 
-        final Payment oldPaymentEntity = Payment.builder()
-                .id("id1")
+        final Payment updatedPaymentEntity = Payment.builder()
+                .id(UUID.fromString(ID1))
                 .customerId("customerId1")
-                .paymentMethodId("paymentMethod1")
-                .amount(320d)
+                .paymentMethodId("paymentMethod2")
+                .amount(950d)
                 .status(PaymentStatus.PENDING.name())
-                .processingTime(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME))
-                .version(0)
+                .processingTime(Instant.now())
+                .version(1)
                 .build();
 
         //mock repository
-        when(paymentRepository.findById(requestPaymentDTO.getId())).thenReturn(Optional.of(oldPaymentEntity));
-        doAnswer(returnsFirstArg()).when(paymentRepository).save(any(Payment.class));
+        when(paymentRepository.updatePayment(UUID.fromString(ID1), "paymentMethod2", 950d,
+                PaymentStatus.PENDING.name(), 1)).thenReturn(1);
+        when(paymentRepository.findById(UUID.fromString(ID1))).thenReturn(Optional.of(updatedPaymentEntity));
 
         //execute actual service unit test
-        final PaymentDTO responseDTO = underTest.update("id1", requestPaymentDTO);
+        final PaymentDTO responseDTO = underTest.update(ID1, requestPaymentDTO);
 
         //verify
-        assertThat(responseDTO.getId(), equalTo("id1"));
+        assertThat(responseDTO.getId(), equalTo(ID1));
         assertThat(responseDTO.getCustomerId(), equalTo("customerId1"));
         assertThat(responseDTO.getPaymentMethodId(), equalTo("paymentMethod2"));
         assertThat(responseDTO.getStatus(), equalTo(PaymentStatus.PENDING.name()));
         assertThat(responseDTO.getAmount(), equalTo(950d));
+        verify(paymentOutbox).append(updatedPaymentEntity);
+        verify(paymentRepository, never()).save(any(Payment.class));
     }
 
 
@@ -157,11 +298,11 @@ public class PaymentServiceImplTest {
                 null);
 
         //mock
-        when(paymentRepository.findById(requestPaymentDTO.getId())).thenReturn(Optional.empty());
+        when(paymentRepository.findById(UUID.fromString(ID1))).thenReturn(Optional.empty());
 
         //execute actual service unit test
         final NotFoundException thrown = assertThrows(NotFoundException.class,
-                () -> underTest.update("id1", requestPaymentDTO));
+                () -> underTest.update(ID1, requestPaymentDTO));
         //verify
         assertThat(thrown.getMessage(), equalTo("Payment not found"));
     }
@@ -173,7 +314,7 @@ public class PaymentServiceImplTest {
     @Test
     void shouldFailUpdatePaymentAndThrowExceptionWithLowAmount() {
         // create payload
-        final PaymentDTO requestPaymentDTO = new PaymentDTO("id1",
+        final PaymentDTO requestPaymentDTO = new PaymentDTO(ID1,
                 "customerId",
                 0.2d,
                 "paymentId",
@@ -181,21 +322,21 @@ public class PaymentServiceImplTest {
                 null);
 
         final Payment oldPaymentEntity = Payment.builder()
-                .id("id1")
+                .id(UUID.fromString(ID1))
                 .customerId("customerId1")
                 .paymentMethodId("paymentMethod1")
                 .amount(320d)
                 .status(PaymentStatus.PENDING.name())
-                .processingTime(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME))
+                .processingTime(Instant.now())
                 .version(0)
                 .build();
 
         //mock repository
-        when(paymentRepository.findById(requestPaymentDTO.getId())).thenReturn(Optional.of(oldPaymentEntity));
+        when(paymentRepository.findById(UUID.fromString(ID1))).thenReturn(Optional.of(oldPaymentEntity));
 
         //execute actual service unit test
         final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
-                () -> underTest.update("id1", requestPaymentDTO));
+                () -> underTest.update(ID1, requestPaymentDTO));
         //verify
         assertThat(thrown.getMessage(), equalTo("Minimum amount 0.5 is required"));
     }
@@ -207,7 +348,7 @@ public class PaymentServiceImplTest {
     @Test
     void shouldFailUpdatePaymentAndThrowExceptionWithMaxModification() {
         // create payload
-        final PaymentDTO requestPaymentDTO = new PaymentDTO("id1",
+        final PaymentDTO requestPaymentDTO = new PaymentDTO(ID1,
                 "customerId",
                 95d,
                 "paymentId",
@@ -215,21 +356,21 @@ public class PaymentServiceImplTest {
                 null);
 
         final Payment oldPaymentEntity = Payment.builder()
-                .id("id1")
+                .id(UUID.fromString(ID1))
                 .customerId("customerId1")
                 .paymentMethodId("paymentMethod1")
                 .amount(320d)
                 .status(PaymentStatus.PENDING.name())
-                .processingTime(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME))
+                .processingTime(Instant.now())
                 .version(4)
                 .build();
 
         //mock repository
-        when(paymentRepository.findById(requestPaymentDTO.getId())).thenReturn(Optional.of(oldPaymentEntity));
+        when(paymentRepository.findById(UUID.fromString(ID1))).thenReturn(Optional.of(oldPaymentEntity));
 
         //execute actual service unit test
         final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
-                () -> underTest.update("id1", requestPaymentDTO));
+                () -> underTest.update(ID1, requestPaymentDTO));
         //verify
         assertThat(thrown.getMessage(), equalTo("Payment modification exhausted"));
     }
@@ -242,7 +383,7 @@ public class PaymentServiceImplTest {
     @Test
     void shouldFailUpdatePaymentAndThrowExceptionIfNotPending() {
         // create payload
-        final PaymentDTO requestPaymentDTO = new PaymentDTO("id1",
+        final PaymentDTO requestPaymentDTO = new PaymentDTO(ID1,
                 "customerId",
                 95d,
                 "paymentId",
@@ -250,21 +391,21 @@ public class PaymentServiceImplTest {
                 null);
 
         final Payment oldPaymentEntity = Payment.builder()
-                .id("id1")
+                .id(UUID.fromString(ID1))
                 .customerId("customerId1")
                 .paymentMethodId("paymentMethod1")
                 .amount(320d)
                 .status(PaymentStatus.PROCESSED.name())
-                .processingTime(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME))
+                .processingTime(Instant.now())
                 .version(0)
                 .build();
 
         //mock repository
-        when(paymentRepository.findById(requestPaymentDTO.getId())).thenReturn(Optional.ofNullable(oldPaymentEntity));
+        when(paymentRepository.findById(UUID.fromString(ID1))).thenReturn(Optional.ofNullable(oldPaymentEntity));
 
         //execute actual service unit test
         final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
-                () -> underTest.update("id1", requestPaymentDTO));
+                () -> underTest.update(ID1, requestPaymentDTO));
         //verify
         assertThat(thrown.getMessage(), equalTo("Payment cannot be updated"));
     }
@@ -276,29 +417,34 @@ public class PaymentServiceImplTest {
     @Test
     void shouldCancelPayment() {
         // create payload
-        final Payment oldPaymentEntity = Payment.builder()
-                .id("id1")
+        final Payment cancelledPaymentEntity = Payment.builder()
+                .id(UUID.fromString(ID1))
                 .customerId("customerId1")
                 .paymentMethodId("paymentMethod1")
                 .amount(320d)
-                .status(PaymentStatus.PENDING.name())
-                .processingTime(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME))
-                .version(0)
+                .status(PaymentStatus.CANCELLED.name())
+                .processingTime(Instant.now())
+                .version(1)
                 .build();
 
         //mock
-        when(paymentRepository.findById(oldPaymentEntity.getId())).thenReturn(Optional.of(oldPaymentEntity));
-        doAnswer(returnsFirstArg()).when(paymentRepository).save(any(Payment.class));
+        when(paymentRepository.updateStatus(cancelledPaymentEntity.getId(), PaymentStatus.CANCELLED.name(),
+                PaymentStatus.PENDING.name())).thenReturn(1);
+        when(paymentRepository.findById(cancelledPaymentEntity.getId())).thenReturn(Optional.of(cancelledPaymentEntity));
 
         //execute actual service unit test
-        final PaymentDTO responseDTO = underTest.cancel(oldPaymentEntity.getId());
+        final PaymentDTO responseDTO = underTest.cancel(cancelledPaymentEntity.getId().toString());
 
         //verify
-        assertThat(responseDTO.getId(), equalTo("id1"));
+        assertThat(responseDTO.getId(), equalTo(ID1));
         assertThat(responseDTO.getCustomerId(), equalTo("customerId1"));
         assertThat(responseDTO.getPaymentMethodId(), equalTo("paymentMethod1"));
         assertThat(responseDTO.getStatus(), equalTo(PaymentStatus.CANCELLED.name()));
         assertThat(responseDTO.getAmount(), equalTo(320d));
+        verify(paymentOutbox).append(cancelledPaymentEntity);
+        verify(customerPaymentStats).moved("customerId1", PaymentStatus.PENDING.name(),
+                PaymentStatus.CANCELLED.name());
+        verify(paymentRepository, never()).save(any(Payment.class));
     }
 
     /**
@@ -309,11 +455,11 @@ public class PaymentServiceImplTest {
     void shouldFailCancelPaymentAndThrowNotFoundException() {
 
         //mock
-        when(paymentRepository.findById("id1")).thenReturn(Optional.empty());
+        when(paymentRepository.findById(UUID.fromString(ID1))).thenReturn(Optional.empty());
 
         //execute actual service unit test
         final NotFoundException thrown = assertThrows(NotFoundException.class,
-                () -> underTest.cancel("id1"));
+                () -> underTest.cancel(ID1));
         //verify
         assertThat(thrown.getMessage(), equalTo("Payment not found"));
     }
@@ -327,12 +473,12 @@ public class PaymentServiceImplTest {
     void shouldFailCancelPaymentAndThrowIfPaymentNotPending() {
 
         final Payment oldPaymentEntity = Payment.builder()
-                .id("id1")
+                .id(UUID.fromString(ID1))
                 .customerId("customerId1")
                 .paymentMethodId("paymentMethod1")
                 .amount(320d)
                 .status(PaymentStatus.PROCESSED.name())
-                .processingTime(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME))
+                .processingTime(Instant.now())
                 .version(0)
                 .build();
 
@@ -341,7 +487,7 @@ public class PaymentServiceImplTest {
 
         //execute actual service unit test
         final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
-                () -> underTest.cancel(oldPaymentEntity.getId()));
+                () -> underTest.cancel(oldPaymentEntity.getId().toString()));
         //verify
         assertThat(thrown.getMessage(), equalTo("Payment cannot be updated"));
     }
@@ -355,12 +501,12 @@ public class PaymentServiceImplTest {
     void shouldGetPayment() {
 
         final Payment oldPaymentEntity = Payment.builder()
-                .id("id1")
+                .id(UUID.fromString(ID1))
                 .customerId("customerId1")
                 .paymentMethodId("paymentMethod1")
                 .amount(320d)
                 .status(PaymentStatus.PROCESSED.name())
-                .processingTime(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME))
+                .processingTime(Instant.now())
                 .version(0)
                 .build();
 
@@ -368,10 +514,10 @@ public class PaymentServiceImplTest {
         when(paymentRepository.findById(oldPaymentEntity.getId())).thenReturn(Optional.of(oldPaymentEntity));
 
         //execute actual service unit test
-        final PaymentDTO responseDTO = underTest.get(oldPaymentEntity.getId());
+        final PaymentDTO responseDTO = underTest.get(oldPaymentEntity.getId().toString());
 
         //verify
-        assertThat(responseDTO.getId(), equalTo("id1"));
+        assertThat(responseDTO.getId(), equalTo(ID1));
         assertThat(responseDTO.getCustomerId(), equalTo("customerId1"));
         assertThat(responseDTO.getPaymentMethodId(), equalTo("paymentMethod1"));
         assertThat(responseDTO.getStatus(), equalTo(PaymentStatus.PROCESSED.name()));
@@ -379,6 +525,40 @@ public class PaymentServiceImplTest {
     }
 
 
+    /**
+     * payment moved to history by archiver is still fetched
+     * by id and cannot be cancelled anymore
+     */
+    @Test
+    void shouldGetArchivedPayment() {
+
+        final Payment archivedPayment = Payment.builder()
+                .id(UUID.fromString(ID1))
+                .customerId("customerId1")
+                .paymentMethodId("paymentMethod1")
+                .amount(320d)
+                .status(PaymentStatus.PROCESSED.name())
+                .processingTime(Instant.now())
+                .version(0)
+                .build();
+
+        //mock
+        when(paymentRepository.findById(archivedPayment.getId())).thenReturn(Optional.empty());
+        when(paymentHistoryRepository.findById(archivedPayment.getId())).thenReturn(Optional.of(archivedPayment));
+
+        //execute actual service unit test
+        final PaymentDTO responseDTO = underTest.get(ID1);
+        final IllegalArgumentException thrown = assertThrows(IllegalArgumentException.class,
+                () -> underTest.cancel(ID1));
+
+        //verify
+        assertThat(responseDTO.getId(), equalTo(ID1));
+        assertThat(responseDTO.getStatus(), equalTo(PaymentStatus.PROCESSED.name()));
+        assertThat(thrown.getMessage(), equalTo("Payment cannot be updated"));
+        verify(paymentIdFilter, never()).notFound(any());
+    }
+
+
     /**
      * When fetching payment by ID, the system should return
      * empty and throws a "not found" exception
@@ -387,55 +567,237 @@ public class PaymentServiceImplTest {
     void shouldFailGetPaymentAndThrowNotFoundException() {
 
         //mock
-        when(paymentRepository.findById("id1")).thenReturn(Optional.empty());
+        when(paymentRepository.findById(UUID.fromString(ID1))).thenReturn(Optional.empty());
 
         //execute actual service unit test
         final NotFoundException thrown = assertThrows(NotFoundException.class,
-                () -> underTest.get("id1"));
+                () -> underTest.get(ID1));
         //verify
         assertThat(thrown.getMessage(), equalTo("Payment not found"));
     }
 
     /**
-     * When fetching payment by customerId, the system should return
-     * paginated properties with payments list
+     * payment id known to be absent by id filter is
+     * reported as not found without querying database
      */
     @Test
-    void shouldGetPaymentByCustomerId() {
+    void shouldRejectUnknownPaymentIdWithoutQuery() {
 
-        final Payment oldPaymentEntity = Payment.builder()
-                .id("id1")
-                .customerId("customerId1")
-                .paymentMethodId("paymentMethod1")
+        //mock
+        when(paymentIdFilter.isAbsent(UUID.fromString(ID1))).thenReturn(true);
+
+        //execute actual service unit test
+        final NotFoundException thrown = assertThrows(NotFoundException.class,
+                () -> underTest.get(ID1));
+        assertThrows(NotFoundException.class, () -> underTest.cancel(ID1));
+        //verify
+        assertThat(thrown.getMessage(), equalTo("Payment not found"));
+        verifyNoInteractions(paymentRepository);
+    }
+
+    /**
+     * lookup reports every id in request order, unknown ids
+     * are not found and invalid ones are rejected
+     */
+    @Test
+    void shouldLookupPaymentsInRequestOrder() {
+        final String id2 = "018f0000-0000-7000-8000-000000000002";
+        final String id3 = "018f0000-0000-7000-8000-000000000003";
+        final Payment payment = Payment.builder()
+                .id(UUID.fromString(ID1))
+                .customerId("customerId")
                 .amount(320d)
-                .status(PaymentStatus.PROCESSED.name())
-                .processingTime(LocalDateTime.now().format(ISO_LOCAL_DATE_TIME))
-                .version(0)
+                .status(PaymentStatus.PENDING.name())
                 .build();
-        final Page<Payment> pagePayments = new PageImpl<>(Collections.singletonList(oldPaymentEntity));
 
+        //mock
+        ReflectionTestUtils.setField(underTest, "maxBatchSize", 4);
+        when(paymentIdFilter.isAbsent(UUID.fromString(id3))).thenReturn(true);
+        when(paymentRepository.findAllById(List.of(UUID.fromString(id2), UUID.fromString(ID1))))
+                .thenReturn(List.of(payment));
+
+        //execute actual service unit test
+        final List<PaymentBatchItemDTO> results = underTest.lookup(List.of(id2, "id", ID1, id3));
+
+        //verify
+        assertThat(results.stream().map(PaymentBatchItemDTO::getStatusCode).toList(),
+                equalTo(List.of(404, 400, 200, 404)));
+        assertThat(results.get(2).getPayment().getId(), equalTo(ID1));
+        verify(paymentIdFilter).notFound(UUID.fromString(id2));
+        verify(readYourWritesGuard).beforeRead(List.of(id2, ID1));
+        verify(paymentHistoryRepository).findAllById(List.of(UUID.fromString(id2)));
+    }
+
+    /**
+     * reject lookup without ids
+     */
+    @Test
+    void shouldNotLookupEmptyIds() {
+        //execute actual service unit test
+        assertThrows(IllegalArgumentException.class, () -> underTest.lookup(List.of()));
+    }
+
+    /**
+     * throw error when payment id is not a valid UUID
+     */
+    @Test
+    void shouldNotGetPaymentWithInvalidId() {
+        //execute actual service unit test
+        assertThrows(IllegalArgumentException.class, () -> underTest.get("id1"));
+
+        //verify
+        verify(paymentRepository, never()).findById(any());
+    }
+
+    /**
+     * When fetching payment by customerId, the system should return
+     * paginated properties with payments list
+     */
+    @Test
+    void shouldGetPaymentByCustomerId() {
+
+        final PaymentView paymentView = new PaymentView(UUID.fromString(ID1),
+                "customerId1",
+                320d,
+                "paymentMethod1",
+                PaymentStatus.PROCESSED.name(),
+                Instant.now(),
+                Instant.now());
         final Pageable pageable = PageRequest.of(0, 5);
 
         //mock
         when(paymentRepository
-                .findAllByCustomerId(eq(oldPaymentEntity.getCustomerId()), eq(pageable)))
-                .thenReturn(pagePayments);
+                .findViewsByCustomerId(eq(paymentView.customerId()), eq(pageable)))
+                .thenReturn(Collections.singletonList(paymentView));
+        when(customerPaymentStats.total(eq(paymentView.customerId()), eq(false))).thenReturn(12L);
 
         //execute actual service unit test
         final Page<PaymentDTO> responsePageDTO = underTest
                 .getAllPayments(
                         pageable,
-                        oldPaymentEntity.getCustomerId()
+                        paymentView.customerId()
                 );
 
         final PaymentDTO paymentDTO = responsePageDTO.getContent().get(0);
         //verify
-        assertThat(paymentDTO.getId(), equalTo("id1"));
+        assertThat(paymentDTO.getId(), equalTo(ID1));
         assertThat(paymentDTO.getCustomerId(), equalTo("customerId1"));
         assertThat(paymentDTO.getPaymentMethodId(), equalTo("paymentMethod1"));
         assertThat(paymentDTO.getStatus(), equalTo(PaymentStatus.PROCESSED.name()));
         assertThat(paymentDTO.getAmount(), equalTo(320d));
+        assertThat(responsePageDTO.getTotalElements(), equalTo(12L));
+        assertThat(responsePageDTO.getTotalPages(), equalTo(3));
 
     }
 
+    /**
+     * When fetching first cursor page and more payments exist, the
+     * system should return cursor of the last returned payment
+     * without counting customer payments
+     */
+    @Test
+    void shouldGetFirstCursorPage() {
+        final Instant dateCreated = Instant.parse("2024-01-01T00:00:00.123Z");
+        final List<Payment> payments = List.of(
+                customerPayment(UUID.fromString(ID1), dateCreated),
+                customerPayment(UuidV7.randomUUID(), dateCreated.minusSeconds(1)),
+                customerPayment(UuidV7.randomUUID(), dateCreated.minusSeconds(2)));
+
+        //mock
+        when(paymentRepository.findCustomerPayments(eq("customerId1"), eq(3))).thenReturn(payments);
+
+        //execute actual service unit test
+        final ResponsePager<PaymentDTO> page = underTest.getPayments("customerId1", "", 2, false, false);
+
+        //verify
+        assertThat(page.content(), hasSize(2));
+        assertThat(page.totalRecords(), nullValue());
+        assertThat(PaymentCursor.decode(page.nextCursor()),
+                equalTo(new PaymentCursor(dateCreated.minusSeconds(1), payments.get(1).getId())));
+        verify(readYourWritesGuard).beforeRead(eq("customerId1"));
+        verify(customerPaymentStats, never()).total(anyString(), anyBoolean());
+    }
+
+    /**
+     * When fetching cursor page with cursor of the previous page, the
+     * system should continue after the cursor position and return no
+     * cursor on the last page
+     */
+    @Test
+    void shouldGetNextCursorPage() {
+        final PaymentCursor cursor = new PaymentCursor(Instant.parse("2024-01-01T00:00:00.123Z"), UUID.fromString(ID1));
+        final Payment payment = customerPayment(UuidV7.randomUUID(), cursor.dateCreated().minusSeconds(1));
+
+        //mock
+        when(paymentRepository.findCustomerPaymentsBefore(eq("customerId1"), eq(cursor.dateCreated()),
+                eq(cursor.id()), eq(3))).thenReturn(List.of(payment));
+        when(customerPaymentStats.total(eq("customerId1"), eq(false))).thenReturn(3L);
+
+        //execute actual service unit test
+        final ResponsePager<PaymentDTO> page = underTest.getPayments("customerId1", cursor.encode(), 2, true, false);
+
+        //verify
+        assertThat(page.content(), hasSize(1));
+        assertThat(page.content().get(0).getId(), equalTo(payment.getId().toString()));
+        assertThat(page.totalRecords(), equalTo(3L));
+        assertThat(page.nextCursor(), nullValue());
+    }
+
+    /**
+     * When fetching cursor page with tampered cursor, the system
+     * should throw illegal argument exception
+     */
+    @Test
+    void shouldRejectInvalidCursor() {
+        //verify
+        assertThrows(IllegalArgumentException.class,
+                () -> underTest.getPayments("customerId1", "not-a-cursor", 2, false, false));
+        verify(paymentRepository, never()).findCustomerPaymentsBefore(anyString(), any(), any(), eq(3));
+    }
+
+    /**
+     * When fetching cursor page including history, the system should
+     * page payment and history tables together and count archived
+     * payments in total
+     */
+    @Test
+    void shouldGetCursorPageIncludingHistory() {
+        final Instant dateCreated = Instant.parse("2023-01-01T00:00:00.123Z");
+        final PaymentView archived = new PaymentView(UUID.fromString(ID1), "customerId1", 320d, "paymentMethod1",
+                PaymentStatus.PROCESSED.name(), dateCreated, dateCreated);
+
+        //mock
+        when(paymentHistoryRepository.findCustomerPayments(eq("customerId1"), eq(null), eq(null), eq(2)))
+                .thenReturn(List.of(archived, archived));
+        when(customerPaymentStats.total(eq("customerId1"), eq(true))).thenReturn(5L);
+
+        //execute actual service unit test
+        final ResponsePager<PaymentDTO> page = underTest.getPayments("customerId1", null, 1, true, true);
+
+        //verify
+        assertThat(page.content(), hasSize(1));
+        assertThat(page.content().get(0).getStatus(), equalTo(PaymentStatus.PROCESSED.name()));
+        assertThat(page.totalRecords(), equalTo(5L));
+        assertThat(PaymentCursor.decode(page.nextCursor()), equalTo(new PaymentCursor(dateCreated, archived.id())));
+        verify(paymentRepository, never()).findCustomerPayments(anyString(), any(Integer.class));
+    }
+
+    private static Payment customerPayment(final UUID id, final Instant dateCreated) {
+        final Payment payment = Payment.builder()
+                .id(id)
+                .customerId("customerId1")
+                .paymentMethodId("paymentMethod1")
+                .amount(320d)
+                .status(PaymentStatus.PENDING.name())
+                .processingTime(dateCreated)
+                .build();
+        payment.setDateCreated(dateCreated);
+        return payment;
+    }
+
+    private static Payment assignId(final InvocationOnMock invocation) {
+        final Payment payment = invocation.getArgument(0);
+        payment.setId(UuidV7.randomUUID());
+        return payment;
+    }
 }
@@ -0,0 +1,84 @@
+package com.microservice.payment.stats;
+
+import com.microservice.payment.repository.CustomerPaymentStatsRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * unit test cases for customer payment stats reconciler class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class CustomerPaymentStatsReconcilerTest {
+
+    @Mock
+    private CustomerPaymentStatsRepository customerPaymentStatsRepository;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @InjectMocks
+    private CustomerPaymentStatsReconciler underTest;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(underTest, "chunkSize", 2);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    /**
+     * customers are reconciled chunk by chunk and the next chunk
+     * continues after the last customer of previous chunk
+     */
+    @Test
+    void shouldReconcileCustomersInChunks() {
+        //mock repository
+        when(customerPaymentStatsRepository.findCustomerIds("", 2)).thenReturn(List.of("customerId1", "customerId2"));
+        when(customerPaymentStatsRepository.findCustomerIds("customerId2", 2)).thenReturn(List.of("customerId3"));
+
+        //execute actual unit test
+        final int reconciled = underTest.reconcile();
+
+        //verify
+        assertThat(reconciled, equalTo(3));
+        verify(customerPaymentStatsRepository).reconcile("customerId1", "customerId2");
+        verify(customerPaymentStatsRepository).reconcile("customerId3", "customerId3");
+    }
+
+    /**
+     * nothing is reconciled when there are no payments
+     */
+    @Test
+    void shouldNotReconcileWithoutPayments() {
+        //mock repository
+        when(customerPaymentStatsRepository.findCustomerIds("", 2)).thenReturn(Collections.emptyList());
+
+        //execute actual unit test
+        final int reconciled = underTest.reconcile();
+
+        //verify
+        assertThat(reconciled, equalTo(0));
+    }
+}
@@ -0,0 +1,88 @@
+package com.microservice.payment.stats;
+
+import com.microservice.payment.dto.payment.PaymentStatus;
+import com.microservice.payment.entity.Payment;
+import com.microservice.payment.repository.CustomerPaymentStatsRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * unit test cases for customer payment stats class
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class CustomerPaymentStatsTest {
+
+    @Mock
+    private CustomerPaymentStatsRepository customerPaymentStatsRepository;
+
+    @InjectMocks
+    private CustomerPaymentStats underTest;
+
+    /**
+     * created payments are counted per customer and status in a
+     * single batch written in lock order
+     */
+    @Test
+    void shouldCountCreatedPaymentsInLockOrder() {
+        //execute actual unit test
+        underTest.created(List.of(
+                payment("customerId2", PaymentStatus.PENDING),
+                payment("customerId1", PaymentStatus.PENDING),
+                payment("customerId2", PaymentStatus.PENDING)));
+
+        //verify
+        verify(customerPaymentStatsRepository).addAll(List.of(
+                new CustomerPaymentStat("customerId1", PaymentStatus.PENDING.name(), 1),
+                new CustomerPaymentStat("customerId2", PaymentStatus.PENDING.name(), 2)));
+    }
+
+    /**
+     * moved payments leave their previous status and payments
+     * that stay in the same status do not change totals
+     */
+    @Test
+    void shouldMovePaymentsToNewStatus() {
+        //execute actual unit test
+        underTest.moved(List.of(
+                payment("customerId1", PaymentStatus.PENDING),
+                payment("customerId1", PaymentStatus.FAILED)), PaymentStatus.FAILED.name());
+
+        //verify
+        verify(customerPaymentStatsRepository).addAll(List.of(
+                new CustomerPaymentStat("customerId1", PaymentStatus.FAILED.name(), 1),
+                new CustomerPaymentStat("customerId1", PaymentStatus.PENDING.name(), -1)));
+    }
+
+    /**
+     * nothing is written when no total changed
+     */
+    @Test
+    void shouldNotWriteWithoutChanges() {
+        //execute actual unit test
+        underTest.moved(List.of(payment("customerId1", PaymentStatus.FAILED)), PaymentStatus.FAILED.name());
+
+        //verify
+        verify(customerPaymentStatsRepository, never()).addAll(anyList());
+    }
+
+    private static Payment payment(final String customerId, final PaymentStatus status) {
+        return Payment.builder()
+                .customerId(customerId)
+                .paymentMethodId("paymentMethod1")
+                .amount(320d)
+                .status(status.name())
+                .build();
+    }
+}
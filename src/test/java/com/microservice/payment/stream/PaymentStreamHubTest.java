@@ -0,0 +1,228 @@
+package com.microservice.payment.stream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microservice.payment.controller.PaymentController;
+import com.microservice.payment.dto.payment.PaymentDTO;
+import com.microservice.payment.event.PaymentEvent;
+import com.microservice.payment.exception.NotFoundException;
+import com.microservice.payment.idempotency.IdempotencyStore;
+import com.microservice.payment.lock.PaymentLock;
+import com.microservice.payment.ratelimit.CustomerRateLimiter;
+import com.microservice.payment.service.impl.PaymentService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * unit test cases for payment stream hub and its server sent event apis
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+@ExtendWith(SpringExtension.class)
+public class PaymentStreamHubTest {
+
+    private static final String CHANNEL = "payment-status";
+    private static final String ID1 = "018f0000-0000-7000-8000-00000000000a";
+    private static final String ID2 = "018f0000-0000-7000-8000-00000000000b";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+    @Mock
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper();
+    @Mock
+    private PaymentService paymentService;
+    @Mock
+    private IdempotencyStore idempotencyStore;
+    @Mock
+    private PaymentLock paymentLock;
+    @Mock
+    private CustomerRateLimiter customerRateLimiter;
+
+    @InjectMocks
+    private PaymentStreamHub underTest;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    public void setUp() {
+        ReflectionTestUtils.setField(underTest, "channel", CHANNEL);
+        ReflectionTestUtils.setField(underTest, "timeout", Duration.ofMinutes(1));
+        mockMvc = MockMvcBuilders.standaloneSetup(new PaymentController(paymentService, underTest, idempotencyStore, paymentLock,
+                customerRateLimiter)).build();
+    }
+
+    /**
+     * payment stream starts with current payment and receives later changes
+     * until payment reaches final status
+     */
+    @Test
+    void shouldStreamPaymentUntilFinalStatus() throws Exception {
+        //mock service
+        when(paymentService.get(ID1)).thenReturn(payment(ID1, "customer1", "PENDING"));
+
+        //execute actual unit test
+        final MvcResult result = mockMvc.perform(get("/payment/stream/" + ID1))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        underTest.onMessage(message(payment(ID1, "customer1", "PROCESSED")), null);
+
+        //verify
+        final String content = result.getResponse().getContentAsString();
+        assertThat(content, containsString("event:payment"));
+        assertThat(content, containsString("\"status\":\"PENDING\""));
+        assertThat(content, containsString("\"status\":\"PROCESSED\""));
+        assertThat(underTest.getSubscribers(), is(0));
+    }
+
+    /**
+     * change pushed while current payment is being read is sent after
+     * it, so stream does not end on the older status
+     */
+    @Test
+    void shouldSendChangeAfterCurrentPayment() throws Exception {
+        //mock service, payment is processed while it is being read
+        when(paymentService.get(ID1)).thenAnswer(invocation -> {
+            underTest.onMessage(message(payment(ID1, "customer1", "PROCESSED")), null);
+            return payment(ID1, "customer1", "PENDING");
+        });
+
+        //execute actual unit test
+        final MvcResult result = mockMvc.perform(get("/payment/stream/" + ID1))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        //verify
+        final String content = result.getResponse().getContentAsString();
+        assertThat(content.indexOf("\"status\":\"PENDING\""), greaterThanOrEqualTo(0));
+        assertThat(content.indexOf("\"status\":\"PROCESSED\""),
+                greaterThan(content.indexOf("\"status\":\"PENDING\"")));
+        assertThat(underTest.getSubscribers(), is(0));
+    }
+
+    /**
+     * payment streamed by id in upper case receives changes pushed
+     * under canonical id
+     */
+    @Test
+    void shouldStreamPaymentOfUpperCaseId() throws Exception {
+        //mock service
+        when(paymentService.get(ID1.toUpperCase())).thenReturn(payment(ID1, "customer1", "PENDING"));
+
+        //execute actual unit test
+        final MvcResult result = mockMvc.perform(get("/payment/stream/" + ID1.toUpperCase()))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        underTest.onMessage(message(payment(ID1, "customer1", "PROCESSED")), null);
+
+        //verify
+        assertThat(result.getResponse().getContentAsString(), containsString("\"status\":\"PROCESSED\""));
+        assertThat(underTest.getSubscribers(), is(0));
+    }
+
+    /**
+     * streaming id that is not a valid UUID is rejected without subscribing
+     */
+    @Test
+    void shouldNotStreamInvalidPaymentId() throws Exception {
+        //execute actual unit test and verify
+        mockMvc.perform(get("/payment/stream/id1"))
+                .andExpect(status().isBadRequest());
+        assertThat(underTest.getSubscribers(), is(0));
+    }
+
+    /**
+     * streaming payment that does not exist is rejected without subscribing
+     */
+    @Test
+    void shouldNotStreamUnknownPayment() throws Exception {
+        //mock service
+        when(paymentService.get(ID1)).thenThrow(new NotFoundException("Payment not found"));
+
+        //execute actual unit test and verify
+        mockMvc.perform(get("/payment/stream/" + ID1))
+                .andExpect(status().isNotFound());
+        assertThat(underTest.getSubscribers(), is(0));
+    }
+
+    /**
+     * customer stream receives changes of customer payments only
+     */
+    @Test
+    void shouldStreamCustomerPayments() throws Exception {
+        //execute actual unit test
+        final MvcResult result = mockMvc.perform(get("/payment/stream").param("customerId", "customer1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        underTest.onMessage(message(payment(ID1, "customer1", "PROCESSED")), null);
+        underTest.onMessage(message(payment(ID2, "customer2", "PROCESSED")), null);
+
+        //verify
+        final String content = result.getResponse().getContentAsString();
+        assertThat(content, containsString("\"id\":\"" + ID1 + "\""));
+        assertThat(content, not(containsString("\"id\":\"" + ID2 + "\"")));
+        assertThat(underTest.getSubscribers(), is(1));
+    }
+
+    /**
+     * committed changes are broadcast to every instance and pushed
+     * locally when broadcast is not possible
+     */
+    @Test
+    void shouldBroadcastCommittedPaymentEvents() throws Exception {
+        final String payload = objectMapper.writeValueAsString(payment(ID1, "customer1", "CANCELLED"));
+        final PaymentEvent event = new PaymentEvent(null, ID1, "CANCELLED", payload, Instant.now());
+        final MvcResult result = mockMvc.perform(get("/payment/stream").param("customerId", "customer1"))
+                .andReturn();
+
+        //mock redis
+        doThrow(new IllegalStateException("redis unavailable"))
+                .when(redisTemplate).convertAndSend(anyString(), anyString());
+
+        //execute actual unit test
+        underTest.onPaymentEvent(event);
+
+        //verify
+        verify(redisTemplate).convertAndSend(CHANNEL, payload);
+        assertThat(result.getResponse().getContentAsString(), containsString("\"status\":\"CANCELLED\""));
+    }
+
+    private static PaymentDTO payment(final String id, final String customerId, final String status) {
+        return new PaymentDTO(id, customerId, 10.0, "method1", status, null);
+    }
+
+    private DefaultMessage message(final PaymentDTO payment) throws Exception {
+        return new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8), objectMapper.writeValueAsBytes(payment));
+    }
+}
@@ -0,0 +1,69 @@
+package com.microservice.payment.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+/**
+ * unit test cases for UUID version 7 generator
+ *
+ * @author Asif Bakht
+ * @since 2024
+ */
+public class UuidV7Test {
+
+    /**
+     * id carries version 7, IETF variant and generation time
+     */
+    @Test
+    void shouldGenerateVersion7Id() {
+        final long epochMillis = System.currentTimeMillis() + 180_000;
+
+        //execute actual unit test
+        final UUID id = UuidV7.randomUUID(epochMillis);
+
+        //verify
+        assertThat(id.version(), equalTo(7));
+        assertThat(id.variant(), equalTo(2));
+        assertThat(id.getMostSignificantBits() >>> 16, equalTo(epochMillis));
+    }
+
+    /**
+     * ids keep increasing within the same millisecond and when time
+     * goes backwards, both as UUID and as canonical string
+     */
+    @Test
+    void shouldGenerateIncreasingIds() {
+        final long epochMillis = System.currentTimeMillis() + 120_000;
+
+        //execute actual unit test
+        final List<UUID> ids = IntStream.range(0, 5000)
+                .mapToObj(index -> UuidV7.randomUUID(index == 4000 ? epochMillis - 1000 : epochMillis))
+                .toList();
+
+        //verify
+        for (int index = 1; index < ids.size(); index++) {
+            assertThat(ids.get(index).toString(), greaterThan(ids.get(index - 1).toString()));
+            assertThat(Long.compareUnsigned(ids.get(index).getMostSignificantBits(),
+                    ids.get(index - 1).getMostSignificantBits()), greaterThan(0));
+        }
+    }
+
+    /**
+     * generation time is read back from version 7 ids only
+     */
+    @Test
+    void shouldReadGenerationTime() {
+        final long epochMillis = System.currentTimeMillis() + 240_000;
+
+        //execute actual unit test and verify
+        assertThat(UuidV7.epochMillis(UuidV7.randomUUID(epochMillis)).getAsLong(), equalTo(epochMillis));
+        assertThat(UuidV7.epochMillis(UUID.randomUUID()).isPresent(), equalTo(false));
+    }
+}